@@ -0,0 +1,92 @@
+package com.mauro.tetris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * Benchmarks the movements of the current piece on a half filled board.
+ * <p>
+ * Every movement checks the piece against the board and, with the ghost
+ * piece on, drops the ghost piece again, so running them with {@code ghost}
+ * on and off tells how much of it is spent on the ghost piece.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @State(Scope.Thread)
+    public static class Moves {
+        @Param({"true", "false"})
+        public boolean ghost;
+
+        public TetrisBoard board;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            board = Fixtures.stackedBoard(ghost);
+            board.setCurrentTetromino(Fixtures.spawn(board, TetrominoType.T));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Kick {
+        public TetrisBoard board;
+        public Tetromino piece;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // the block right below the center of a T at its spawn position
+            // leaves no room for the plain clockwise rotation, so every
+            // rotation has to go through the wall kick tests
+            board = new TetrisBoard(10, 24, false);
+            piece = Fixtures.spawn(board, TetrominoType.T);
+            board.setCurrentTetromino(piece);
+            board.setCell(5, 22, TetrominoType.O.getColor());
+        }
+    }
+
+    @Benchmark
+    public boolean moveLeftAndRight(Moves state) {
+        return state.board.moveCurrTetrominoLeft() & state.board.moveCurrTetrominoRight();
+    }
+
+    @Benchmark
+    public boolean rotateAndBack(Moves state) {
+        return state.board.rotateCurrTetrominoClockwise() & state.board.rotateCurrTetrominoCounterclockwise();
+    }
+
+    @Benchmark
+    public boolean moveDown(Moves state) {
+        // puts the piece back on top once it lands
+        if (!state.board.moveCurrTetrominoDown()) {
+            state.board.getCurrentTetromino().resetPiece();
+            return state.board.setCurrentTetromino(state.board.getCurrentTetromino());
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean wallKick(Kick state) {
+        state.piece.resetPiece();
+        return state.board.rotateCurrTetrominoClockwise();
+    }
+}
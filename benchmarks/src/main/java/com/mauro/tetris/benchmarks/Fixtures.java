@@ -0,0 +1,53 @@
+package com.mauro.tetris.benchmarks;
+
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoFactory;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * Boards and pieces shared by the benchmarks. Everything here
+ * is built the same way every time, so numbers taken on different
+ * releases are measuring the same thing.
+ */
+final class Fixtures {
+    static final long SEED = 0x7E7215L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns a 10x24 board whose bottom 10 rows are filled
+     * in a jagged pattern with no full rows in it.
+     */
+    static TetrisBoard stackedBoard(boolean ghost) {
+        TetrisBoard board = new TetrisBoard(10, 24, ghost);
+        stack(board);
+        return board;
+    }
+
+    /**
+     * Empties {@code board} and fills its bottom 10 rows
+     * in a jagged pattern with no full rows in it.
+     */
+    static void stack(TetrisBoard board) {
+        board.clearAll();
+        for (int y = 1; y <= 10; y++) {
+            for (int x = 1; x <= board.getWidth(); x++) {
+                // one hole per row, walking across the board
+                if (x != (y * 3) % board.getWidth() + 1) {
+                    board.setCell(x, y, (x + y) % 7 + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a new piece of type {@code type} at its
+     * spawn position on {@code board}.
+     */
+    static Tetromino spawn(TetrisBoard board, TetrominoType type) {
+        TetrominoFactory factory = new TetrominoFactory(board.getWidth(), board.getHeight());
+        return factory.getPieces().get(type.ordinal());
+    }
+}
@@ -0,0 +1,65 @@
+package com.mauro.tetris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Benchmarks whole frames of the game: gravity, lock delay, locking,
+ * line clears and spawning, all driven by a fixed seed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+    private static final long FRAME = 1_000_000_000L / 60;
+
+    // a short script that keeps pieces locking all over the board
+    private static final int[] SCRIPT = {
+        Actions.MOVE_LEFT.bit(), 0, Actions.MOVE_LEFT.bit(), 0, Actions.HARD_DROP.bit(),
+        Actions.ROTATE_CLOCKWISE.bit(), 0, Actions.MOVE_RIGHT.bit(), 0, Actions.HARD_DROP.bit(),
+        Actions.MOVE_RIGHT.bit() | Actions.ROTATE_COUNTERCLOCKWISE.bit(), 0, Actions.MOVE_RIGHT.bit(), 0, Actions.MOVE_RIGHT.bit(), 0, Actions.HARD_DROP.bit(),
+        0, 0, 0, Actions.MOVE_DOWN.bit(), Actions.HARD_DROP.bit(),
+    };
+
+    private TetrisGame gravityGame;
+    private TetrisGame scriptedGame;
+    private int scriptIndex;
+
+    @Setup
+    public void setUp() {
+        // a fast gravity, so pieces do lock every now and then
+        gravityGame = new TetrisGame(new TetrisBoard(), FRAME * 2, Fixtures.SEED);
+        scriptedGame = new TetrisGame(new TetrisBoard(), (long) 4e8, Fixtures.SEED);
+        scriptIndex = 0;
+    }
+
+    @Benchmark
+    public TetrisGame update() {
+        gravityGame.update(FRAME);
+        return gravityGame;
+    }
+
+    @Benchmark
+    public long step() {
+        scriptedGame.step(SCRIPT[scriptIndex]);
+        scriptIndex = scriptIndex + 1 == SCRIPT.length ? 0 : scriptIndex + 1;
+        return scriptedGame.getFrame();
+    }
+}
@@ -0,0 +1,61 @@
+package com.mauro.tetris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * Benchmarks clearing 1 to 4 full rows out of a stacked board,
+ * which is what the game does every time a piece locks.
+ * <p>
+ * The full rows are spread over the stack (one every other row),
+ * so the rows between them have to be moved as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineClearBenchmark {
+    @Param({"1", "2", "3", "4"})
+    public int rows;
+
+    private TetrisBoard board;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = Fixtures.stackedBoard(false);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillRows() {
+        // the previous clear moved the whole stack,
+        // so the board is built all over again
+        Fixtures.stack(board);
+        for (int i = 0; i < rows; i++) {
+            int y = 2 + 2 * i;
+            for (int x = 1; x <= board.getWidth(); x++) {
+                board.setCell(x, y, 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public long clearFullRows() {
+        return board.clearFullRows();
+    }
+}
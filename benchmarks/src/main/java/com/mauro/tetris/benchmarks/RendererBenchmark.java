@@ -0,0 +1,69 @@
+package com.mauro.tetris.benchmarks;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.gui.TetrisRenderer;
+
+/**
+ * Benchmarks painting a whole frame of the game onto an offscreen image.
+ * Nothing is ever shown on the screen, so it runs headless.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RendererBenchmark {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    private TetrisRenderer renderer;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        TetrisBoard board = Fixtures.stackedBoard(true);
+        TetrisGame game = new TetrisGame(board, (long) 4e8, Fixtures.SEED);
+
+        renderer = new TetrisRenderer(game, new Dimension(WIDTH, HEIGHT));
+        // only the benchmark paints, and the game stays as it is
+        renderer.pause();
+        renderer.setBounds(0, 0, WIDTH, HEIGHT);
+        // lays the board out for the new size, as it would be on screen
+        renderer.dispatchEvent(new ComponentEvent(renderer, ComponentEvent.COMPONENT_RESIZED));
+
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintComponent() {
+        renderer.paintComponent(graphics);
+        return image;
+    }
+}
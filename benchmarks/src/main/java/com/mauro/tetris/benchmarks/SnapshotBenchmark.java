@@ -0,0 +1,55 @@
+package com.mauro.tetris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.Snapshot;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Benchmarks taking and restoring snapshots of a game halfway
+ * through, with a good part of the board filled up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    private TetrisGame game;
+    private Snapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        game = new TetrisGame(new TetrisBoard(), (long) 4e8, Fixtures.SEED);
+        for (int i = 0; i < 12; i++) {
+            game.moveCurrentTetromino(i % 2 == 0 ? Actions.MOVE_LEFT : Actions.MOVE_RIGHT);
+            game.moveCurrentTetromino(Actions.HARD_DROP);
+        }
+        snapshot = game.snapshot();
+    }
+
+    @Benchmark
+    public Snapshot snapshot() {
+        return game.snapshot();
+    }
+
+    @Benchmark
+    public TetrisGame restore() {
+        game.restore(snapshot);
+        return game;
+    }
+}
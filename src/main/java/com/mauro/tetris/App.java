@@ -1,17 +1,45 @@
 package com.mauro.tetris;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+
 import javax.swing.SwingUtilities;
 
+import com.mauro.tetris.tetris.GameLoop;
 import com.mauro.tetris.tetris.TetrisBoard;
 import com.mauro.tetris.tetris.TetrisGUI;
 import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.replay.ReplayRecorder;
 
 public class App {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8);
+        GameLoop loop = new GameLoop(game);
+
+        // --record <file> records the game into a replay file
+        // --active paints the game on a thread of its own
+        boolean activeRendering = List.of(args).contains("--active");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--record") && i + 1 < args.length) {
+                ReplayRecorder recorder = new ReplayRecorder(game, Path.of(args[++i]));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    // the game is still being played on its own thread until then
+                    loop.stop();
+                    try {
+                        recorder.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+        }
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                new TetrisGUI(new TetrisGame(new TetrisBoard(), (long) 4e8));
+                new TetrisGUI(loop, activeRendering);
             }
         });
     }
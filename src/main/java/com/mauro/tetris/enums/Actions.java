@@ -7,4 +7,13 @@ public enum Actions {
     HARD_DROP,
     ROTATE_CLOCKWISE,
     ROTATE_COUNTERCLOCKWISE;
+
+    /**
+     * Returns the bit that stands for this action in a
+     * set of actions packed into an int.
+     * @return {@code 1 << ordinal()}
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
 }
@@ -1,17 +1,17 @@
 package com.mauro.tetris.pieces;
 
-import java.awt.Color;
-import java.awt.geom.Point2D;
-
 /**
  * The Block class merely represents a colored point
  * within an imaginary plane. Here it's used as a Block,
  * but it's better to consider it
  * as a colored point instead of a Block.
+ * <p>
+ * The color is just an index ({@code 0} meaning no color at all)
+ * that whoever draws the Block is supposed to map to an actual color.
  */
 public class Block {
-    private Point2D.Float position;
-    private Color color;
+    private int x, y;
+    private int color;
 
     /**
      * Creates a new Block with position {@code (x, y)}
@@ -20,9 +20,10 @@ public class Block {
      * @param y
      * @param color
      */
-    public Block(float x, float y, Color color) {
+    public Block(int x, int y, int color) {
+        this.x = x;
+        this.y = y;
         this.color = color;
-        position = new Point2D.Float(x, y);
     }
 
     /**
@@ -43,36 +44,27 @@ public class Block {
         return copyOf(this);
     }
 
-    /**
-     * Returns the position of this Block
-     * as a Point2D.Float.
-     * @return the position of this Block
-     */
-    public Point2D.Float getPosition() {
-        return position;
-    }
-
     /**
      * Returns the x component of this Block
      * @return x
      */
-    public float getX() {
-        return position.x;
+    public int getX() {
+        return x;
     }
 
     /**
      * Returns the y component of this Block.
      * @return y
      */
-    public float getY() {
-        return position.y;
+    public int getY() {
+        return y;
     }
 
     /**
-     * Returns the color of this Block.
+     * Returns the color index of this Block.
      * @return color
      */
-    public Color getColor() {
+    public int getColor() {
         return color;
     }
 
@@ -80,37 +72,38 @@ public class Block {
      * Sets the x component of this Block.
      * @param x
      */
-    public void setX(float x) {
-        position.x = x;
+    public void setX(int x) {
+        this.x = x;
     }
 
     /**
      * Sets the y component of this Block.
      * @param y
      */
-    public void setY(float y) {
-        position.y = y;
+    public void setY(int y) {
+        this.y = y;
     }
 
     /**
-     * Sets the color of this Block.
+     * Sets the color index of this Block.
      * @param color
      */
-    public void setColor(Color color) {
+    public void setColor(int color) {
         this.color = color;
     }
 
     @Override
     public String toString() {
-        return "{" + position.toString() + ", " + color.toString() + "}";
+        return "{(" + x + ", " + y + "), " + color + "}";
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((position == null) ? 0 : position.hashCode());
-        result = prime * result + ((color == null) ? 0 : color.hashCode());
+        result = prime * result + x;
+        result = prime * result + y;
+        result = prime * result + color;
         return result;
     }
 
@@ -123,16 +116,6 @@ public class Block {
         if (getClass() != obj.getClass())
             return false;
         Block other = (Block) obj;
-        if (position == null) {
-            if (other.position != null)
-                return false;
-        } else if (!position.equals(other.position))
-            return false;
-        if (color == null) {
-            if (other.color != null)
-                return false;
-        } else if (!color.equals(other.color))
-            return false;
-        return true;
+        return x == other.x && y == other.y && color == other.color;
     }
 }
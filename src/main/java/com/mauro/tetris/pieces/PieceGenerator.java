@@ -0,0 +1,191 @@
+package com.mauro.tetris.pieces;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The PieceGenerator class is a seeded 7-bag Random Generator. It produces
+ * an endless sequence of piece type ids (the ordinals of {@link TetrominoType})
+ * in which every group of seven consecutive pieces, starting from the first
+ * one, contains each type exactly once.
+ * <p>
+ * Two generators created with the same seed always produce the same sequence,
+ * no matter the JVM. Bags are only shuffled when a piece from them is needed,
+ * and the pieces already shuffled but not yet taken are kept in a ring buffer,
+ * so peeking any amount of pieces ahead is cheap.
+ */
+public class PieceGenerator {
+    private static final int BAG_SIZE = TetrominoType.values().length;
+
+    private long seed;
+    private long state;
+
+    private final byte[] bag;
+    private byte[] ring;
+    private int head, count;
+
+    /**
+     * Creates a new PieceGenerator whose sequence is
+     * entirely determined by {@code seed}.
+     * @param seed
+     */
+    public PieceGenerator(long seed) {
+        this.seed = seed;
+        this.state = seed;
+
+        this.bag = new byte[BAG_SIZE];
+        for (int i = 0; i < BAG_SIZE; i++) {
+            bag[i] = (byte) i;
+        }
+        // enough room for a whole bag plus whatever was left of the previous one
+        this.ring = new byte[Integer.highestOneBit(2 * BAG_SIZE - 1) << 1];
+        this.head = this.count = 0;
+    }
+
+    /**
+     * Returns the seed of this PieceGenerator.
+     * @return the seed.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Removes the next piece from the sequence and returns its type id.
+     * @return the type id of the piece.
+     */
+    public int next() {
+        if (count == 0) {
+            refill();
+        }
+        int id = ring[head];
+        head = (head + 1) & (ring.length - 1);
+        count--;
+        return id;
+    }
+
+    /**
+     * Returns the type id of the piece {@code n} positions ahead
+     * in the sequence without removing anything from it.
+     * {@code peek(0)} is the piece that {@link #next()} would return.
+     * @param n how many pieces to look ahead.
+     * @return the type id of the piece.
+     */
+    public int peek(int n) {
+        if (n < 0) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        while (n >= count) {
+            refill();
+        }
+        return ring[(head + n) & (ring.length - 1)];
+    }
+
+    /**
+     * Writes the whole state of this PieceGenerator into {@code buffer},
+     * so that {@link #readState(ByteBuffer)} can bring it back later.
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(seed);
+        buffer.putLong(state);
+        buffer.put(bag);
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.put(ring[(head + i) & (ring.length - 1)]);
+        }
+    }
+
+    /**
+     * Checks, without reading past it, that the state at {@code index} of
+     * {@code buffer} is one {@link #readState(ByteBuffer)} can bring back.
+     * @param buffer
+     * @param index where the state starts.
+     * @return how many bytes the state takes.
+     * @throws IllegalArgumentException if it isn't a valid state.
+     */
+    public static int checkState(ByteBuffer buffer, int index) {
+        int at = index + 2 * Long.BYTES;
+        if (at + BAG_SIZE + Integer.BYTES > buffer.limit()) {
+            throw new IllegalArgumentException("invalid piece generator state");
+        }
+        for (int i = 0; i < BAG_SIZE; i++) {
+            byte id = buffer.get(at + i);
+            if (id < 0 || id >= BAG_SIZE) {
+                throw new IllegalArgumentException("invalid piece generator state");
+            }
+        }
+        int count = buffer.getInt(at + BAG_SIZE);
+        at += BAG_SIZE + Integer.BYTES;
+        if (count < 0 || count > buffer.limit() - at) {
+            throw new IllegalArgumentException("invalid piece generator state");
+        }
+        for (int i = 0; i < count; i++) {
+            byte id = buffer.get(at + i);
+            if (id < 0 || id >= BAG_SIZE) {
+                throw new IllegalArgumentException("invalid piece generator state");
+            }
+        }
+        return at + count - index;
+    }
+
+    /**
+     * Turns this PieceGenerator into the one whose state was written
+     * into {@code buffer} by {@link #writeState(ByteBuffer)}, seed included.
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer) {
+        // everything is checked before anything is changed
+        int count = checkState(buffer, buffer.position()) - (2 * Long.BYTES + BAG_SIZE + Integer.BYTES);
+
+        long seed = buffer.getLong();
+        long state = buffer.getLong();
+        buffer.get(bag);
+        buffer.getInt();
+        if (count > ring.length) {
+            ring = new byte[Integer.highestOneBit(count - 1) << 1];
+        }
+        buffer.get(ring, 0, count);
+        this.seed = seed;
+        this.state = state;
+        this.head = 0;
+        this.count = count;
+    }
+
+    /**
+     * Shuffles a new bag into the end of the ring buffer,
+     * doubling the size of the buffer if needed.
+     */
+    private void refill() {
+        if (count + BAG_SIZE > ring.length) {
+            byte[] bigger = new byte[ring.length << 1];
+            for (int i = 0; i < count; i++) {
+                bigger[i] = ring[(head + i) & (ring.length - 1)];
+            }
+            ring = bigger;
+            head = 0;
+        }
+
+        // Fisher-Yates, starting from the order the previous bag was left in
+        for (int i = BAG_SIZE - 1; i > 0; i--) {
+            int j = (int) ((nextRandom() >>> 33) % (i + 1));
+            byte aux = bag[i];
+            bag[i] = bag[j];
+            bag[j] = aux;
+        }
+        for (int i = 0; i < BAG_SIZE; i++) {
+            ring[(head + count + i) & (ring.length - 1)] = bag[i];
+        }
+        count += BAG_SIZE;
+    }
+
+    /**
+     * SplitMix64. It's tiny, fast, allocates nothing and its output
+     * depends on nothing but the seed.
+     */
+    private long nextRandom() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mauro.tetris.pieces;
+
+/**
+ * The RotationStates class holds the integer cell coordinates and
+ * the occupancy masks of a piece for each one of its four rotations,
+ * so that rotating a piece is nothing but changing an index.
+ * <p>
+ * Rotations happen around a center whose coordinates are given doubled
+ * (e.g. a center at {@code (1.5, 1.5)} is given as {@code (3, 3)}),
+ * which keeps the whole thing within integer arithmetic.
+ * <p>
+ * Instances are immutable and shared by every piece of the same kind.
+ */
+final class RotationStates {
+    final int[][] cellX;
+    final int[][] cellY;
+
+    // rowMasks[r][i] has bit j set if the cell (maskX[r] + j, maskY[r] + i)
+    // is part of the body in the rotation r
+    final int[][] rowMasks;
+    final int[] maskX, maskY, maskWidth;
+
+    /**
+     * Creates the rotation states of a piece whose initial body
+     * is given by {@code (xs[i], ys[i])}.
+     * @param xs the x components of the initial body.
+     * @param ys the y components of the initial body.
+     * @param doubledCenterX twice the x component of the center.
+     * @param doubledCenterY twice the y component of the center.
+     */
+    RotationStates(int[] xs, int[] ys, int doubledCenterX, int doubledCenterY) {
+        int size = xs.length;
+        cellX = new int[4][size];
+        cellY = new int[4][size];
+        rowMasks = new int[4][];
+        maskX = new int[4];
+        maskY = new int[4];
+        maskWidth = new int[4];
+
+        for (int i = 0; i < size; i++) {
+            cellX[0][i] = xs[i];
+            cellY[0][i] = ys[i];
+        }
+
+        // each rotation is the previous one rotated 90° clockwise
+        // around the center, i.e. (dx, dy) becomes (dy, -dx)
+        for (int r = 1; r < 4; r++) {
+            for (int i = 0; i < size; i++) {
+                int dx = 2 * cellX[r - 1][i] - doubledCenterX;
+                int dy = 2 * cellY[r - 1][i] - doubledCenterY;
+                cellX[r][i] = (dy + doubledCenterX) / 2;
+                cellY[r][i] = (-dx + doubledCenterY) / 2;
+            }
+        }
+
+        for (int r = 0; r < 4; r++) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                minX = Math.min(minX, cellX[r][i]);
+                minY = Math.min(minY, cellY[r][i]);
+                maxX = Math.max(maxX, cellX[r][i]);
+                maxY = Math.max(maxY, cellY[r][i]);
+            }
+
+            int[] masks = new int[maxY - minY + 1];
+            for (int i = 0; i < size; i++) {
+                masks[cellY[r][i] - minY] |= 1 << (cellX[r][i] - minX);
+            }
+            rowMasks[r] = masks;
+            maskX[r] = minX;
+            maskY[r] = minY;
+            maskWidth[r] = maxX - minX + 1;
+        }
+    }
+}
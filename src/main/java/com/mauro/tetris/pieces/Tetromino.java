@@ -1,7 +1,5 @@
 package com.mauro.tetris.pieces;
 
-import java.awt.Color;
-import java.awt.geom.Point2D;
 import java.util.Arrays;
 
 import com.mauro.tetris.enums.Rotations;
@@ -10,46 +8,116 @@ import com.mauro.tetris.enums.Rotations;
  * The Tetromino class represents the pieces that exist in a typical
  * Tetris game. By convention, the y-axis associated with every Tetromino
  * instance grows upwards instead of downwards. It is also assumed
- * that the body of the Tetromino has only a single color.
+ * that the body of the Tetromino has only a single color, which
+ * is given as an index just like the color of a {@link Block}.
  * <p>
  * Despite the name, any piece of size n can by represented
  * by this class.
  */
 public class Tetromino {
     private String name;
-    private Block[] cells;
-    private Block[] backup;
+    private TetrominoType type;
+    private int color;
+
+    // the body of this piece in each one of its rotations
+    private RotationStates states;
+    private int[][][] wallKickData;
     
-    private Point2D.Float initialPos;
-    private Point2D.Float center;
-    private Point2D.Float position;
+    private int initialX, initialY;
+    private float centerX, centerY;
+    private int x, y;
 
     private int prevRotation, currRotation;
 
     /**
      * Creates a new Tetromino with name {@code name}, with a body
-     * as defined by {@code cells}, with position {@code position} and
-     * center {@code center}.
+     * as defined by {@code cells}, with position {@code (x, y)} and
+     * center {@code (centerX, centerY)}.
      * @param name the name of this piece.
      * @param cells the body of this piece.
-     * @param position the position of this piece in an imaginary plane
-     * @param center the center of this piece.
+     * @param x component of the position of this piece in an imaginary plane
+     * @param y component of the position of this piece in an imaginary plane
+     * @param centerX x component of the center of this piece.
+     * @param centerY y component of the center of this piece.
      */
-    public Tetromino(String name, Block[] cells, Point2D.Float position, Point2D.Float center) {
+    public Tetromino(String name, Block[] cells, int x, int y, float centerX, float centerY) {
         this.name = name;
-        this.cells = cells;
-        this.position = position;
-        this.initialPos = new Point2D.Float();
-        this.initialPos.setLocation(position);
-        this.center = center;
+        this.type = null;
+        this.color = cells[0].getColor();
+
+        int[] xs = new int[cells.length];
+        int[] ys = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            xs[i] = cells[i].getX();
+            ys[i] = cells[i].getY();
+        }
+        this.states = new RotationStates(xs, ys, Math.round(centerX * 2), Math.round(centerY * 2));
+        this.wallKickData = TetrominoType.wallKickDataFor(name);
+
+        this.x = this.initialX = x;
+        this.y = this.initialY = y;
+        this.centerX = centerX;
+        this.centerY = centerY;
 
         this.prevRotation = -1;
         this.currRotation = 0;
+    }
 
-        this.backup = new Block[cells.length];
-        for (int i = 0; i < cells.length; i++) {
-            backup[i] = cells[i].copy();
-        }
+    /**
+     * Creates a new Tetromino of type {@code type} with position
+     * {@code (x, y)}. Its rotations are shared with every other
+     * Tetromino of the same type.
+     * @param type the type of this piece.
+     * @param x component of the position.
+     * @param y component of the position.
+     */
+    public Tetromino(TetrominoType type, int x, int y) {
+        this.name = type.name();
+        this.type = type;
+        this.color = type.getColor();
+
+        this.states = type.getRotationStates();
+        this.wallKickData = type.getWallKickData();
+
+        this.x = this.initialX = x;
+        this.y = this.initialY = y;
+        this.centerX = type.getCenterX();
+        this.centerY = type.getCenterY();
+
+        this.prevRotation = -1;
+        this.currRotation = 0;
+    }
+
+    /**
+     * Creates a copy of {@code other}, sharing its (immutable)
+     * rotation states.
+     */
+    private Tetromino(Tetromino other) {
+        this.copyFrom(other);
+    }
+
+    /**
+     * Turns this Tetromino into a copy of {@code other} without
+     * allocating anything.
+     * @param other the piece to be copied.
+     */
+    public void copyFrom(Tetromino other) {
+        this.name = other.name;
+        this.type = other.type;
+        this.color = other.color;
+
+        this.states = other.states;
+        this.wallKickData = other.wallKickData;
+
+        this.x = other.x;
+        this.y = other.y;
+        this.initialX = other.initialX;
+        this.initialY = other.initialY;
+        this.centerX = other.centerX;
+        this.centerY = other.centerY;
+
+        this.prevRotation = other.prevRotation;
+        this.currRotation = other.currRotation;
     }
 
     /**
@@ -58,7 +126,7 @@ public class Tetromino {
      * @return the copy of the piece.
      */
     public static Tetromino copyOf(Tetromino other) {
-        return new Tetromino(other.name, other.getBody(), other.getPosition(), other.getCenter());
+        return new Tetromino(other);
     }
 
     /**
@@ -70,12 +138,12 @@ public class Tetromino {
     }
 
     /**
-     * Returns the color of the whole piece, assuming the 
+     * Returns the color index of the whole piece, assuming the 
      * cells that make it up all have the same color.
      * @return the color of this Tetromino.
      */
-    public Color getColor() {
-        return cells == null ? null : cells[0].getColor();
+    public int getColor() {
+        return this.color;
     }
 
     /**
@@ -83,7 +151,7 @@ public class Tetromino {
      * @return the size.
      */
     public int size() {
-        return cells.length;
+        return states.cellX[0].length;
     }
 
     /**
@@ -94,6 +162,15 @@ public class Tetromino {
         return this.name;
     }
 
+    /**
+     * Returns the type of this Tetromino or {@code null}
+     * if it was created from an arbitrary body.
+     * @return the type.
+     */
+    public TetrominoType getTetrominoType() {
+        return this.type;
+    }
+
     /**
      * Sets the name of this Tetromino to {@code name}.
      * @param name
@@ -103,13 +180,11 @@ public class Tetromino {
     }
 
     /**
-     * Sets the color of this Tetromino.
+     * Sets the color index of this Tetromino.
      * @param color
      */
-    public void setColor(Color color) {
-        for (Block b : cells) {
-            b.setColor(color);
-        }
+    public void setColor(int color) {
+        this.color = color;
     }
 
     /**
@@ -118,16 +193,15 @@ public class Tetromino {
      * @return the rightmost Block.
      */
     public Block getRightmostBlock() {
-        if (cells == null) {
-            return null;
-        }
-        Block block = cells[0];
-        for (Block b : cells) {
-            if (b.getX() > block.getX()) {
-                block = b;
+        int[] xs = states.cellX[currRotation];
+        int[] ys = states.cellY[currRotation];
+        int idx = 0;
+        for (int i = 1; i < xs.length; i++) {
+            if (xs[i] > xs[idx]) {
+                idx = i;
             }
         }
-        return block.copy();
+        return new Block(xs[idx], ys[idx], color);
     }
 
     /**
@@ -136,16 +210,15 @@ public class Tetromino {
      * @return the leftmost Block.
      */
     public Block getLeftmostBlock() {
-        if (cells == null) {
-            return null;
-        }
-        Block block = cells[0];
-        for (Block b : cells) {
-            if (b.getX() < block.getX()) {
-                block = b;
+        int[] xs = states.cellX[currRotation];
+        int[] ys = states.cellY[currRotation];
+        int idx = 0;
+        for (int i = 1; i < xs.length; i++) {
+            if (xs[i] < xs[idx]) {
+                idx = i;
             }
         }
-        return block.copy();
+        return new Block(xs[idx], ys[idx], color);
     }
 
     /**
@@ -154,16 +227,15 @@ public class Tetromino {
      * @return the bottom Block.
      */
     public Block getBottomBlock() {
-        if (cells == null) {
-            return null;
-        }
-        Block block = cells[0];
-        for (Block b : cells) {
-            if (b.getY() < block.getY()) {
-                block = b;
+        int[] xs = states.cellX[currRotation];
+        int[] ys = states.cellY[currRotation];
+        int idx = 0;
+        for (int i = 1; i < xs.length; i++) {
+            if (ys[i] < ys[idx]) {
+                idx = i;
             }
         }
-        return block.copy();
+        return new Block(xs[idx], ys[idx], color);
     }
 
     /**
@@ -171,58 +243,130 @@ public class Tetromino {
      * @return a copy of the body.
      */
     public Block[] getBody() {
-        if (cells == null) {
-            return null;
-        }
-        Block[] arr = new Block[cells.length];
+        int[] xs = states.cellX[currRotation];
+        int[] ys = states.cellY[currRotation];
+        Block[] arr = new Block[xs.length];
         for (int i = 0; i < arr.length; i++) {
-            arr[i] = cells[i].copy();
+            arr[i] = new Block(xs[i], ys[i], color);
         }
         return arr;
     }
 
     /**
-     * Returns a copy of the center of this Tetromino.
-     * @return the center.
+     * Returns the x component of the center of this Tetromino.
+     * @return x
      */
-    public Point2D.Float getCenter() {
-        if (center == null) {
-            return null;
-        }
-        Point2D.Float centerCopy = new Point2D.Float();
-        centerCopy.setLocation(center);
-        return centerCopy;
+    public float getCenterX() {
+        return this.centerX;
     }
 
     /**
-     * Returns a copy of the position of this Tetromino.
-     * @return the position.
+     * Returns the y component of the center of this Tetromino.
+     * @return y
      */
-    public Point2D.Float getPosition() {
-        if (position == null) {
-            return null;
-        }
-        Point2D.Float posCopy = new Point2D.Float();
-        posCopy.setLocation(position);
-        return posCopy;
+    public float getCenterY() {
+        return this.centerY;
     }
 
     /**
-     * Sets the position of this Tetromino.
-     * @param x component.
-     * @param y component.
+     * Returns the occupancy masks of the body of this Tetromino given its
+     * current rotation, one per row, from the bottom row to the top one.
+     * Bit {@code j} of the mask at index {@code i} is set if the cell
+     * {@code (getMaskColumn() + j, getMaskRow() + i)} is occupied.
+     * <p>
+     * The returned array is shared and must not be modified.
+     * @return the row masks.
+     */
+    public int[] getRowMasks() {
+        return states.rowMasks[currRotation];
+    }
+
+    /**
+     * Returns the column of the imaginary plane where bit 0
+     * of the masks returned by {@link #getRowMasks()} lies.
+     * @return the leftmost column occupied by this Tetromino.
+     */
+    public int getMaskColumn() {
+        return x + states.maskX[currRotation];
+    }
+
+    /**
+     * Returns the row of the imaginary plane where the first
+     * mask returned by {@link #getRowMasks()} lies.
+     * @return the bottom row occupied by this Tetromino.
+     */
+    public int getMaskRow() {
+        return y + states.maskY[currRotation];
+    }
+
+    /**
+     * Returns the amount of columns spanned by this Tetromino
+     * given its current rotation.
+     * @return the width of the masks.
+     */
+    public int getMaskWidth() {
+        return states.maskWidth[currRotation];
+    }
+
+    /**
+     * Returns the wall kick data of this Tetromino, indexed by the rotation
+     * it was in before rotating, then by the test number and then by
+     * the component of the offset ({@code 0} for x, {@code 1} for y).
+     * The offsets are meant to be negated for counterclockwise rotations.
+     * <p>
+     * The returned array is shared and must not be modified.
+     * @return the wall kick data.
      */
-    public void setPosition(float x, float y) {
-        this.position.x = x;
-        this.position.y = y;
+    public int[][][] getWallKickData() {
+        return this.wallKickData;
     }
 
     /**
-     * Sets the position of this Tetromino to be that of {@code pos}.
-     * @param pos the new position.
+     * Returns the x component of the position of this Tetromino.
+     * @return x
      */
-    public void setPosition(Point2D.Float pos) {
-        this.position.setLocation(pos);
+    public int getX() {
+        return this.x;
+    }
+
+    /**
+     * Returns the y component of the position of this Tetromino.
+     * @return y
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    /**
+     * Returns the x component of the {@code i}-th cell of the
+     * body of this Tetromino given its current rotation, relative
+     * to its position. Unlike {@link #getBody()}, nothing is copied.
+     * @param i the index of the cell, from {@code 0} to {@code size() - 1}.
+     * @return x
+     */
+    public int getCellX(int i) {
+        return states.cellX[currRotation][i];
+    }
+
+    /**
+     * Returns the y component of the {@code i}-th cell of the
+     * body of this Tetromino given its current rotation, relative
+     * to its position. Unlike {@link #getBody()}, nothing is copied.
+     * @param i the index of the cell, from {@code 0} to {@code size() - 1}.
+     * @return y
+     */
+    public int getCellY(int i) {
+        return states.cellY[currRotation][i];
+    }
+
+    /**
+     * Sets the position of this Tetromino.
+     * @param x component.
+     * @param y component.
+     */
+    public void setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
     }
 
     /**
@@ -230,12 +374,8 @@ public class Tetromino {
      * rotation.
      */
     public void resetPiece() {
-        for (int i = 0; i < cells.length; i++) {
-            while (!cells[i].equals(backup[i])) {
-                this.rotateClockwise();
-            }
-        }
-        this.position.setLocation(initialPos);
+        this.x = initialX;
+        this.y = initialY;
         this.prevRotation = -1;
         this.currRotation = 0;
     }
@@ -245,7 +385,7 @@ public class Tetromino {
      * @return {@code this} Tetromino.
      */
     public Tetromino moveUp() {
-        position.y += 1;
+        y += 1;
         return this;
     }
 
@@ -254,7 +394,7 @@ public class Tetromino {
      * @return {@code this} Tetromino.
      */
     public Tetromino moveDown() {
-        position.y -= 1;
+        y -= 1;
         return this;
     }
 
@@ -263,7 +403,7 @@ public class Tetromino {
      * @return {@code this} Tetromino.
      */
     public Tetromino moveLeft() {
-        position.x -= 1;
+        x -= 1;
         return this;
     }
 
@@ -272,7 +412,7 @@ public class Tetromino {
      * @return {@code this} Tetromino.
      */
     public Tetromino moveRight() {
-        position.x += 1;
+        x += 1;
         return this;
     }
 
@@ -322,45 +462,34 @@ public class Tetromino {
         return this.prevRotation;
     }
 
+    /**
+     * Puts this Tetromino straight into the rotation {@code rotation},
+     * as if it had never been rotated.
+     * @param rotation from {@code 0} to {@code 3}, as in {@link #getCurrentRotation()}.
+     */
+    public void setRotation(int rotation) {
+        this.prevRotation = -1;
+        this.currRotation = rotation & 3;
+    }
+
     /**
      * Rotates this Tetromino.
      * @param r
      * @return this Tetromino.
      */
     private Tetromino rotate(Rotations r) {
-        float f1, f2;
         switch (r) {
             case CLOCKWISE:
-                f1 = 1;
-                f2 = -1;
                 this.prevRotation = this.currRotation;
-                this.currRotation = (this.currRotation + 4 + 1) % 4;
+                this.currRotation = (this.currRotation + 1) & 3;
                 break;
             case COUNTERCLOCKWISE:
-                f1 = -1;
-                f2 = 1;
                 this.prevRotation = this.currRotation;
-                this.currRotation = (this.currRotation + 4 - 1) % 4;
+                this.currRotation = (this.currRotation + 3) & 3;
                 break;
             default:
-                return this;            
-        }
-
-        for (var block : cells) {
-            float x = block.getX();
-            float y = block.getY();
-
-            x -= center.x;
-            y -= center.y;
-            
-            float aux = x;
-            x = y   * f1;
-            y = aux * f2;
-
-            block.setX(x + center.x);
-            block.setY(y + center.y);
+                break;
         }
-
         return this;
     }
 
@@ -368,9 +497,12 @@ public class Tetromino {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.hashCode(cells);
-        result = prime * result + ((center == null) ? 0 : center.hashCode());
-        result = prime * result + ((position == null) ? 0 : position.hashCode());
+        result = prime * result + Arrays.hashCode(states.cellX[currRotation]);
+        result = prime * result + Arrays.hashCode(states.cellY[currRotation]);
+        result = prime * result + Float.floatToIntBits(centerX);
+        result = prime * result + Float.floatToIntBits(centerY);
+        result = prime * result + x;
+        result = prime * result + y;
         return result;
     }
 
@@ -383,17 +515,14 @@ public class Tetromino {
         if (getClass() != obj.getClass())
             return false;
         Tetromino other = (Tetromino) obj;
-        if (!Arrays.equals(cells, other.cells))
+        if (!Arrays.equals(states.cellX[currRotation], other.states.cellX[other.currRotation])
+                || !Arrays.equals(states.cellY[currRotation], other.states.cellY[other.currRotation]))
             return false;
-        if (center == null) {
-            if (other.center != null)
-                return false;
-        } else if (!center.equals(other.center))
+        if (color != other.color)
             return false;
-        if (position == null) {
-            if (other.position != null)
-                return false;
-        } else if (!position.equals(other.position))
+        if (centerX != other.centerX || centerY != other.centerY)
+            return false;
+        if (x != other.x || y != other.y)
             return false;
         if (name == null) {
             if (other.name != null) {
@@ -408,16 +537,18 @@ public class Tetromino {
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder("Piece name: " + name + "\nPoints: [");
-        for (int i = 0; i < cells.length - 1; i++) {
-            str.append("(" + cells[i].getX() + ", " + cells[i].getY() + "), ");
+        int[] xs = states.cellX[currRotation];
+        int[] ys = states.cellY[currRotation];
+        for (int i = 0; i < xs.length - 1; i++) {
+            str.append("(" + xs[i] + ", " + ys[i] + "), ");
         }
-        str.append("(" + cells[cells.length - 1].getX() + ", " + cells[cells.length - 1].getY() + ")]\n");
+        str.append("(" + xs[xs.length - 1] + ", " + ys[ys.length - 1] + ")]\n");
 
         str.append("Position: ")
-           .append("(" + position.x + ", " + position.y + ")\n")
+           .append("(" + x + ", " + y + ")\n")
 
            .append("Center: ")
-           .append("(" + center.x + ", " + center.y + ")\n");
+           .append("(" + centerX + ", " + centerY + ")\n");
         return str.toString();
     }
 }
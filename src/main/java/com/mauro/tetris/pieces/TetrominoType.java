@@ -0,0 +1,130 @@
+package com.mauro.tetris.pieces;
+
+/**
+ * The TetrominoType enum lists the seven standard Tetrominoes along
+ * with everything about them that never changes: their initial bodies,
+ * their rotation states and the wall kick data used when rotating them.
+ * <p>
+ * The color index of each type is its ordinal plus one, so that
+ * {@code 0} can stand for no color at all.
+ */
+public enum TetrominoType {
+    I(new int[] {0, 1, 2, 3}, new int[] {2, 2, 2, 2}, 3, 3),
+    J(new int[] {0, 0, 1, 2}, new int[] {2, 1, 1, 1}, 2, 2),
+    L(new int[] {0, 1, 2, 2}, new int[] {1, 1, 1, 2}, 2, 2),
+    O(new int[] {0, 0, 1, 1}, new int[] {0, 1, 0, 1}, 1, 1),
+    S(new int[] {0, 1, 1, 2}, new int[] {1, 1, 2, 2}, 2, 2),
+    T(new int[] {0, 1, 1, 2}, new int[] {1, 2, 1, 1}, 2, 2),
+    Z(new int[] {0, 1, 1, 2}, new int[] {2, 2, 1, 1}, 2, 2);
+
+    // the offsets tested when a rotation from the rotation
+    // given by the first index fails. they're negated for
+    // counterclockwise rotations
+    private static final int WALLKICK[][][] =
+    {
+        {{-1, 0}, {-1, 1}, {0, -2}, {-1, -2}},	// 0>>1
+        {{1, 0}, {1, -1}, {0, 2}, {1, 2}},	// 1>>2
+        {{1, 0}, {1, 1}, {0, -2}, {1, -2}},	// 2>>3
+        {{-1, 0}, {-1, -1}, {0, 2}, {-1, 2}},	// 3>>0
+    };
+
+    private static final int WALLKICK_I[][][] =
+    {
+        {{-2, 0}, {1, 0}, {-2, -1}, {1, 2}},
+        {{-1, 0}, {2, 0}, {-1, 2}, {2, -1}},
+        {{2, 0}, {-1, 0}, {2, 1}, {-1, -2}},
+        {{1, 0}, {-2, 0}, {1, -2}, {-2, 1}},
+    };
+
+    private final RotationStates states;
+    private final float centerX, centerY;
+
+    private TetrominoType(int[] xs, int[] ys, int doubledCenterX, int doubledCenterY) {
+        this.states = new RotationStates(xs, ys, doubledCenterX, doubledCenterY);
+        this.centerX = doubledCenterX / 2f;
+        this.centerY = doubledCenterY / 2f;
+    }
+
+    /**
+     * Returns the rotation states of this type.
+     * @return the rotation states.
+     */
+    RotationStates getRotationStates() {
+        return this.states;
+    }
+
+    /**
+     * Returns the size (number of cells) of this type.
+     * @return the size.
+     */
+    public int size() {
+        return states.cellX[0].length;
+    }
+
+    /**
+     * Returns the x component of the {@code i}-th cell of this
+     * type in the rotation {@code rotation}.
+     * @param rotation from {@code 0} to {@code 3}.
+     * @param i the index of the cell, from {@code 0} to {@code size() - 1}.
+     * @return x
+     */
+    public int getCellX(int rotation, int i) {
+        return states.cellX[rotation][i];
+    }
+
+    /**
+     * Returns the y component of the {@code i}-th cell of this
+     * type in the rotation {@code rotation}.
+     * @param rotation from {@code 0} to {@code 3}.
+     * @param i the index of the cell, from {@code 0} to {@code size() - 1}.
+     * @return y
+     */
+    public int getCellY(int rotation, int i) {
+        return states.cellY[rotation][i];
+    }
+
+    /**
+     * Returns the x component of the center of rotation of this type.
+     * @return x
+     */
+    public float getCenterX() {
+        return this.centerX;
+    }
+
+    /**
+     * Returns the y component of the center of rotation of this type.
+     * @return y
+     */
+    public float getCenterY() {
+        return this.centerY;
+    }
+
+    /**
+     * Returns the color index of this type.
+     * @return the color.
+     */
+    public int getColor() {
+        return this.ordinal() + 1;
+    }
+
+    /**
+     * Returns the wall kick data of this type, indexed by the rotation
+     * the piece was in before rotating, then by the test number and then
+     * by the component of the offset ({@code 0} for x, {@code 1} for y).
+     * The offsets are meant to be negated for counterclockwise rotations.
+     * <p>
+     * The returned array is shared and must not be modified.
+     * @return the wall kick data.
+     */
+    public int[][][] getWallKickData() {
+        return this == I ? WALLKICK_I : WALLKICK;
+    }
+
+    /**
+     * Returns the wall kick data used by pieces named {@code name}.
+     * Only I pieces have their own.
+     */
+    static int[][][] wallKickDataFor(String name) {
+        return I.name().equalsIgnoreCase(name) ? WALLKICK_I : WALLKICK;
+    }
+}
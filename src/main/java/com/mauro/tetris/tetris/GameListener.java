@@ -0,0 +1,50 @@
+package com.mauro.tetris.tetris;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * A GameListener is told about everything that happens to the pieces
+ * of a TetrisGame, as it happens and on the thread that makes it happen.
+ * All methods do nothing by default.
+ * <p>
+ * Listeners are called from the hottest paths of the game,
+ * so they should return quickly and allocate nothing.
+ */
+public interface GameListener {
+
+    /**
+     * Called when an action is taken through
+     * {@link TetrisGame#moveCurrentTetromino(Actions)}, before the frame
+     * {@link TetrisGame#getFrame()} is run.
+     * @param game
+     * @param action
+     * @param successful whether the action did anything.
+     */
+    default void onAction(TetrisGame game, Actions action, boolean successful) {
+    }
+
+    /**
+     * Called when gravity pulls the current piece down.
+     * @param game
+     * @param successful whether the piece actually moved.
+     */
+    default void onGravity(TetrisGame game, boolean successful) {
+    }
+
+    /**
+     * Called after a frame of the fixed timestep is run, when
+     * {@link TetrisGame#getFrame()} already is the next frame
+     * and none of its actions have been taken yet.
+     * @param game
+     */
+    default void onFrame(TetrisGame game) {
+    }
+
+    /**
+     * Called when the current piece is placed on the board,
+     * whether it was hard dropped or it ran out of lock delay.
+     * @param game
+     */
+    default void onLock(TetrisGame game) {
+    }
+}
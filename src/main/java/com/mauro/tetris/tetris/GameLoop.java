@@ -0,0 +1,255 @@
+package com.mauro.tetris.tetris;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.mauro.tetris.tetris.metrics.EngineMetrics;
+import com.mauro.tetris.tetris.sim.Controller;
+
+/**
+ * The GameLoop class runs a TetrisGame on a thread of its own, one frame
+ * of the fixed timestep at a time, and publishes a {@link RenderState} of
+ * it at the end of every frame in which anything that's drawn changed.
+ * <p>
+ * The game belongs to that thread alone while the loop runs. Nothing else
+ * reads or changes it: keys get to it through its {@link InputQueue}, the
+ * rest (pausing, the bot, the ghost piece) through volatiles and atomics, and
+ * what's painted is a RenderState handed over through a {@link TripleBuffer}.
+ * Neither side ever waits for the other, and the painting never sees the game
+ * halfway through a frame, such as in the middle of clearing lines.
+ * <p>
+ * The game is counted by {@link EngineMetrics} of its own, which can be
+ * watched over JMX while the loop runs.
+ */
+public class GameLoop {
+    private static final int INPUT_QUEUE_CAPACITY = 256;
+
+    private final TetrisGame game;
+    private final InputQueue inputQueue;
+    private final TripleBuffer<RenderState> states;
+    private final EngineMetrics metrics;
+
+    // how many times the ghost piece was toggled since the loop last looked
+    private final AtomicInteger pendingGhostToggles;
+
+    private volatile Controller controller;
+    private volatile boolean paused;
+    // told, on the loop's thread, whenever a new RenderState is published
+    private volatile Runnable publishListener;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    /**
+     * Creates a new GameLoop for {@code game}, which gets an input queue
+     * of its own. A first RenderState is published right away.
+     * @param game
+     */
+    public GameLoop(TetrisGame game) {
+        this.game = game;
+        this.inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+        game.setInputQueue(inputQueue);
+        this.states = new TripleBuffer<>(RenderState::new);
+        this.metrics = new EngineMetrics();
+        game.setMetrics(metrics);
+        this.pendingGhostToggles = new AtomicInteger();
+        publish();
+    }
+
+    /**
+     * Returns the game this loop runs. While the loop runs, nothing
+     * about the game may be read or changed but its dimensions.
+     * @return the game.
+     */
+    public TetrisGame getGame() {
+        return this.game;
+    }
+
+    /**
+     * Returns the queue that the keys that play the game go on.
+     * @return the input queue of the game.
+     */
+    public InputQueue getInputQueue() {
+        return this.inputQueue;
+    }
+
+    /**
+     * Returns the metrics of the game. Whoever paints it
+     * tells them about the frames it paints.
+     * @return the metrics.
+     */
+    public EngineMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Returns the latest RenderState published. It doesn't change until the
+     * next call, and it must only ever be called from one thread, the one
+     * that paints.
+     * @return the RenderState.
+     */
+    public RenderState getState() {
+        return states.latest();
+    }
+
+    /**
+     * Sets what's run, on the loop's thread, whenever a new RenderState
+     * is published. It must be quick, must not wait on anything and
+     * must not touch the game.
+     * @param listener the listener, or {@code null} for none.
+     */
+    public void setPublishListener(Runnable listener) {
+        this.publishListener = listener;
+    }
+
+    /**
+     * Sets who plays the game.
+     * @param controller who plays the game, or {@code null} for no one but the keys.
+     */
+    public void setController(Controller controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Returns who plays the game.
+     * @return who plays the game, or {@code null} if it's no one but the keys.
+     */
+    public Controller getController() {
+        return this.controller;
+    }
+
+    /**
+     * Toggles the ghost piece on/off, before the next frame.
+     */
+    public void toggleGhostPiece() {
+        pendingGhostToggles.incrementAndGet();
+    }
+
+    /**
+     * Stops updating the game.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes updating the game from where it was paused.
+     */
+    public void resume() {
+        paused = false;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Checks whether the game is paused.
+     * @return {@code true} if the game is paused.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Returns the id of the thread running the game.
+     * @return the id, or {@code -1} if the game isn't running.
+     */
+    public long getThreadId() {
+        Thread current = thread;
+        return current != null ? current.getId() : -1;
+    }
+
+    /**
+     * Starts running the game on a thread of its own, unless it's
+     * running already, and registers its metrics as a platform MBean.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        metrics.register();
+        thread = new Thread(this::run, "tetris-logic");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops running the game, waiting for the thread to finish the frame
+     * it's on, if any, and unregisters its metrics. The game can be
+     * started again later.
+     */
+    public synchronized void stop() {
+        running = false;
+        metrics.unregister();
+        Thread stopped = thread;
+        if (stopped == null) {
+            return;
+        }
+        thread = null;
+        LockSupport.unpark(stopped);
+        // the loop never waits on anything but time, so this is quick
+        boolean interrupted = false;
+        while (stopped.isAlive()) {
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish() {
+        states.back().copyFrom(game);
+        states.publish();
+    }
+
+    private void run() {
+        boolean wasPaused = true;
+        long publishedVersion = -1;
+        long nextFrame = System.nanoTime();
+        while (running) {
+            if (paused) {
+                wasPaused = true;
+                LockSupport.park(this);
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (wasPaused) {
+                // the time spent paused doesn't count
+                game.setClock(now);
+                nextFrame = now;
+                wasPaused = false;
+            }
+            if ((pendingGhostToggles.getAndSet(0) & 1) != 0) {
+                game.toggleGhostPiece();
+            }
+            game.advanceTo(now, controller);
+
+            if (game.getVersion() != publishedVersion) {
+                publish();
+                publishedVersion = game.getVersion();
+                Runnable listener = publishListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+
+            long period = game.getFrameInterval();
+            nextFrame += period;
+            if (now - nextFrame > period) {
+                // way behind; the game drops what it can't catch up with anyway
+                nextFrame = now + period;
+            }
+            long remaining;
+            while (running && !paused && (remaining = nextFrame - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+    }
+}
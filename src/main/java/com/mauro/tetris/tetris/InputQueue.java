@@ -0,0 +1,104 @@
+package com.mauro.tetris.tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * The InputQueue class carries key presses and releases, each stamped with
+ * the time it happened at, from the thread that reads the keys over to the
+ * TetrisGame that drains it, once per frame (see {@link TetrisGame#setInputQueue(InputQueue)}).
+ * <p>
+ * It's a fixed size ring buffer for a single producer and a single consumer.
+ * Neither of them ever locks or waits for the other, and nothing is allocated
+ * once the queue exists. Events offered while the queue is full are dropped.
+ */
+public final class InputQueue {
+    private static final Actions[] ACTIONS = Actions.values();
+    private static final int PRESSED = 0x80;
+
+    private final long[] times;
+    private final byte[] events;
+    private final int mask;
+
+    // the next slot to be read and the next one to be written. each is only ever
+    // written by one side, and publishes the slots before it to the other side
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    /**
+     * Creates a new InputQueue that holds up to {@code capacity} events,
+     * rounded up to a power of two.
+     * @param capacity
+     */
+    public InputQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.times = new long[size];
+        this.events = new byte[size];
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Adds an event to the end of the queue. Only one thread may ever call this.
+     * @param time when it happened, on the timeline of {@link System#nanoTime()}.
+     * @param action the action whose key it was.
+     * @param pressed {@code true} if the key was pressed, {@code false} if it was released.
+     * @return {@code false} if the queue was full and the event was dropped.
+     */
+    public boolean offer(long time, Actions action, boolean pressed) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        times[slot] = time;
+        events[slot] = (byte) (action.ordinal() | (pressed ? PRESSED : 0));
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Checks whether there's any event left to be taken.
+     * @return {@code true} if the queue is empty.
+     */
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * Returns the time of the oldest event. Only the consumer may call this,
+     * and only when the queue isn't empty.
+     */
+    long peekTime() {
+        return times[(int) head.get() & mask];
+    }
+
+    /**
+     * Returns the action of the oldest event. Only the consumer may call
+     * this, and only when the queue isn't empty.
+     */
+    Actions peekAction() {
+        return ACTIONS[events[(int) head.get() & mask] & (PRESSED - 1)];
+    }
+
+    /**
+     * Checks whether the oldest event is a press. Only the consumer may
+     * call this, and only when the queue isn't empty.
+     */
+    boolean peekPressed() {
+        return (events[(int) head.get() & mask] & PRESSED) != 0;
+    }
+
+    /**
+     * Removes the oldest event. Only the consumer may call this,
+     * and only when the queue isn't empty.
+     */
+    void remove() {
+        head.lazySet(head.get() + 1);
+    }
+}
@@ -0,0 +1,290 @@
+package com.mauro.tetris.tetris;
+
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoType;
+
+/**
+ * The RenderState class holds everything that's drawn of a TetrisGame as
+ * it was at the end of a frame: the blocks of the board, the current and
+ * ghost pieces, the next piece queue and a few numbers about the game.
+ * <p>
+ * It's what the thread running the game hands over to the one painting it
+ * (see {@link GameLoop}), so that the painting never reads the game while it
+ * changes. RenderStates are reused rather than created for every frame:
+ * {@link #copyFrom(TetrisGame)} only copies the rows whose blocks changed
+ * since the last time this RenderState was copied into, and the queue
+ * only when it changed, so that nothing is allocated. Once handed over,
+ * a RenderState isn't changed until it's handed back.
+ * <p>
+ * The versions are the ones of the game and its board (see
+ * {@link TetrisGame#getVersion()}), so they can be compared between
+ * RenderStates of the same game.
+ */
+public final class RenderState {
+    private static final TetrominoType[] TYPES = TetrominoType.values();
+    private static final int NEXT_PIECE_COUNT = 7;
+
+    private int width;
+    private int height;
+    // the colors of the cells, row by row from the bottom
+    private byte[] cells;
+    private long[] rowVersions;
+
+    private long version;
+    private long blocksVersion;
+    private long pieceVersion;
+    private long queueVersion;
+
+    // null if there's no current piece
+    private TetrominoType pieceType;
+    private int pieceX, pieceY, pieceRotation;
+    private boolean hasGhostPiece;
+    private int ghostY;
+
+    private final byte[] nextPieces;
+
+    private long frame;
+    private long piecesPlaced;
+    private long linesCleared;
+    private boolean isOver;
+
+    /**
+     * Creates a new, empty RenderState. Nothing in it
+     * means anything until it's copied into.
+     */
+    public RenderState() {
+        this.cells = new byte[0];
+        this.rowVersions = new long[0];
+        this.version = this.blocksVersion = this.pieceVersion = this.queueVersion = -1;
+        this.nextPieces = new byte[NEXT_PIECE_COUNT];
+    }
+
+    /**
+     * Turns this RenderState into the one of {@code game} as it is now.
+     * Only what changed since this RenderState was last copied into is
+     * copied, which is why it must only ever be copied from one game.
+     * @param game
+     */
+    public void copyFrom(TetrisGame game) {
+        TetrisBoard board = game.getTetrisBoard();
+        if (board.getWidth() != width || board.getHeight() != height) {
+            this.width = board.getWidth();
+            this.height = board.getHeight();
+            this.cells = new byte[width * height];
+            this.rowVersions = new long[height];
+            this.blocksVersion = -1;
+        }
+
+        if (board.getVersion() != blocksVersion) {
+            for (int row = 0; row < height; row++) {
+                long version = board.getRowVersion(row + 1);
+                if (version > blocksVersion) {
+                    for (int x = 0; x < width; x++) {
+                        cells[row * width + x] = (byte) board.getColorAtCell(x + 1, row + 1);
+                    }
+                    rowVersions[row] = version;
+                }
+            }
+            this.blocksVersion = board.getVersion();
+        }
+
+        if (board.getPieceVersion() != pieceVersion) {
+            Tetromino piece = board.getCurrentTetromino();
+            Tetromino ghost = board.getGhostPiece();
+            if (piece == null) {
+                this.pieceType = null;
+            } else {
+                this.pieceType = piece.getTetrominoType();
+                this.pieceX = piece.getX();
+                this.pieceY = piece.getY();
+                this.pieceRotation = piece.getCurrentRotation();
+            }
+            this.hasGhostPiece = piece != null && ghost != null;
+            if (hasGhostPiece) {
+                this.ghostY = ghost.getY();
+            }
+            this.pieceVersion = board.getPieceVersion();
+        }
+
+        if (game.getQueueVersion() != queueVersion) {
+            for (int i = 0; i < NEXT_PIECE_COUNT; i++) {
+                nextPieces[i] = (byte) game.getNextPieceType(i).ordinal();
+            }
+            this.queueVersion = game.getQueueVersion();
+        }
+
+        this.version = game.getVersion();
+        this.frame = game.getFrame();
+        this.piecesPlaced = game.getPiecesPlaced();
+        this.linesCleared = game.getLinesCleared();
+        this.isOver = game.isOver();
+    }
+
+    /**
+     * Returns the width of the board.
+     * @return the width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the board.
+     * @return the height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the color of the block at the cell ({@code x}, {@code y}),
+     * one-indexed from the bottom left, as {@link TetrisBoard#getColorAtCell(int, int)} does.
+     * @param x
+     * @param y
+     * @return the color, or {@code 0} if the cell is empty.
+     */
+    public int getColorAtCell(int x, int y) {
+        return cells[(y - 1) * width + x - 1];
+    }
+
+    /**
+     * Returns the version of the game this RenderState was copied from.
+     * @return the version, as {@link TetrisGame#getVersion()} returned it.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the version of the blocks of the board.
+     * @return the version, as {@link TetrisBoard#getVersion()} returned it.
+     */
+    public long getBlocksVersion() {
+        return this.blocksVersion;
+    }
+
+    /**
+     * Returns the rows whose blocks changed after the blocks were at
+     * {@code sinceVersion}, as {@link TetrisBoard#getDirtyRows(long)} does.
+     * @param sinceVersion a version returned by {@link #getBlocksVersion()}.
+     * @return a mask of the rows, where bit {@code i} is set if the row
+     * {@code i + 1} changed. On boards taller than 64 rows, bit {@code 63}
+     * stands for the row {@code 64} and every row above it.
+     */
+    public long getDirtyRows(long sinceVersion) {
+        long rows = 0;
+        for (int j = 0; j < height; j++) {
+            if (rowVersions[j] > sinceVersion) {
+                rows |= 1L << Math.min(j, Long.SIZE - 1);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the version of the current and ghost pieces.
+     * @return the version, as {@link TetrisBoard#getPieceVersion()} returned it.
+     */
+    public long getPieceVersion() {
+        return this.pieceVersion;
+    }
+
+    /**
+     * Returns the version of the next piece queue.
+     * @return the version, as {@link TetrisGame#getQueueVersion()} returned it.
+     */
+    public long getQueueVersion() {
+        return this.queueVersion;
+    }
+
+    /**
+     * Returns the type of the current piece.
+     * @return the type, or {@code null} if there's no current piece.
+     */
+    public TetrominoType getPieceType() {
+        return this.pieceType;
+    }
+
+    /**
+     * Returns the x component of the position of the current piece.
+     * @return x
+     */
+    public int getPieceX() {
+        return this.pieceX;
+    }
+
+    /**
+     * Returns the y component of the position of the current piece.
+     * @return y
+     */
+    public int getPieceY() {
+        return this.pieceY;
+    }
+
+    /**
+     * Returns the rotation of the current piece.
+     * @return from {@code 0} to {@code 3}.
+     */
+    public int getPieceRotation() {
+        return this.pieceRotation;
+    }
+
+    /**
+     * Checks whether there's a ghost piece. It's where the current
+     * piece is, rotated the same way, but {@link #getGhostY()} high.
+     * @return {@code true} if there's a ghost piece.
+     */
+    public boolean hasGhostPiece() {
+        return this.hasGhostPiece;
+    }
+
+    /**
+     * Returns the y component of the position of the ghost piece.
+     * @return y
+     */
+    public int getGhostY() {
+        return this.ghostY;
+    }
+
+    /**
+     * Returns the type of the piece {@code n} positions ahead in
+     * the next piece queue, {@code 0} being the immediate next one.
+     * @param n from {@code 0} to {@code 6}.
+     * @return the type of the piece.
+     */
+    public TetrominoType getNextPieceType(int n) {
+        return TYPES[nextPieces[n]];
+    }
+
+    /**
+     * Returns the frame of the fixed timestep the game was at.
+     * @return the frame.
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Returns how many pieces had been placed.
+     * @return the amount of pieces placed.
+     */
+    public long getPiecesPlaced() {
+        return this.piecesPlaced;
+    }
+
+    /**
+     * Returns how many rows had been cleared.
+     * @return the amount of rows cleared.
+     */
+    public long getLinesCleared() {
+        return this.linesCleared;
+    }
+
+    /**
+     * Checks whether the game was over.
+     * @return {@code true} if the game was over.
+     */
+    public boolean isOver() {
+        return this.isOver;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mauro.tetris.tetris;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The Snapshot class is an immutable copy of the whole state of a
+ * TetrisGame or a TetrisBoard, taken by their {@code snapshot()} methods
+ * and brought back by their {@code restore(Snapshot)} methods.
+ * <p>
+ * A Snapshot is nothing but the blob their {@code writeState(ByteBuffer)}
+ * methods write (a byte per cell up to the highest block, plus a hundred
+ * or so bytes for the rest of a game), so taking one allocates a single
+ * small array, and restoring one allocates nothing at all. A game on the
+ * default board fits in a few hundred bytes.
+ * <p>
+ * Snapshots can be turned into bytes and back, to be saved or sent
+ * somewhere else, with {@link #toByteArray()} and {@link #fromByteArray(byte[])}.
+ */
+public final class Snapshot {
+    static final byte BOARD = 1;
+    static final byte GAME = 2;
+
+    // big enough for a game on the default board, grown when it isn't
+    private static final ThreadLocal<ByteBuffer> SCRATCH =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 10));
+
+    // where snapshots are copied into to be restored, so that restoring allocates nothing
+    private static final ThreadLocal<ByteBuffer> RESTORED =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 10));
+
+    private final byte kind;
+    private final byte[] state;
+
+    private Snapshot(byte kind, byte[] state) {
+        this.kind = kind;
+        this.state = state;
+    }
+
+    /**
+     * Takes a Snapshot of whatever {@code writer} writes.
+     */
+    static Snapshot take(byte kind, Consumer<ByteBuffer> writer) {
+        ByteBuffer scratch = SCRATCH.get();
+        while (true) {
+            scratch.clear();
+            try {
+                writer.accept(scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+                SCRATCH.set(scratch);
+            }
+        }
+        return new Snapshot(kind, Arrays.copyOf(scratch.array(), scratch.position()));
+    }
+
+    /**
+     * Returns the state held by this Snapshot, to be read with a
+     * {@code readState(ByteBuffer)} method. The buffer belongs to the
+     * calling thread and is reused by the next call.
+     * @param kind what the caller is expecting to restore.
+     */
+    ByteBuffer state(byte kind) {
+        if (kind != this.kind) {
+            throw new IllegalArgumentException("expected a " + kindName(kind) + " snapshot, got a "
+                    + kindName(this.kind) + " one");
+        }
+        ByteBuffer buffer = RESTORED.get();
+        if (buffer.capacity() < state.length) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(state.length - 1) << 1);
+            RESTORED.set(buffer);
+        }
+        buffer.clear();
+        buffer.put(state).flip();
+        return buffer;
+    }
+
+    private static String kindName(byte kind) {
+        return kind == GAME ? "game" : "board";
+    }
+
+    /**
+     * Returns the size of this Snapshot in bytes.
+     * @return the size.
+     */
+    public int size() {
+        return state.length;
+    }
+
+    /**
+     * Returns this Snapshot as an array of bytes that
+     * {@link #fromByteArray(byte[])} can turn back into it.
+     * @return the bytes.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[state.length + 1];
+        bytes[0] = kind;
+        System.arraycopy(state, 0, bytes, 1, state.length);
+        return bytes;
+    }
+
+    /**
+     * Turns bytes returned by {@link #toByteArray()} back into a Snapshot.
+     * @param bytes
+     * @return the Snapshot.
+     */
+    public static Snapshot fromByteArray(byte[] bytes) {
+        if (bytes.length == 0 || (bytes[0] != BOARD && bytes[0] != GAME)) {
+            throw new IllegalArgumentException("not a snapshot");
+        }
+        return new Snapshot(bytes[0], Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind + Arrays.hashCode(state);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Snapshot other = (Snapshot) obj;
+        return kind == other.kind && Arrays.equals(state, other.state);
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot[" + kindName(kind) + ", " + state.length + " bytes]";
+    }
+}
@@ -1,43 +1,91 @@
 package com.mauro.tetris.tetris;
 
-import java.awt.geom.Point2D;
-
-import java.util.function.BiPredicate;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import com.mauro.tetris.pieces.Block;
 import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.jfr.WallKickEvent;
+import com.mauro.tetris.tetris.metrics.EngineMetrics;
 
 /**
  * The only thing this class manages automatically is the position of the ghost piece.
  * The rest is intended to be managed by other classes/objects.
+ * <p>
+ * The board is made of plain color indices, {@code 0} being an empty cell,
+ * so that it can be simulated without anything related to drawing it.
+ * Besides the grid of colors, the board keeps a bitboard with one mask per row
+ * (bit {@code x - 1} set if the cell at column {@code x} is occupied), which is
+ * what collisions are tested against. Because of that, the width of the board
+ * can't be greater than 64. Its height can be up to {@link #MAX_HEIGHT}, but
+ * only boards of up to 64 rows can report the rows they clear as a single mask.
+ * <p>
+ * The board also keeps a 64-bit Zobrist hash of which cells are occupied
+ * (colors and the current Tetromino aren't part of it), updated along with
+ * the blocks themselves. Boards with the same blocks in the same places
+ * always have the same hash, on any JVM.
  */
 public class TetrisBoard {
-    private static final int WALLKICK[][][] =
-    {
-        {{-1, 0}, {-1, 1}, {0, -2}, {-1, -2}},	// 0>>1
-        {{1, 0}, {1, -1}, {0, 2}, {1, 2}},	// 1>>2
-        {{1, 0}, {1, 1}, {0, -2}, {1, -2}},	// 2>>3
-        {{-1, 0}, {-1, -1}, {0, 2}, {-1, 2}},	// 3>>0
-    };
-
-	private static final int WALLKICK_I[][][] =
-    {
-        {{-2, 0}, {1, 0}, {-2, -1}, {1, 2}},
-        {{-1, 0}, {2, 0}, {-1, 2}, {2, -1}},
-        {{2, 0}, {-1, 0}, {2, 1}, {-1, -2}},
-        {{1, 0}, {-2, 0}, {1, -2}, {-2, 1}},
-    };
+    /**
+     * Returned by {@link #findRotationKick(Tetromino, int)}
+     * when a rotation isn't possible.
+     */
+    public static final int NO_KICK = -1;
+
+    /**
+     * The most rows a board can have, so that its height always fits in a byte.
+     */
+    public static final int MAX_HEIGHT = 255;
+
+    // the width, the height, whether the ghost piece is on and the highest block
+    private static final int STATE_HEADER = 4;
+
+    // a random key for each cell, indexed by row and then by column.
+    // the hash of a board is the xor of the keys of its occupied cells
+    private static final long[][] ZOBRIST_KEYS = new long[MAX_HEIGHT][Long.SIZE];
+    static {
+        long state = 0x5EED_7E72_15L;
+        for (int row = 0; row < MAX_HEIGHT; row++) {
+            for (int col = 0; col < Long.SIZE; col++) {
+                // SplitMix64
+                long z = (state += 0x9E3779B97F4A7C15L);
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                ZOBRIST_KEYS[row][col] = z ^ (z >>> 31);
+            }
+        }
+    }
 
     private Tetromino currentTetromino;
     private Tetromino ghostPiece;
+    // reused every time the ghost piece is set
+    private Tetromino ghostBuffer;
 
     private boolean toggleGhostPiece;
 
-    private Block[][] board;
+    private byte[][] board;
+    private long[] rowBits;
+    // where clearFullRows() puts the mask it returns
+    private long[] clearedRows;
     private int[] blocksPerRow;
     private int[] blocksPerColumn;
+    // the row of the topmost block of each column, 0 if there's none
+    private int[] columnHeights;
+    private long hash;
+    // bumped whenever the blocks change, and the version each row last changed at
+    private long version;
+    private long[] rowVersions;
+    // bumped whenever the current or ghost piece changes
+    private long pieceVersion;
     private int height, width;
 
+    // how many times collides() was called. it's called far too often to
+    // count anywhere but here, so the game hands the count over every tick
+    private long collisionChecks;
+    // told about wall kicks, if not null
+    private EngineMetrics metrics;
+
     public TetrisBoard() {
         this(10, 24, true);
     }
@@ -47,12 +95,19 @@ public class TetrisBoard {
     }
 
     public TetrisBoard(int width, int height, boolean enableGhostPiece) {
+        if (width < 1 || width > Long.SIZE || height < 1 || height > MAX_HEIGHT) {
+            throw new IllegalArgumentException("invalid board dimensions: " + width + "x" + height);
+        }
         this.width = width;
         this.height = height;
 
-        board = new Block[height][width];
+        board = new byte[height][width];
+        rowBits = new long[height];
+        clearedRows = new long[1];
         blocksPerColumn = new int[width];
+        columnHeights = new int[width];
         blocksPerRow = new int[height];
+        rowVersions = new long[height];
 
         currentTetromino = null;
         ghostPiece = null;
@@ -62,6 +117,7 @@ public class TetrisBoard {
 
     public boolean toggleGhostPiece() {
         this.toggleGhostPiece = !this.toggleGhostPiece;
+        this.pieceVersion++;
         if (toggleGhostPiece) {
             setGhostPiece();
             updateGhostPiece();
@@ -72,7 +128,7 @@ public class TetrisBoard {
     }
 
     public boolean isDownwardsMovementObstructed() {
-        return checkCollisions(this.currentTetromino, 0, -1, (x, y) -> y <= 1);
+        return collides(this.currentTetromino, 0, -1);
     }
 
     public int getHeight() {
@@ -97,15 +153,199 @@ public class TetrisBoard {
         return blocksPerColumn[column - 1];
     }
 
+    /**
+     * Returns the row of the topmost block in {@code column},
+     * which is {@code 0} if the column is empty.
+     * @param column the column, from {@code 1} to {@code getWidth()}.
+     * @return the height of the column or {@code -1} if there's no such column.
+     */
+    public int getColumnHeight(int column) {
+        if (column < 1 || column > width) {
+            return -1;
+        }
+        return columnHeights[column - 1];
+    }
+
+    /**
+     * Returns the Zobrist hash of the blocks of this board.
+     * @return the hash.
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Returns a number that goes up every time the blocks of this board
+     * change (the current and ghost pieces don't count), so that whoever
+     * draws the blocks can tell when they have to be drawn again.
+     * @return the version of the blocks.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the rows whose blocks changed after {@link #getVersion()}
+     * returned {@code sinceVersion}, so that only those have to be drawn again.
+     * @param sinceVersion a version returned by {@link #getVersion()}.
+     * @return a mask of the rows, where bit {@code i} is set if the row
+     * {@code i + 1} changed. On boards taller than 64 rows, bit {@code 63}
+     * stands for the row {@code 64} and every row above it.
+     */
+    public long getDirtyRows(long sinceVersion) {
+        long rows = 0;
+        for (int j = 0; j < height; j++) {
+            if (rowVersions[j] > sinceVersion) {
+                rows |= 1L << Math.min(j, Long.SIZE - 1);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the version of the blocks when the blocks of {@code row}
+     * last changed, as used by {@link #getDirtyRows(long)}.
+     * @param row one-indexed.
+     * @return the version.
+     */
+    public long getRowVersion(int row) {
+        return rowVersions[row - 1];
+    }
+
+    /**
+     * Returns a number that goes up every time the current Tetromino
+     * or the ghost piece changes: moves, rotates, spawns, locks or
+     * (for the ghost piece) is toggled.
+     * @return the version of the pieces.
+     */
+    public long getPieceVersion() {
+        return this.pieceVersion;
+    }
+
+    /**
+     * Returns how many times it was checked whether a piece fits somewhere
+     * on this board, by {@link #collides(Tetromino, int, int)}, since it
+     * was created. It's never reset, not even along with the board.
+     * @return the amount of collision checks.
+     */
+    public long getCollisionChecks() {
+        return this.collisionChecks;
+    }
+
+    /**
+     * Sets the metrics that are told about every rotation
+     * that had to try wall kicks.
+     * @param metrics the metrics, or {@code null} for none.
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Bumps the version of the blocks and stamps it on the
+     * rows from {@code from} to {@code to} (zero-indexed).
+     */
+    private void rowsChanged(int from, int to) {
+        version++;
+        for (int j = from; j <= to; j++) {
+            rowVersions[j] = version;
+        }
+    }
+
+    /**
+     * Returns the xor of the Zobrist keys of the cells
+     * of {@code row} (zero-indexed) set in {@code bits}.
+     */
+    private static long rowHash(long bits, int row) {
+        long[] keys = ZOBRIST_KEYS[row];
+        long h = 0;
+        while (bits != 0) {
+            h ^= keys[Long.numberOfTrailingZeros(bits)];
+            bits &= bits - 1;
+        }
+        return h;
+    }
+
     private boolean validIndex(int x, int y) {
         return x >= 1 && x <= width && y >= 1 && y <= height;
     }
 
-    public Block getBlockAtCell(int x, int y) {
+    /**
+     * Checks whether there's a block at the cell {@code (x, y)}.
+     * Cells outside of the board are never occupied.
+     * @param x the column, from {@code 1} to {@code getWidth()}.
+     * @param y the row, from {@code 1} to {@code getHeight()}.
+     * @return {@code true} if the cell is occupied.
+     */
+    public boolean isCellOccupied(int x, int y) {
         if (!validIndex(x, y)) {
+            return false;
+        }
+        return (rowBits[y - 1] >>> (x - 1) & 1) != 0;
+    }
+
+    /**
+     * Returns the color index of the block at the cell {@code (x, y)}.
+     * @param x the column, from {@code 1} to {@code getWidth()}.
+     * @param y the row, from {@code 1} to {@code getHeight()}.
+     * @return the color index, or {@code 0} if the cell is empty
+     * or outside of the board.
+     */
+    public int getColorAtCell(int x, int y) {
+        if (!validIndex(x, y)) {
+            return 0;
+        }
+        return this.board[y - 1][x - 1] & 0xFF;
+    }
+
+    /**
+     * Puts a block of color {@code color} at the cell {@code (x, y)},
+     * or empties it if {@code color} is {@code 0}. Meant for setting up
+     * boards (garbage, puzzles, fixtures) rather than for playing.
+     * @param x the column, from {@code 1} to {@code getWidth()}.
+     * @param y the row, from {@code 1} to {@code getHeight()}.
+     * @param color the color index, from {@code 0} to {@code 255}.
+     * @return {@code false} if there's no such cell.
+     */
+    public boolean setCell(int x, int y, int color) {
+        if (!validIndex(x, y)) {
+            return false;
+        }
+        boolean wasOccupied = isCellOccupied(x, y);
+        board[y - 1][x - 1] = (byte) color;
+        rowsChanged(y - 1, y - 1);
+        if (color == 0 && wasOccupied) {
+            hash ^= ZOBRIST_KEYS[y - 1][x - 1];
+            rowBits[y - 1] &= ~(1L << (x - 1));
+            blocksPerRow[y - 1]--;
+            blocksPerColumn[x - 1]--;
+            updateColumnHeights();
+        } else if (color != 0 && !wasOccupied) {
+            hash ^= ZOBRIST_KEYS[y - 1][x - 1];
+            rowBits[y - 1] |= 1L << (x - 1);
+            blocksPerRow[y - 1]++;
+            blocksPerColumn[x - 1]++;
+            columnHeights[x - 1] = Math.max(columnHeights[x - 1], y);
+        }
+        if (currentTetromino != null) {
+            pieceVersion++;
+            updateGhostPiece();
+        }
+        return true;
+    }
+
+    /**
+     * Returns a new Block describing the cell {@code (x, y)}.
+     * @param x the column, from {@code 1} to {@code getWidth()}.
+     * @param y the row, from {@code 1} to {@code getHeight()}.
+     * @return the Block or {@code null} if the cell is empty or
+     * outside of the board.
+     */
+    public Block getBlockAtCell(int x, int y) {
+        if (!isCellOccupied(x, y)) {
             return null;
         }
-        return this.board[y - 1][x - 1];
+        return new Block(x, y, getColorAtCell(x, y));
     }
 
     public Tetromino getCurrentTetromino() {
@@ -113,10 +353,11 @@ public class TetrisBoard {
     }
 
     public boolean setCurrentTetromino(Tetromino next) {
-        if (this.checkCollisions(next, 0, 0, (x, y) -> false)) {
+        if (this.collides(next, 0, 0)) {
             return false;
         }
         this.currentTetromino = next;
+        this.pieceVersion++;
         this.setGhostPiece();
         this.updateGhostPiece();
         return true;
@@ -130,7 +371,12 @@ public class TetrisBoard {
         if (!toggleGhostPiece) {
             return;
         }
-        this.ghostPiece = currentTetromino.copy();
+        if (ghostBuffer == null) {
+            ghostBuffer = currentTetromino.copy();
+        } else {
+            ghostBuffer.copyFrom(currentTetromino);
+        }
+        this.ghostPiece = ghostBuffer;
     }
 
     private void updateGhostPiece() {
@@ -138,10 +384,8 @@ public class TetrisBoard {
             return;
         }
 
-        this.ghostPiece.setPosition(this.currentTetromino.getPosition());
-        while (!checkCollisions(this.ghostPiece, 0, -1, (x, y) -> y <= 1)) {
-            this.ghostPiece.moveDown();
-        }
+        int distance = dropDistance(this.currentTetromino);
+        this.ghostPiece.setPosition(this.currentTetromino.getX(), this.currentTetromino.getY() - distance);
     }
 
     public boolean moveCurrTetrominoDown() {
@@ -149,11 +393,12 @@ public class TetrisBoard {
             return false;
         }
 
-        if (checkCollisions(this.currentTetromino, 0, -1, (x, y) -> y <= 1)) {
+        if (collides(this.currentTetromino, 0, -1)) {
             return false;
         }
 
         currentTetromino.moveDown();
+        this.pieceVersion++;
         this.updateGhostPiece();
         return true;
     }
@@ -163,11 +408,12 @@ public class TetrisBoard {
             return false;
         }
 
-        if (checkCollisions(this.currentTetromino, -1, 0, (x, y) -> x <= 1)) {
+        if (collides(this.currentTetromino, -1, 0)) {
             return false;
         }
 
         currentTetromino.moveLeft();
+        this.pieceVersion++;
         if (toggleGhostPiece) {
             ghostPiece.moveLeft();
         }
@@ -180,11 +426,12 @@ public class TetrisBoard {
             return false;
         }
 
-        if (checkCollisions(this.currentTetromino, 1, 0, (x, y) -> x >= width)) {
+        if (collides(this.currentTetromino, 1, 0)) {
             return false;
         }
 
         currentTetromino.moveRight();
+        this.pieceVersion++;
         if (toggleGhostPiece) {
             ghostPiece.moveRight();
         }
@@ -196,122 +443,217 @@ public class TetrisBoard {
         if (currentTetromino == null) {
             return;
         }
-        while (moveCurrTetrominoDown()) {
-            // :D :3 uwu owo :| :/ :> qwq
-        }
+        int distance = dropDistance(currentTetromino);
+        currentTetromino.setPosition(currentTetromino.getX(), currentTetromino.getY() - distance);
+        this.pieceVersion++;
+        this.updateGhostPiece();
     }
 
     public boolean rotateCurrTetrominoClockwise() {
+        return rotateCurrTetromino(1);
+    }
+    
+    public boolean rotateCurrTetrominoCounterclockwise() {
+        return rotateCurrTetromino(-1);
+    }
+
+    /**
+     * Rotates the current Tetromino, wall kicking it if needed.
+     * @param wise {@code 1} for clockwise and {@code -1} for counterclockwise.
+     */
+    private boolean rotateCurrTetromino(int wise) {
         if (currentTetromino == null) {
             return false;
         }
-        currentTetromino.rotateClockwise();
+        rotate(currentTetromino, wise);
 
-        if (this.checkCollisions(this.currentTetromino, 0, 0, (x, y) -> false)) {
-            if (!wallKick()) {
-                currentTetromino.rotateCounterclockwise();
-                return false;
-            }
+        WallKickEvent event = null;
+        if (WallKickEvent.isRecording()) {
+            event = new WallKickEvent();
+            event.begin();
         }
-        if (toggleGhostPiece) {
-            ghostPiece.rotateClockwise();
+        int test = findRotationKick(currentTetromino, wise);
+        if (event != null && test != 0) {
+            event.piece = currentTetromino.getTetrominoName();
+            event.clockwise = wise > 0;
+            event.fromRotation = currentTetromino.getPreviousRotation();
+            event.test = test;
+            event.succeeded = test != NO_KICK;
+            event.commit();
         }
-        this.updateGhostPiece();
-        return true;
-    }
-    
-    public boolean rotateCurrTetrominoCounterclockwise() {
-        if (currentTetromino == null) {
+        if (metrics != null && test != 0) {
+            metrics.recordWallKick(test != NO_KICK);
+        }
+        if (test == NO_KICK) {
+            rotate(currentTetromino, -wise);
             return false;
         }
-        currentTetromino.rotateCounterclockwise();
-
-        if (this.checkCollisions(this.currentTetromino, 0, 0, (x, y) -> false)) {
-            if (!wallKick()) {
-                currentTetromino.rotateClockwise();
-                return false;
-            }
+        if (test > 0) {
+            int[] kick = currentTetromino.getWallKickData()[currentTetromino.getPreviousRotation()][test - 1];
+            currentTetromino.setPosition(currentTetromino.getX() + kick[0] * wise, currentTetromino.getY() + kick[1] * wise);
         }
+        this.pieceVersion++;
         if (toggleGhostPiece) {
-            ghostPiece.rotateCounterclockwise();
+            rotate(ghostPiece, wise);
         }
         this.updateGhostPiece();
         return true;
     }
 
-    private boolean wallKick() {
-        int prevRot = this.currentTetromino.getPreviousRotation();
-        int currRot = this.currentTetromino.getCurrentRotation();
-        if (prevRot <= -1) {
-            return false;
-        }
-
-        int wise = 0;
-        if (currRot == 3) {
-            if (prevRot == 0) {
-                wise = -1;
-            } else {
-                wise = 1;
-            }
-        } else if (currRot == 0) {
-            if (prevRot == 3) {
-                wise = 1;
-            } else {
-                wise = -1;
-            }
+    private static void rotate(Tetromino piece, int wise) {
+        if (wise > 0) {
+            piece.rotateClockwise();
         } else {
-            wise = currRot - prevRot;
-        }
-
-        int[][][] wallkickData = WALLKICK;
-        if (this.currentTetromino.getTetrominoName().equalsIgnoreCase("I")) {
-            wallkickData = WALLKICK_I;
+            piece.rotateCounterclockwise();
         }
+    }
 
+    /**
+     * Finds out where {@code piece}, which has just been rotated, would end up
+     * if the current Tetromino had been rotated the same way: either right where
+     * it is or moved by one of its wall kick tests. The piece itself is not moved.
+     * <p>
+     * Kicks are only tried if the rotated piece is still within the board.
+     * @param piece a piece that has just been rotated.
+     * @param wise {@code 1} if it was rotated clockwise and
+     * {@code -1} if it was rotated counterclockwise.
+     * @return {@code 0} if the piece fits where it is, the number (from {@code 1}
+     * to {@code 4}) of the first wall kick test that fits it, or {@link #NO_KICK}
+     * if the rotation isn't possible at all.
+     */
+    public int findRotationKick(Tetromino piece, int wise) {
+        if (!this.collides(piece, 0, 0)) {
+            return 0;
+        }
+        int prevRot = piece.getPreviousRotation();
+        if (prevRot <= -1 || isOutOfBounds(piece, 0, 0)) {
+            return NO_KICK;
+        }
+
+        int[][][] wallkickData = piece.getWallKickData();
         for (int i = 0; i < 4; i++) {
             int x = wallkickData[prevRot][i][0] * wise;
             int y = wallkickData[prevRot][i][1] * wise;
-            if (!this.checkCollisions(this.currentTetromino, x, y, (x1, y1) -> !validIndex(x1, y1))) {
-                Point2D.Float pos = this.currentTetromino.getPosition();
-                this.currentTetromino.setPosition(pos.x + x, pos.y + y);
-                return true;
+            if (!this.collides(piece, x, y)) {
+                return i + 1;
             }
         }
-        return false;
+        return NO_KICK;
     }
 
     public void placeCurrTetromino() {
         if (currentTetromino == null) {
             return;
         }
-        Block[] cells = currentTetromino.getBody();
-        Point2D.Float pos = currentTetromino.getPosition();
+        byte color = (byte) currentTetromino.getColor();
+        int posX = currentTetromino.getX();
+        int posY = currentTetromino.getY();
+        int minY = height, maxY = 0;
 
-        for (Block b : cells) {
-            int x = (int) (b.getX() + pos.x) - 1,
-                y = (int) (b.getY() + pos.y) - 1;
+        for (int i = 0; i < currentTetromino.size(); i++) {
+            int x = currentTetromino.getCellX(i) + posX - 1,
+                y = currentTetromino.getCellY(i) + posY - 1;
             
-            b.setX(x);
-            b.setY(y);
-            board[y][x] = b;
+            board[y][x] = color;
+            rowBits[y] |= 1L << x;
+            hash ^= ZOBRIST_KEYS[y][x];
+            columnHeights[x] = Math.max(columnHeights[x], y + 1);
             blocksPerColumn[x]++;
             blocksPerRow[y]++;
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
         }
+        rowsChanged(minY, maxY);
+        pieceVersion++;
         currentTetromino.resetPiece();
         currentTetromino = null;
         ghostPiece = null;
     }
 
-    private boolean checkCollisions(Tetromino piece, int xOffset, int yOffset, BiPredicate<Integer, Integer> extraTestForXAndY) {
+    /**
+     * Returns how many rows {@code piece} can move down from where it is.
+     * If every cell of the piece is above the topmost block of its column,
+     * that's just the smallest gap between them. Otherwise the piece is
+     * tucked under something and the bitboard is probed row by row.
+     * @param piece any piece that fits where it is, not necessarily the current one.
+     * @return the amount of rows.
+     */
+    public int dropDistance(Tetromino piece) {
+        int posX = piece.getX();
+        int posY = piece.getY();
+
+        int distance = Integer.MAX_VALUE;
+        for (int i = 0; i < piece.size(); i++) {
+            int x = piece.getCellX(i) + posX;
+            int y = piece.getCellY(i) + posY;
+            int gap = y - columnHeights[x - 1] - 1;
+            if (gap < 0) {
+                distance = 0;
+                while (!collides(piece, 0, -(distance + 1))) {
+                    distance++;
+                }
+                return distance;
+            }
+            distance = Math.min(distance, gap);
+        }
+        return distance;
+    }
+
+    /**
+     * Recomputes the height of every column from the bitboard, scanning
+     * down from the tallest column until every column has been found.
+     */
+    private void updateColumnHeights() {
+        int top = 0;
+        for (int col = 0; col < width; col++) {
+            top = Math.max(top, columnHeights[col]);
+            columnHeights[col] = 0;
+        }
+
+        long pending = width == Long.SIZE ? -1L : (1L << width) - 1;
+        for (int row = Math.min(top, height) - 1; row >= 0 && pending != 0; row--) {
+            long found = rowBits[row] & pending;
+            pending &= ~found;
+            while (found != 0) {
+                columnHeights[Long.numberOfTrailingZeros(found)] = row + 1;
+                found &= found - 1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether {@code piece} would leave the board if it
+     * were moved by {@code (xOffset, yOffset)}.
+     */
+    private boolean isOutOfBounds(Tetromino piece, int xOffset, int yOffset) {
+        int left = piece.getMaskColumn() + xOffset;
+        int bottom = piece.getMaskRow() + yOffset;
+        return left < 1 || left + piece.getMaskWidth() - 1 > width
+            || bottom < 1 || bottom + piece.getRowMasks().length - 1 > height;
+    }
+
+    /**
+     * Checks whether {@code piece} would leave the board or overlap any
+     * placed block if it were moved by {@code (xOffset, yOffset)}.
+     * @param piece any piece, not necessarily the current one.
+     * @param xOffset
+     * @param yOffset
+     * @return {@code true} if the piece wouldn't fit there.
+     */
+    public boolean collides(Tetromino piece, int xOffset, int yOffset) {
         if (piece == null) {
             return false;
         }
-        Block[] cells = piece.getBody();
-        Point2D.Float pos = piece.getPosition();
-        for (Block block : cells) {
-            int blockY = (int) (block.getY() + pos.y);
-            int blockX = (int) (block.getX() + pos.x);
-            if (!validIndex(blockX + xOffset, blockY + yOffset) || extraTestForXAndY.test(blockX, blockY) || (board[blockY - 1 + yOffset][blockX - 1 + xOffset] != null)) {
+        collisionChecks++;
+        if (isOutOfBounds(piece, xOffset, yOffset)) {
+            return true;
+        }
+
+        int[] masks = piece.getRowMasks();
+        int shift = piece.getMaskColumn() + xOffset - 1;
+        int row = piece.getMaskRow() + yOffset - 1;
+        for (int i = 0; i < masks.length; i++) {
+            if (((long) masks[i] << shift & rowBits[row + i]) != 0) {
                 return true;
             }
         }
@@ -323,17 +665,25 @@ public class TetrisBoard {
             return;
         }
 
+        for (int rows = row - 1; rows < height; rows++) {
+            hash ^= rowHash(rowBits[rows], rows);
+        }
         for (int rows = row - 1; rows < height - 1; rows++) {
+            hash ^= rowHash(rowBits[rows + 1], rows);
             blocksPerRow[rows] = blocksPerRow[rows + 1];
+            rowBits[rows] = rowBits[rows + 1];
             for (int col = 0; col < width; col++) {
                 board[rows][col] = board[rows + 1][col];
             }
         }
         blocksPerRow[height - 1] = 0;
+        rowBits[height - 1] = 0;
 
         for (int col = 0; col < width; col++) {
-            board[height - 1][col] = null;
+            board[height - 1][col] = 0;
         }
+        rowsChanged(row - 1, height - 1);
+        updateColumnHeights();
     }
 
     public void clearRow(int row) {
@@ -341,23 +691,252 @@ public class TetrisBoard {
             return;
         }
 
+        hash ^= rowHash(rowBits[row - 1], row - 1);
         blocksPerRow[row - 1] = 0;
+        rowBits[row - 1] = 0;
         for (int col = 0; col < width; col++) {
-            board[row - 1][col] = null;
+            board[row - 1][col] = 0;
             blocksPerColumn[col]--;
         }
+        rowsChanged(row - 1, row - 1);
+        updateColumnHeights();
+    }
+
+    /**
+     * Clears every full row of the board and pulls the rows above
+     * them down, all in a single pass from the bottom to the top.
+     * Only boards of up to 64 rows can clear their rows this way,
+     * taller ones have to use {@link #clearFullRows(long[])}.
+     * @return a mask of the rows that were cleared, where bit {@code i}
+     * is set if the row {@code i + 1} was full. {@code Long.bitCount}
+     * of it is the amount of cleared rows.
+     * @throws IllegalStateException if the board is taller than 64 rows.
+     */
+    public long clearFullRows() {
+        if (height > Long.SIZE) {
+            throw new IllegalStateException("the rows of a " + width + "x" + height + " board don't fit in a mask");
+        }
+        clearFullRows(clearedRows);
+        return clearedRows[0];
+    }
+
+    /**
+     * Clears every full row of the board and pulls the rows above
+     * them down, all in a single pass from the bottom to the top.
+     * @param cleared where to put a mask of the rows that were cleared,
+     * where bit {@code i % 64} of {@code cleared[i / 64]} is set if the row
+     * {@code i + 1} was full, or {@code null} if only the amount matters.
+     * It must have room for {@code (getHeight() + 63) / 64} longs.
+     * @return the amount of cleared rows.
+     */
+    public int clearFullRows(long[] cleared) {
+        long fullRow = width == Long.SIZE ? -1L : (1L << width) - 1;
+        if (cleared != null) {
+            Arrays.fill(cleared, 0, (height + Long.SIZE - 1) / Long.SIZE, 0);
+        }
+
+        // rows below dst are done. the arrays between dst and src
+        // belong to cleared rows and are recycled as the top rows
+        int dst = 0;
+        int lowest = -1;
+        for (int src = 0; src < height; src++) {
+            if (rowBits[src] == fullRow) {
+                if (cleared != null) {
+                    cleared[src >>> 6] |= 1L << src;
+                }
+                if (lowest == -1) {
+                    lowest = src;
+                }
+                hash ^= rowHash(fullRow, src);
+                continue;
+            }
+            if (dst != src) {
+                hash ^= rowHash(rowBits[src], src) ^ rowHash(rowBits[src], dst);
+                byte[] aux = board[dst];
+                board[dst] = board[src];
+                board[src] = aux;
+                rowBits[dst] = rowBits[src];
+                blocksPerRow[dst] = blocksPerRow[src];
+            }
+            dst++;
+        }
+        int count = height - dst;
+        if (count == 0) {
+            return 0;
+        }
+
+        for (int col = 0; col < width; col++) {
+            blocksPerColumn[col] -= count;
+        }
+        for (int row = dst; row < height; row++) {
+            Arrays.fill(board[row], (byte) 0);
+            rowBits[row] = 0;
+            blocksPerRow[row] = 0;
+        }
+        // everything from the lowest cleared row up has moved
+        rowsChanged(lowest, height - 1);
+        updateColumnHeights();
+        return count;
     }
 
     public void clearAll() {
         for (int i = 0; i < width; i++) {
             blocksPerColumn[i] = 0;
+            columnHeights[i] = 0;
             for (int j = 0; j < height; j++) {
-                board[j][i] = null;
+                board[j][i] = 0;
             }
         }
         for (int j = 0; j < height; j++) {
             blocksPerRow[j] = 0;
+            rowBits[j] = 0;
+        }
+        hash = 0;
+        rowsChanged(0, height - 1);
+
+        this.currentTetromino = null;
+        this.pieceVersion++;
+        this.ghostPiece = null;
+    }
+
+    /**
+     * Writes the blocks of this board (and whether its ghost piece is on)
+     * into {@code buffer}, one byte per cell, so that
+     * {@link #readState(ByteBuffer)} can bring them back later.
+     * Only the rows up to the highest block are written, and
+     * the current Tetromino is left out.
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        int top = 0;
+        for (int i = 0; i < width; i++) {
+            top = Math.max(top, columnHeights[i]);
         }
+        buffer.put((byte) width);
+        buffer.put((byte) height);
+        buffer.put((byte) (toggleGhostPiece ? 1 : 0));
+        buffer.put((byte) top);
+        for (int j = 0; j < top; j++) {
+            buffer.put(board[j], 0, width);
+        }
+    }
+
+    /**
+     * Turns the blocks of this board into the ones written into
+     * {@code buffer} by {@link #writeState(ByteBuffer)}. This board
+     * ends up with no current Tetromino.
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer) {
+        checkState(buffer, buffer.position());
+        buffer.get();
+        buffer.get();
+        boolean ghost = buffer.get() != 0;
+        int top = buffer.get() & 0xFF;
+        this.toggleGhostPiece = ghost;
+
+        clearAll();
+        for (int j = 0; j < top; j++) {
+            buffer.get(board[j], 0, width);
+            for (int i = 0; i < width; i++) {
+                if (board[j][i] != 0) {
+                    rowBits[j] |= 1L << i;
+                    blocksPerRow[j]++;
+                    blocksPerColumn[i]++;
+                    columnHeights[i] = j + 1;
+                    hash ^= ZOBRIST_KEYS[j][i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks, without reading past it, that the state at {@code index} of
+     * {@code buffer} is one {@link #readState(ByteBuffer)} can bring back:
+     * that it's whole and that it came from a board as wide and as tall as
+     * this one.
+     * @param buffer
+     * @param index where the state starts.
+     * @return how many bytes the state takes.
+     * @throws IllegalArgumentException if it isn't a valid state.
+     */
+    public int checkState(ByteBuffer buffer, int index) {
+        if (index + STATE_HEADER > buffer.limit()) {
+            throw new IllegalArgumentException("invalid board state");
+        }
+        int width = buffer.get(index) & 0xFF;
+        int height = buffer.get(index + 1) & 0xFF;
+        if (width != this.width || height != this.height) {
+            throw new IllegalArgumentException("expected a " + this.width + "x" + this.height + " board, got "
+                    + width + "x" + height);
+        }
+        int top = buffer.get(index + 3) & 0xFF;
+        if (top > height || index + STATE_HEADER + top * width > buffer.limit()) {
+            throw new IllegalArgumentException("invalid board state");
+        }
+        return STATE_HEADER + top * width;
+    }
+
+    /**
+     * Checks whether a piece of type {@code type} in the rotation {@code rotation}
+     * at {@code (x, y)} would fit on the board whose state, already checked by
+     * {@link #checkState(ByteBuffer, int)}, is at {@code index} of {@code buffer}.
+     */
+    boolean fitsInState(ByteBuffer buffer, int index, TetrominoType type, int rotation, int x, int y) {
+        int top = buffer.get(index + 3) & 0xFF;
+        for (int i = 0; i < type.size(); i++) {
+            int cellX = type.getCellX(rotation, i) + x;
+            int cellY = type.getCellY(rotation, i) + y;
+            if (!validIndex(cellX, cellY)) {
+                return false;
+            }
+            if (cellY <= top && buffer.get(index + STATE_HEADER + (cellY - 1) * width + cellX - 1) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a {@link Snapshot} of the blocks of this board. Like with
+     * {@link #writeState(ByteBuffer)}, the current Tetromino is left out.
+     * @return the Snapshot.
+     */
+    public Snapshot snapshot() {
+        return Snapshot.take(Snapshot.BOARD, this::writeState);
+    }
+
+    /**
+     * Turns the blocks of this board back into the ones in {@code snapshot},
+     * which must have been taken from a board of the same dimensions.
+     * This board ends up with no current Tetromino.
+     * @param snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        readState(snapshot.state(Snapshot.BOARD));
+    }
+
+    /**
+     * Turns the blocks of this board into a copy of the blocks of
+     * {@code other} without allocating anything. The current Tetromino
+     * is left out, so this board ends up with none.
+     * @param other a board of the same dimensions as this one.
+     */
+    public void copyBlocksFrom(TetrisBoard other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("expected a " + width + "x" + height + " board, got "
+                    + other.width + "x" + other.height);
+        }
+        for (int j = 0; j < height; j++) {
+            System.arraycopy(other.board[j], 0, board[j], 0, width);
+        }
+        System.arraycopy(other.rowBits, 0, rowBits, 0, height);
+        System.arraycopy(other.blocksPerRow, 0, blocksPerRow, 0, height);
+        System.arraycopy(other.blocksPerColumn, 0, blocksPerColumn, 0, width);
+        System.arraycopy(other.columnHeights, 0, columnHeights, 0, width);
+        this.hash = other.hash;
+        rowsChanged(0, height - 1);
+        this.pieceVersion++;
 
         this.currentTetromino = null;
         this.ghostPiece = null;
@@ -1,11 +1,12 @@
 package com.mauro.tetris.tetris;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 
 import javax.swing.JFrame;
-import javax.swing.JPanel;
 
+import com.mauro.tetris.tetris.gui.ActiveTetrisRenderer;
 import com.mauro.tetris.tetris.gui.TetrisRenderer;
 
 /**
@@ -19,7 +20,31 @@ public class TetrisGUI extends JFrame {
      * @param game the TetrisGame to be rendered.
      */
     public TetrisGUI(TetrisGame game) {
-        this.add(mainPanel(game));
+        this(game, false);
+    }
+
+    /**
+     * Creates a new TetrisGUI
+     * @param game the TetrisGame to be rendered.
+     * @param activeRendering whether the game gets a thread of its own that
+     * paints it once per display refresh (see {@link ActiveTetrisRenderer})
+     * instead of being repainted by Swing.
+     */
+    public TetrisGUI(TetrisGame game, boolean activeRendering) {
+        this(new GameLoop(game), activeRendering);
+    }
+
+    /**
+     * Creates a new TetrisGUI
+     * @param loop the loop running the TetrisGame to be rendered. It's
+     * started when the game is shown.
+     * @param activeRendering whether the game gets a thread of its own that
+     * paints it once per display refresh (see {@link ActiveTetrisRenderer})
+     * instead of being repainted by Swing.
+     */
+    public TetrisGUI(GameLoop loop, boolean activeRendering) {
+        Component panel = mainPanel(loop, activeRendering);
+        this.add(panel);
         this.setBackground(Color.BLACK);
         this.setDefaultCloseOperation(EXIT_ON_CLOSE);
         this.setTitle("Tetris");
@@ -27,13 +52,15 @@ public class TetrisGUI extends JFrame {
         this.setSize(800, 800);
         this.setLocationRelativeTo(null);
         this.setVisible(true);
+        panel.requestFocusInWindow();
     }
 
     // we might use multiple panels for the different screens
-    private JPanel mainPanel(TetrisGame game) {
+    private Component mainPanel(GameLoop loop, boolean activeRendering) {
         Dimension dim = new Dimension(800, 800);
-        JPanel panel = new TetrisRenderer(game, dim);
-
-        return panel;
+        if (activeRendering) {
+            return new ActiveTetrisRenderer(loop, dim);
+        }
+        return new TetrisRenderer(loop, dim);
     }
 }
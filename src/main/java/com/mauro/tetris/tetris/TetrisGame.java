@@ -1,24 +1,76 @@
 package com.mauro.tetris.tetris;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.PieceGenerator;
 import com.mauro.tetris.pieces.Tetromino;
 import com.mauro.tetris.pieces.TetrominoFactory;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.jfr.LineClearEvent;
+import com.mauro.tetris.tetris.jfr.LockEvent;
+import com.mauro.tetris.tetris.jfr.TickEvent;
+import com.mauro.tetris.tetris.metrics.EngineMetrics;
+import com.mauro.tetris.tetris.sim.Controller;
 
 /**
  * The TetrisGame class manages the game and its more general
  * rules.
+ * <p>
+ * The game can be driven in two ways. {@link #update(long)} advances it
+ * by however much time has passed, which is as precise as the clock
+ * behind it. Alternatively, the game can run on a fixed timestep, where
+ * the logic only ever advances in frames of the same length: {@link #step(int)}
+ * runs a single frame without looking at any clock, and {@link #advance(long)}
+ * runs as many frames as fit in the given time, catching up if the caller
+ * fell behind. Given the same seed and the same inputs at the same frames,
+ * the fixed timestep always gives the same game.
+ * <p>
+ * Keys can also be handed to the game through an {@link InputQueue}, as
+ * they're pressed and released. Every frame takes the events that happened
+ * up to its own time off the queue, applies the presses right away and
+ * repeats whatever is still held by itself: left and right only start
+ * repeating after the auto shift delay (DAS), and then every so many frames
+ * (ARR), and soft drop repeats at a rate of its own. All of them are counted
+ * in frames, so how a held key behaves doesn't depend on the OS or on when
+ * the keys happen to be read.
  */
 public class TetrisGame {
     private static final long LOCK_DELAY = (long) 5e8;
-
+    private static final int NEXT_PIECE_QUEUE_SIZE = 7;
+    private static final long DEFAULT_FRAME_INTERVAL = 1_000_000_000L / 60;
+    // time beyond this many frames is dropped instead of caught up with
+    private static final int MAX_CATCH_UP_FRAMES = 15;
+
+    // in frames
+    private static final int DEFAULT_AUTO_SHIFT_DELAY = 10;
+    private static final int DEFAULT_AUTO_REPEAT_RATE = 2;
+    private static final int DEFAULT_SOFT_DROP_RATE = 1;
+
+    // what writeState() puts before the piece sequence (8 longs, the flags, the
+    // held keys, the shift direction and two frame counts), and after the board
+    // when there's a current piece (type, x, y and rotation)
+    private static final int STATE_HEADER = 8 * Long.BYTES + 3 + 2 * Integer.BYTES;
+    private static final int PIECE_STATE = 1 + 2 * Short.BYTES + 1;
+
+    // the order in which the actions given to step() are applied
+    private static final Actions[] STEP_ORDER = {
+        Actions.ROTATE_CLOCKWISE, Actions.ROTATE_COUNTERCLOCKWISE,
+        Actions.MOVE_LEFT, Actions.MOVE_RIGHT,
+        Actions.MOVE_DOWN, Actions.HARD_DROP
+    };
+
+    private static final TetrominoType[] TYPES = TetrominoType.values();
+    private static final int ALL_ACTIONS = (1 << Actions.values().length) - 1;
+
+    // one piece of each type, indexed by their ordinals.
+    // they're reused every time a piece of their type is needed
     private List<Tetromino> pieces;
-    private Queue<Tetromino> bag;
+    private PieceGenerator generator;
 
     private TetrisBoard board;
 
@@ -26,34 +78,83 @@ public class TetrisGame {
     private long lockDelayAccumulator;
     private long updateInterval;
 
-    private int nextPieceIdx;
+    private long frameInterval;
+    private long frameAccumulator;
+    private long frame;
+    // where the last call to advance() left the game, on the timeline of the input queue
+    private long clock;
+
+    private InputQueue inputQueue;
+    // the keys held down, as action bits
+    private int heldActions;
+    // the direction being shifted while held (or null), for how many frames
+    // it has been, and for how many frames soft drop has been held
+    private Actions shiftDirection;
+    private int shiftFrames;
+    private int softDropFrames;
+    private int autoShiftDelay;
+    private int autoRepeatRate;
+    private int softDropRate;
+
+    private long piecesPlaced;
+    private long linesCleared;
 
     private boolean isOver;
     private boolean hasJustMoved;
+    // bumped whenever the next piece queue changes
+    private long queueVersion;
+
+    private GameListener listener;
+
+    private EngineMetrics metrics;
+    // the collision checks of the board the metrics were last told about
+    private long reportedCollisionChecks;
 
     /**
      * Creates a new TetrisGame with TetrisBoard {@code board}
      * and a specific update interval (given in nanoseconds)
-     * in which the piece moves down.
+     * in which the piece moves down. The pieces come in a
+     * random order.
      * @param board
      * @param updateIntervalInNanoSeconds the update interval in nanoseconds
      */
     public TetrisGame(TetrisBoard board, long updateIntervalInNanoSeconds) {
+        this(board, updateIntervalInNanoSeconds, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a new TetrisGame with TetrisBoard {@code board}
+     * and a specific update interval (given in nanoseconds)
+     * in which the piece moves down. The order in which the
+     * pieces come is entirely determined by {@code seed}.
+     * @param board
+     * @param updateIntervalInNanoSeconds the update interval in nanoseconds
+     * @param seed the seed of the piece generator.
+     */
+    public TetrisGame(TetrisBoard board, long updateIntervalInNanoSeconds, long seed) {
         this.board = board;
 
         TetrominoFactory fac = new TetrominoFactory(board.getWidth(), board.getHeight());
 
-        this.nextPieceIdx = 0;
         this.pieces = fac.getPieces();
-        Collections.shuffle(pieces);
-        this.bag = new LinkedList<>(pieces);
-
-        this.setPieces7bag();
+        this.generator = new PieceGenerator(seed);
 
         this.elapsedTimeAccumulator = this.lockDelayAccumulator = 0;
         this.updateInterval = updateIntervalInNanoSeconds;
+        this.frameInterval = DEFAULT_FRAME_INTERVAL;
+        this.frameAccumulator = 0;
+        this.frame = 0;
+        this.clock = 0;
+        this.inputQueue = null;
+        this.autoShiftDelay = DEFAULT_AUTO_SHIFT_DELAY;
+        this.autoRepeatRate = DEFAULT_AUTO_REPEAT_RATE;
+        this.softDropRate = DEFAULT_SOFT_DROP_RATE;
+        this.piecesPlaced = this.linesCleared = 0;
         this.isOver = false;
         this.hasJustMoved = false;
+        this.listener = null;
+
+        this.setPieces7bag();
     }
 
     /**
@@ -65,17 +166,163 @@ public class TetrisGame {
         return this.board.toggleGhostPiece();
     }
 
+    /**
+     * Sets who is told about what happens in this TetrisGame.
+     * @param listener the listener, or {@code null} for no one.
+     */
+    public void setListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns who is told about what happens in this TetrisGame.
+     * @return the listener, or {@code null} if there's none.
+     */
+    public GameListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * Sets the metrics that are told about every update of this TetrisGame
+     * (and how long it took), every line clear, every lock delay running
+     * out, and about the collision checks and wall kicks of its board.
+     * Only the thread running the game may call this.
+     * @param metrics the metrics, or {@code null} for none.
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+        this.reportedCollisionChecks = board.getCollisionChecks();
+        board.setMetrics(metrics);
+    }
+
+    /**
+     * Returns the metrics that are told about this TetrisGame.
+     * @return the metrics, or {@code null} if there are none.
+     */
+    public EngineMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets the queue the keys come through. Every frame of the fixed
+     * timestep takes the events that happened up to its own time off it,
+     * which only makes sense when the game is driven by
+     * {@link #advanceTo(long, Controller)} on the same timeline as the events.
+     * Whatever was held through the previous queue is let go.
+     * @param queue the queue, or {@code null} for none.
+     */
+    public void setInputQueue(InputQueue queue) {
+        this.inputQueue = queue;
+        releaseHeldKeys();
+    }
+
+    /**
+     * Lets go of every key held through the input queue, as if they had all
+     * been released, so that none of them is repeated any more. It's meant
+     * for states brought back by {@link #readState(ByteBuffer)} that are
+     * then driven by something other than the keys they were held through.
+     */
+    public void releaseHeldKeys() {
+        this.heldActions = 0;
+        this.shiftDirection = null;
+        this.shiftFrames = this.softDropFrames = 0;
+    }
+
+    /**
+     * Returns the queue the keys come through.
+     * @return the queue, or {@code null} if there's none.
+     */
+    public InputQueue getInputQueue() {
+        return this.inputQueue;
+    }
+
+    /**
+     * Sets how held left and right keys repeat: after being held for
+     * {@code delayFrames} frames (DAS) the piece shifts once every
+     * {@code repeatFrames} frames (ARR). An ARR of 0 shifts the piece
+     * all the way to the wall at once.
+     * @param delayFrames the auto shift delay, in frames.
+     * @param repeatFrames the auto repeat rate, in frames.
+     */
+    public void setAutoShift(int delayFrames, int repeatFrames) {
+        if (delayFrames < 0 || repeatFrames < 0) {
+            throw new IllegalArgumentException("invalid auto shift: " + delayFrames + ", " + repeatFrames);
+        }
+        this.autoShiftDelay = delayFrames;
+        this.autoRepeatRate = repeatFrames;
+    }
+
+    /**
+     * Returns for how many frames left or right has to be held before
+     * the piece starts shifting on its own (DAS).
+     * @return the auto shift delay, in frames.
+     */
+    public int getAutoShiftDelay() {
+        return this.autoShiftDelay;
+    }
+
+    /**
+     * Returns every how many frames a held left or right shifts
+     * the piece once it started to (ARR).
+     * @return the auto repeat rate, in frames.
+     */
+    public int getAutoRepeatRate() {
+        return this.autoRepeatRate;
+    }
+
+    /**
+     * Sets every how many frames a held soft drop moves the piece down.
+     * @param frames the soft drop rate, at least 1.
+     */
+    public void setSoftDropRate(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("invalid soft drop rate: " + frames);
+        }
+        this.softDropRate = frames;
+    }
+
+    /**
+     * Returns every how many frames a held soft drop moves the piece down.
+     * @return the soft drop rate, in frames.
+     */
+    public int getSoftDropRate() {
+        return this.softDropRate;
+    }
+
+    /**
+     * Returns the seed of the piece generator of this TetrisGame.
+     * @return the seed.
+     */
+    public long getSeed() {
+        return this.generator.getSeed();
+    }
+
     /**
      * Returns the immediate next piece available in the
      * next piece queue (but does not remove it from the queue).
+     * <p>
+     * The returned piece is the one this TetrisGame will use
+     * when its turn comes, so it must not be modified.
      * @return the immediate next piece available in the queue.
      */
     public Tetromino getNextPiece() {
-        return this.bag.peek();
+        return this.pieces.get(generator.peek(0));
     }
 
     /**
-     * Returns a list containing all the pieces used in this TetrisGame.
+     * Returns the type of the piece {@code n} positions ahead in
+     * the next piece queue, {@code 0} being the immediate next one.
+     * Any depth can be looked at.
+     * @param n how many pieces to look ahead.
+     * @return the type of the piece.
+     */
+    public TetrominoType getNextPieceType(int n) {
+        return TYPES[generator.peek(n)];
+    }
+
+    /**
+     * Returns a list containing all the pieces used in this TetrisGame,
+     * indexed by the ordinals of their types.
      * @return a list of Tetrominoes.
      */
     public List<Tetromino> getPieces() {
@@ -107,28 +354,104 @@ public class TetrisGame {
     }
 
     /**
-     * Returns the next piece queue. The queue contains 7 items.
+     * Returns the length of a frame of the fixed timestep (in nanoseconds).
+     * @return the frame interval.
+     */
+    public long getFrameInterval() {
+        return this.frameInterval;
+    }
+
+    /**
+     * Sets the length of a frame of the fixed timestep
+     * to {@code intervalInNanoseconds}. 
+     * @param intervalInNanoseconds the new frame interval.
+     */
+    public void setFrameInterval(long intervalInNanoseconds) {
+        if (intervalInNanoseconds <= 0) {
+            throw new IllegalArgumentException("frame interval must be positive: " + intervalInNanoseconds);
+        }
+        this.frameInterval = intervalInNanoseconds;
+    }
+
+    /**
+     * Returns how many frames of the fixed timestep have been run.
+     * @return the current frame.
+     */
+    public long getFrame() {
+        return this.frame;
+    }
+
+    /**
+     * Returns how many pieces have been placed since the game started.
+     * @return the amount of pieces placed.
+     */
+    public long getPiecesPlaced() {
+        return this.piecesPlaced;
+    }
+
+    /**
+     * Returns how many rows have been cleared since the game started.
+     * @return the amount of rows cleared.
+     */
+    public long getLinesCleared() {
+        return this.linesCleared;
+    }
+
+    /**
+     * Checks whether the game is over, that is, whether the last piece
+     * had no room to spawn. A game that is over doesn't take any more
+     * movements and starts all over again on the next update.
+     * @return {@code true} if the game is over.
+     */
+    public boolean isOver() {
+        return this.isOver;
+    }
+
+    /**
+     * Returns a number that goes up every time anything that's drawn of
+     * this TetrisGame changes: the blocks, the current or ghost piece or
+     * the next piece queue. Whoever draws the game only has to draw it
+     * again when this changes, and {@link TetrisBoard#getDirtyRows(long)},
+     * {@link TetrisBoard#getPieceVersion()} and {@link #getQueueVersion()}
+     * tell which parts it has to draw.
+     * @return the version of the game.
+     */
+    public long getVersion() {
+        return board.getVersion() + board.getPieceVersion() + queueVersion;
+    }
+
+    /**
+     * Returns a number that goes up every time the next piece queue changes.
+     * @return the version of the queue.
+     */
+    public long getQueueVersion() {
+        return this.queueVersion;
+    }
+
+    /**
+     * Returns a copy of the next piece queue. The queue contains 7 items.
+     * {@link #getNextPieceType(int)} is the way to look at the queue
+     * without creating anything.
      * @return the next piece queue.
      */
     public Queue<Tetromino> getNextPieceQueue() {
-        return this.bag;
+        Queue<Tetromino> queue = new LinkedList<>();
+        for (int i = 0; i < NEXT_PIECE_QUEUE_SIZE; i++) {
+            queue.offer(pieces.get(generator.peek(i)).copy());
+        }
+        return queue;
     }
 
     /**
      * Sets the next piece and manages the piece bags.
      */
     private void setPieces7bag() {
-        if (nextPieceIdx <= 0) {
-            Collections.shuffle(pieces);
+        Tetromino next = pieces.get(generator.next());
+        this.queueVersion++;
+        next.resetPiece();
+        if (!board.setCurrentTetromino(next)) {
+            this.isOver = true;
         }
-
-        if (!board.setCurrentTetromino(bag.poll().copy())) {
-            this.reset();
-            return;
-        }
-
-        bag.offer(pieces.get(nextPieceIdx));
-        nextPieceIdx = (nextPieceIdx + 1) % pieces.size();
     }
 
     /**
@@ -137,29 +460,25 @@ public class TetrisGame {
      * {@code false} if none have been cleared.
      */
     private boolean clearRows() {
-        int boardRows = board.getHeight();
-        int boardColumns = board.getWidth();
-
-        int piecesPerRow = -1;
-        ArrayList<Integer> rowsToClear = new ArrayList<>();
-        for (int i = 1; i <= boardRows; i++) {
-            piecesPerRow = board.getAmountOfBlocksInRow(i);
-            if (piecesPerRow == boardColumns) {
-                rowsToClear.add(i);
-                board.clearRow(i);
-            }
+        LineClearEvent event = null;
+        if (LineClearEvent.isRecording()) {
+            event = new LineClearEvent();
+            event.begin();
         }
-        if (rowsToClear.isEmpty()) {
-            return false;
+        // which rows were cleared only matters to the event
+        long[] rows = event == null ? null : new long[(board.getHeight() + Long.SIZE - 1) / Long.SIZE];
+        int cleared = board.clearFullRows(rows);
+        this.linesCleared += cleared;
+        if (metrics != null && cleared != 0) {
+            metrics.recordLineClear(cleared);
         }
-
-        // ideally, we'd want to do this in a single pass
-        // but this way is working as intended
-        rowsToClear.sort(Collections.reverseOrder());
-        for (int row : rowsToClear) {
-            board.pullAboveBlocksDownFrom(row);
+        if (event != null && cleared != 0) {
+            event.rows = cleared;
+            event.rowMask = rows[0];
+            event.totalLinesCleared = linesCleared;
+            event.commit();
         }
-        return true;
+        return cleared != 0;
     }
 
     /**
@@ -167,9 +486,32 @@ public class TetrisGame {
      * updates the next ones.
      */
     private void placeAndSetTetromino() {
+        LockEvent event = null;
+        if (LockEvent.isRecording()) {
+            event = new LockEvent();
+            event.begin();
+            Tetromino piece = board.getCurrentTetromino();
+            event.piece = piece.getTetrominoName();
+            event.x = piece.getX();
+            event.y = piece.getY();
+            event.rotation = piece.getCurrentRotation();
+        }
+        long linesBefore = this.linesCleared;
+
         board.placeCurrTetromino();
+        this.piecesPlaced++;
+        if (listener != null) {
+            listener.onLock(this);
+        }
         clearRows();
         setPieces7bag();
+
+        if (event != null) {
+            event.frame = frame;
+            event.piecesPlaced = piecesPlaced;
+            event.linesCleared = (int) (linesCleared - linesBefore);
+            event.commit();
+        }
     }
 
     /**
@@ -178,6 +520,21 @@ public class TetrisGame {
      * @return {@code true} if the movement was successful.
      */
     public boolean moveCurrentTetromino(Actions movement) {
+        boolean moved = applyAction(movement);
+        if (listener != null) {
+            listener.onAction(this, movement, moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Does what {@link #moveCurrentTetromino(Actions)} does,
+     * without telling the listener.
+     */
+    private boolean applyAction(Actions movement) {
+        if (this.isOver) {
+            return false;
+        }
         switch (movement) {
             case HARD_DROP:
                 board.hardDropCurrTetromino();
@@ -206,6 +563,38 @@ public class TetrisGame {
      * @param timeElapsed the elapsed time since the last update.
      */
     public void update(long timeElapsed) {
+        EngineMetrics metrics = this.metrics;
+        if (metrics == null && !TickEvent.isRecording()) {
+            tick(timeElapsed);
+            return;
+        }
+        TickEvent event = null;
+        if (TickEvent.isRecording()) {
+            event = new TickEvent();
+            event.begin();
+        }
+        long placed = this.piecesPlaced;
+        long start = metrics != null ? System.nanoTime() : 0;
+        tick(timeElapsed);
+        if (metrics != null) {
+            // whatever was checked since the last tick counts towards this one, the bot's search included
+            long checks = board.getCollisionChecks();
+            metrics.recordTick(System.nanoTime() - start, checks - reportedCollisionChecks);
+            this.reportedCollisionChecks = checks;
+        }
+        if (event != null) {
+            event.frame = frame;
+            event.timeElapsed = timeElapsed;
+            event.locked = piecesPlaced != placed;
+            event.gameOver = isOver;
+            event.commit();
+        }
+    }
+
+    /**
+     * Does what {@link #update(long)} does.
+     */
+    private void tick(long timeElapsed) {
         this.elapsedTimeAccumulator += timeElapsed;
         if (this.isOver) {
             this.reset();
@@ -213,7 +602,10 @@ public class TetrisGame {
         }
 
         if (this.elapsedTimeAccumulator >= updateInterval) {
-            moveCurrentTetromino(Actions.MOVE_DOWN);
+            boolean moved = applyAction(Actions.MOVE_DOWN);
+            if (listener != null) {
+                listener.onGravity(this, moved);
+            }
         }
 
         if (board.isDownwardsMovementObstructed() && !hasJustMoved) {
@@ -221,6 +613,9 @@ public class TetrisGame {
             if (lockDelayAccumulator >= LOCK_DELAY) {
                 placeAndSetTetromino();
                 lockDelayAccumulator = 0;
+                if (metrics != null) {
+                    metrics.recordLockDelayExpiration();
+                }
             }
         } else {
             lockDelayAccumulator = 0;
@@ -228,21 +623,303 @@ public class TetrisGame {
         }
     }
 
+    /**
+     * Runs a single frame of the fixed timestep. The actions in
+     * {@code inputs}, along with the keys pressed since the last frame
+     * if there's an input queue, are applied first, rotations before
+     * movements and hard drops last. Then the keys still held repeat,
+     * and the game is updated by exactly one frame interval.
+     * @param inputs a set of actions, as given by {@link Actions#bit()}.
+     */
+    public void step(int inputs) {
+        int pressed = 0;
+        if (inputQueue != null) {
+            pressed = pollInputs(clock - frameAccumulator);
+            inputs |= pressed;
+        }
+        if (inputs != 0) {
+            for (Actions action : STEP_ORDER) {
+                if ((inputs & action.bit()) != 0) {
+                    moveCurrentTetromino(action);
+                }
+            }
+        }
+        if (heldActions != 0) {
+            repeatHeldActions(pressed);
+        }
+        update(frameInterval);
+        frame++;
+        if (listener != null) {
+            listener.onFrame(this);
+        }
+    }
+
+    /**
+     * Runs as many frames of the fixed timestep as fit in the time
+     * elapsed so far. Whatever doesn't fit in a frame is kept for the
+     * next call. If the caller fell too far behind, only the most
+     * recent frames are run and the rest of the time is dropped.
+     * @param timeElapsed the elapsed time since the last call (in nanoseconds).
+     * @return how many frames were run.
+     */
+    public int advance(long timeElapsed) {
+        return advance(timeElapsed, null);
+    }
+
+    /**
+     * Same as {@link #advance(long)}, but the actions of every frame
+     * are the ones {@code controller} decides on.
+     * @param timeElapsed the elapsed time since the last call (in nanoseconds).
+     * @param controller who plays the game, or {@code null} for no one.
+     * @return how many frames were run.
+     */
+    public int advance(long timeElapsed, Controller controller) {
+        clock += timeElapsed;
+        frameAccumulator += timeElapsed;
+        if (frameAccumulator > MAX_CATCH_UP_FRAMES * frameInterval) {
+            frameAccumulator = MAX_CATCH_UP_FRAMES * frameInterval;
+        }
+
+        int frames = 0;
+        while (frameAccumulator >= frameInterval) {
+            frameAccumulator -= frameInterval;
+            step(controller == null ? 0 : controller.nextInputs(this));
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Same as {@link #advance(long, Controller)}, but running up to the moment
+     * {@code time}, instead of by an amount of time. Each frame takes the
+     * keys that happened up to its own time off the input queue.
+     * @param time the time now, on the same timeline as {@link #setClock(long)}
+     * and the input queue, such as {@link System#nanoTime()}'s.
+     * @param controller who plays the game, or {@code null} for no one.
+     * @return how many frames were run.
+     */
+    public int advanceTo(long time, Controller controller) {
+        return advance(time - clock, controller);
+    }
+
+    /**
+     * Sets the time the game was last advanced to without running any
+     * frames, as when it starts being played or is resumed after a pause.
+     * @param time the time now, such as {@link System#nanoTime()}.
+     */
+    public void setClock(long time) {
+        this.clock = time;
+    }
+
+    /**
+     * Returns the time the game was last advanced to.
+     * @return the time.
+     */
+    public long getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Takes the events that happened up to {@code time} off the
+     * input queue, keeping track of which keys are held.
+     * @return the actions pressed, as bits.
+     */
+    private int pollInputs(long time) {
+        InputQueue queue = this.inputQueue;
+        int pressed = 0;
+        while (!queue.isEmpty() && queue.peekTime() - time <= 0) {
+            Actions action = queue.peekAction();
+            int bit = action.bit();
+            if (queue.peekPressed()) {
+                pressed |= bit;
+                heldActions |= bit;
+                if (action == Actions.MOVE_LEFT || action == Actions.MOVE_RIGHT) {
+                    shiftDirection = action;
+                    shiftFrames = 0;
+                } else if (action == Actions.MOVE_DOWN) {
+                    softDropFrames = 0;
+                }
+            } else {
+                heldActions &= ~bit;
+                if (action == shiftDirection) {
+                    // the other direction takes over if it's still held, from scratch
+                    Actions other = action == Actions.MOVE_LEFT ? Actions.MOVE_RIGHT : Actions.MOVE_LEFT;
+                    shiftDirection = (heldActions & other.bit()) != 0 ? other : null;
+                    shiftFrames = 0;
+                }
+            }
+            queue.remove();
+        }
+        return pressed;
+    }
+
+    /**
+     * Repeats the keys that are held down, once per however
+     * many frames DAS, ARR and the soft drop rate say. Keys
+     * pressed on this very frame ({@code pressed}) have already
+     * moved the piece, so they only start repeating on the next one.
+     */
+    private void repeatHeldActions(int pressed) {
+        if (shiftDirection != null) {
+            shiftFrames++;
+            if (shiftFrames >= autoShiftDelay && (pressed & shiftDirection.bit()) == 0) {
+                if (autoRepeatRate == 0) {
+                    while (moveCurrentTetromino(shiftDirection)) {
+                        // all the way to the wall
+                    }
+                } else if ((shiftFrames - autoShiftDelay) % autoRepeatRate == 0) {
+                    moveCurrentTetromino(shiftDirection);
+                }
+            }
+        }
+        if ((heldActions & Actions.MOVE_DOWN.bit()) != 0) {
+            softDropFrames++;
+            if (softDropFrames % softDropRate == 0 && (pressed & Actions.MOVE_DOWN.bit()) == 0) {
+                moveCurrentTetromino(Actions.MOVE_DOWN);
+            }
+        }
+    }
+
+    /**
+     * Writes the whole state of this TetrisGame, its board and piece
+     * sequence included, into {@code buffer}, so that
+     * {@link #readState(ByteBuffer)} can bring it back later.
+     * The listener, the clock and the input queue are left out, but the
+     * keys held through the queue (and for how long) are kept, so that a
+     * game brought back goes on repeating them just as this one would.
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(frame);
+        buffer.putLong(frameInterval);
+        buffer.putLong(frameAccumulator);
+        buffer.putLong(updateInterval);
+        buffer.putLong(elapsedTimeAccumulator);
+        buffer.putLong(lockDelayAccumulator);
+        buffer.putLong(piecesPlaced);
+        buffer.putLong(linesCleared);
+        buffer.put((byte) ((isOver ? 1 : 0) | (hasJustMoved ? 2 : 0)));
+        buffer.put((byte) heldActions);
+        buffer.put((byte) (shiftDirection == null ? -1 : shiftDirection.ordinal()));
+        buffer.putInt(shiftFrames);
+        buffer.putInt(softDropFrames);
+        generator.writeState(buffer);
+        board.writeState(buffer);
+
+        Tetromino current = board.getCurrentTetromino();
+        if (current == null) {
+            buffer.put((byte) -1);
+        } else {
+            buffer.put((byte) current.getTetrominoType().ordinal());
+            buffer.putShort((short) current.getX());
+            buffer.putShort((short) current.getY());
+            buffer.put((byte) current.getCurrentRotation());
+        }
+    }
+
+    /**
+     * Turns this TetrisGame into the one whose state was written into
+     * {@code buffer} by {@link #writeState(ByteBuffer)}. The board must
+     * be as wide and as tall as the one the state came from. If the
+     * state can't be brought back, nothing about this TetrisGame changes.
+     * @param buffer
+     * @throws IllegalArgumentException if the state isn't valid, or came
+     * from a board of other dimensions.
+     */
+    public void readState(ByteBuffer buffer) {
+        // everything is checked before anything is changed
+        int generatorAt = buffer.position() + STATE_HEADER;
+        if (generatorAt > buffer.limit()) {
+            throw new IllegalArgumentException("invalid game state");
+        }
+        int keysAt = buffer.position() + 8 * Long.BYTES + 1;
+        int held = buffer.get(keysAt) & 0xFF;
+        int shift = buffer.get(keysAt + 1);
+        if ((held & ~ALL_ACTIONS) != 0
+                || shift != -1 && shift != Actions.MOVE_LEFT.ordinal() && shift != Actions.MOVE_RIGHT.ordinal()
+                || shift != -1 && (held & 1 << shift) == 0
+                || buffer.getInt(keysAt + 2) < 0 || buffer.getInt(keysAt + 6) < 0) {
+            throw new IllegalArgumentException("invalid game state");
+        }
+        int boardAt = generatorAt + PieceGenerator.checkState(buffer, generatorAt);
+        int pieceAt = boardAt + board.checkState(buffer, boardAt);
+        if (pieceAt >= buffer.limit()) {
+            throw new IllegalArgumentException("invalid game state");
+        }
+        int type = buffer.get(pieceAt);
+        if (type >= 0) {
+            if (type >= pieces.size() || pieceAt + PIECE_STATE > buffer.limit()) {
+                throw new IllegalArgumentException("invalid game state");
+            }
+            int rotation = buffer.get(pieceAt + 5);
+            if (rotation < 0 || rotation > 3 || !board.fitsInState(buffer, boardAt, pieces.get(type).getTetrominoType(),
+                    rotation, buffer.getShort(pieceAt + 1), buffer.getShort(pieceAt + 3))) {
+                throw new IllegalArgumentException("the current piece doesn't fit on the board");
+            }
+        } else if (type != -1) {
+            throw new IllegalArgumentException("invalid game state");
+        }
+
+        this.frame = buffer.getLong();
+        this.frameInterval = buffer.getLong();
+        this.frameAccumulator = buffer.getLong();
+        this.updateInterval = buffer.getLong();
+        this.elapsedTimeAccumulator = buffer.getLong();
+        this.lockDelayAccumulator = buffer.getLong();
+        this.piecesPlaced = buffer.getLong();
+        this.linesCleared = buffer.getLong();
+        byte flags = buffer.get();
+        this.isOver = (flags & 1) != 0;
+        this.hasJustMoved = (flags & 2) != 0;
+        this.heldActions = buffer.get() & 0xFF;
+        buffer.get();
+        this.shiftDirection = shift == Actions.MOVE_LEFT.ordinal() ? Actions.MOVE_LEFT
+            : shift == Actions.MOVE_RIGHT.ordinal() ? Actions.MOVE_RIGHT : null;
+        this.shiftFrames = buffer.getInt();
+        this.softDropFrames = buffer.getInt();
+        generator.readState(buffer);
+        this.queueVersion++;
+        board.readState(buffer);
+
+        buffer.get();
+        if (type >= 0) {
+            Tetromino current = pieces.get(type);
+            current.setPosition(buffer.getShort(), buffer.getShort());
+            current.setRotation(buffer.get());
+            board.setCurrentTetromino(current);
+        }
+    }
+
+    /**
+     * Takes a {@link Snapshot} of the whole state of this TetrisGame,
+     * its board and piece sequence included.
+     * @return the Snapshot.
+     */
+    public Snapshot snapshot() {
+        return Snapshot.take(Snapshot.GAME, this::writeState);
+    }
+
+    /**
+     * Turns this TetrisGame back into the one {@code snapshot} was taken from,
+     * as it was then. Its board must be as wide and as tall as this one's.
+     * Restoring allocates nothing.
+     * @param snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        readState(snapshot.state(Snapshot.GAME));
+    }
+
     /**
      * Resets the whole thing.
      */
     public void reset() {
         this.board.clearAll();
+        this.isOver = false;
+        this.piecesPlaced = this.linesCleared = 0;
+        this.elapsedTimeAccumulator = this.lockDelayAccumulator = 0;
 
-        this.nextPieceIdx = 0;
-
-        this.bag.clear();
-        
-        Collections.shuffle(pieces);
-        this.bag.addAll(pieces);
-
+        // the piece sequence just goes on
         this.setPieces7bag();
         // this.setPieces();
-        this.isOver = false;
     }
 }
@@ -0,0 +1,74 @@
+package com.mauro.tetris.tetris;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The TripleBuffer class hands whole objects over from one thread to
+ * another without either of them ever waiting for the other.
+ * <p>
+ * There are three objects. The writer fills in its own (the back one)
+ * and {@link #publish() publishes} it, trading it for whichever one is in
+ * the middle. The reader takes the {@link #latest() latest} one published,
+ * trading its own for it. Neither of them ever sees the object the other
+ * one holds, so the reader never sees one half written, and the writer
+ * can always go on. Objects published while the reader wasn't looking
+ * are skipped.
+ * <p>
+ * There must be a single writer and a single reader. Nothing is
+ * allocated after the buffer is created.
+ * @param <T> the type of the objects.
+ */
+public final class TripleBuffer<T> {
+    // set in the middle index when it holds something the reader hasn't taken yet
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final T[] slots;
+    private final AtomicInteger middle;
+    // only ever touched by the writer and by the reader, respectively
+    private int back;
+    private int front;
+
+    /**
+     * Creates a new TripleBuffer of three objects made by {@code factory}.
+     * @param factory
+     */
+    @SuppressWarnings("unchecked")
+    public TripleBuffer(Supplier<T> factory) {
+        this.slots = (T[]) new Object[] { factory.get(), factory.get(), factory.get() };
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * Returns the object the writer fills in. Only the writer may call this.
+     * @return the back object.
+     */
+    public T back() {
+        return slots[back];
+    }
+
+    /**
+     * Hands the back object over to the reader. The writer
+     * gets another one to fill in, which may be older than the
+     * one it published. Only the writer may call this.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Returns the object last published, or the same one as the
+     * last call if nothing was published since. Only the reader may
+     * call this, and it may hold on to what it gets until the next call.
+     * @return the front object.
+     */
+    public T latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return slots[front];
+    }
+}
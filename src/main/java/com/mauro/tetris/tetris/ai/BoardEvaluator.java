@@ -0,0 +1,88 @@
+package com.mauro.tetris.tetris.ai;
+
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * The BoardEvaluator class scores boards for the bots. It's a weighted
+ * sum of four features of the board: the aggregate height (the heights
+ * of all columns added up), the number of lines cleared to get there,
+ * the number of holes (empty cells with a block somewhere above them)
+ * and the bumpiness (how much the heights of neighbouring columns differ).
+ * The higher the score, the better the board.
+ */
+public class BoardEvaluator {
+    private final double heightWeight;
+    private final double linesWeight;
+    private final double holesWeight;
+    private final double bumpinessWeight;
+
+    /**
+     * Creates a new BoardEvaluator with weights that are known
+     * to play well (as tuned by Yiyuan Lee's genetic algorithm).
+     */
+    public BoardEvaluator() {
+        this(-0.510066, 0.760666, -0.35663, -0.184483);
+    }
+
+    /**
+     * Creates a new BoardEvaluator with the given weights. Features
+     * that make boards worse should have negative weights.
+     * @param heightWeight
+     * @param linesWeight
+     * @param holesWeight
+     * @param bumpinessWeight
+     */
+    public BoardEvaluator(double heightWeight, double linesWeight, double holesWeight, double bumpinessWeight) {
+        this.heightWeight = heightWeight;
+        this.linesWeight = linesWeight;
+        this.holesWeight = holesWeight;
+        this.bumpinessWeight = bumpinessWeight;
+    }
+
+    /**
+     * Scores {@code board}.
+     * @param board
+     * @param linesCleared how many lines were cleared to get to this board.
+     * @return the score.
+     */
+    public double evaluate(TetrisBoard board, int linesCleared) {
+        return evaluateBlocks(board) + evaluateLines(linesCleared);
+    }
+
+    /**
+     * Scores the blocks of {@code board} alone, which is the part of the
+     * score that only depends on the board (and can therefore be cached
+     * by its hash).
+     * @param board
+     * @return the score of the blocks.
+     */
+    public double evaluateBlocks(TetrisBoard board) {
+        int aggregateHeight = 0;
+        int holes = 0;
+        int bumpiness = 0;
+
+        int previous = -1;
+        for (int col = 1; col <= board.getWidth(); col++) {
+            int height = board.getColumnHeight(col);
+            aggregateHeight += height;
+            holes += height - board.getAmountOfBlocksInColumn(col);
+            if (previous >= 0) {
+                bumpiness += Math.abs(height - previous);
+            }
+            previous = height;
+        }
+
+        return heightWeight * aggregateHeight
+            + holesWeight * holes
+            + bumpinessWeight * bumpiness;
+    }
+
+    /**
+     * Scores having cleared {@code linesCleared} lines.
+     * @param linesCleared
+     * @return the score of the lines.
+     */
+    public double evaluateLines(int linesCleared) {
+        return linesWeight * linesCleared;
+    }
+}
@@ -0,0 +1,391 @@
+package com.mauro.tetris.tetris.ai;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoFactory;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.sim.Controller;
+
+/**
+ * The HeuristicBot plays the game on its own. It can be handed to
+ * {@link TetrisGame#advance(long, Controller)} to play a live game
+ * or to a {@link com.mauro.tetris.tetris.sim.BatchSimulator} to play
+ * lots of them headless.
+ * <p>
+ * Every time a new piece comes, the bot runs a beam search over the
+ * current piece and the ones in the next piece queue: every placement
+ * of the current piece (as found by a {@link MoveGenerator}) is scored
+ * with a {@link BoardEvaluator}, the best few boards are kept, every
+ * placement of the next piece is tried on each one of them, and so on.
+ * The placement of the current piece that leads to the best board at
+ * the deepest level is the one it goes for, one input per frame.
+ * <p>
+ * Boards that can be reached in more than one way are only kept once on
+ * each level, and if the bot is given a {@link TranspositionTable}, boards
+ * seen before (on any level, on any move) aren't evaluated again.
+ * <p>
+ * The boards of each level are expanded in parallel on a ForkJoinPool,
+ * every worker thread with its own MoveGenerator and scratch board.
+ * Going one level deeper is only started while there's time left in
+ * the time budget of the move, but the first level is always finished.
+ * Everything goes through TetrisBoard, so the bot plays by the very
+ * same rules as everyone else.
+ */
+public class HeuristicBot implements Controller {
+    /**
+     * A time budget that's never used up: the search always goes as deep
+     * as it's told to, so the bot plays the same way on any machine,
+     * however loaded it is.
+     */
+    public static final long NO_TIME_BUDGET = Long.MAX_VALUE;
+
+    private static final int DEFAULT_BEAM_WIDTH = 16;
+    private static final int DEFAULT_DEPTH = 3;
+    private static final long DEFAULT_TIME_BUDGET = 20_000_000L;
+
+    private final BoardEvaluator evaluator;
+    private final int beamWidth;
+    private final int depth;
+    private final long timeBudget;
+    private final ForkJoinPool pool;
+    private final TranspositionTable cache;
+
+    // every thread searching gets its own scratch space
+    private final ThreadLocal<Worker> workers;
+    private MoveGenerator rootGenerator;
+
+    // the inputs still to be given for the current piece
+    private Actions[] plan;
+    private int planLength, planIndex;
+    private long planPiece;
+
+    /**
+     * Creates a new HeuristicBot with the default evaluator, a beam of 16
+     * boards, 3 pieces of lookahead (the current one and the next two) and
+     * 20 ms per move. It searches on the common pool.
+     */
+    public HeuristicBot() {
+        this(DEFAULT_TIME_BUDGET);
+    }
+
+    /**
+     * Creates a new HeuristicBot with the default evaluator, a beam of 16
+     * boards and 3 pieces of lookahead, that may take {@code timeBudgetNanos}
+     * per move. It searches on the common pool.
+     * @param timeBudgetNanos how long (in nanoseconds) a move may take before
+     * the search stops going deeper, or {@link #NO_TIME_BUDGET}.
+     */
+    public HeuristicBot(long timeBudgetNanos) {
+        this(new BoardEvaluator(), DEFAULT_BEAM_WIDTH, DEFAULT_DEPTH, timeBudgetNanos, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new HeuristicBot.
+     * @param evaluator scores the boards.
+     * @param beamWidth how many boards are kept on each level of the search.
+     * @param depth how many pieces to look at, the current one included.
+     * @param timeBudgetNanos how long (in nanoseconds) a move may take before
+     * the search stops going deeper.
+     * @param pool where the search runs.
+     */
+    public HeuristicBot(BoardEvaluator evaluator, int beamWidth, int depth, long timeBudgetNanos, ForkJoinPool pool) {
+        this(evaluator, beamWidth, depth, timeBudgetNanos, pool, null);
+    }
+
+    /**
+     * Creates a new HeuristicBot that caches the evaluations
+     * of the boards it comes across in {@code cache}.
+     * @param evaluator scores the boards.
+     * @param beamWidth how many boards are kept on each level of the search.
+     * @param depth how many pieces to look at, the current one included.
+     * @param timeBudgetNanos how long (in nanoseconds) a move may take before
+     * the search stops going deeper.
+     * @param pool where the search runs.
+     * @param cache the evaluations of boards by their hashes, or {@code null}
+     * for no caching. It may be shared with other bots using the same evaluator.
+     */
+    public HeuristicBot(BoardEvaluator evaluator, int beamWidth, int depth, long timeBudgetNanos,
+            ForkJoinPool pool, TranspositionTable cache) {
+        if (beamWidth < 1 || depth < 1) {
+            throw new IllegalArgumentException("beam width and depth must be positive: " + beamWidth + ", " + depth);
+        }
+        this.evaluator = evaluator;
+        this.beamWidth = beamWidth;
+        this.depth = depth;
+        this.timeBudget = timeBudgetNanos;
+        this.pool = pool;
+        this.cache = cache;
+        this.workers = new ThreadLocal<>();
+
+        this.plan = new Actions[0];
+        this.planLength = this.planIndex = 0;
+        this.planPiece = -1;
+    }
+
+    @Override
+    public int nextInputs(TetrisGame game) {
+        if (game.isOver()) {
+            return 0;
+        }
+        if (planIndex >= planLength || planPiece != game.getPiecesPlaced()) {
+            planLength = planIndex = 0;
+            planPiece = game.getPiecesPlaced();
+            int best = search(game);
+            if (best < 0) {
+                return 0;
+            }
+            int length = rootGenerator.getPathLength(best);
+            if (plan.length < length) {
+                plan = new Actions[length];
+            }
+            planLength = rootGenerator.getPath(best, plan);
+        }
+        return plan[planIndex++].bit();
+    }
+
+    /**
+     * Searches for the best placement of the current piece of {@code game}.
+     * @param game
+     * @return the best placement or {@code null} if the piece can't go anywhere.
+     */
+    public Placement findBestPlacement(TetrisGame game) {
+        int best = search(game);
+        return best < 0 ? null : rootGenerator.getPlacement(best);
+    }
+
+    /**
+     * Searches for the best placement of the current piece of {@code game}.
+     * @return the index of the placement within {@code rootGenerator},
+     * or {@code -1} if there's none.
+     */
+    private int search(TetrisGame game) {
+        long start = System.nanoTime();
+        TetrisBoard board = game.getTetrisBoard();
+        Tetromino piece = board.getCurrentTetromino();
+        if (piece == null) {
+            return -1;
+        }
+        if (rootGenerator == null) {
+            rootGenerator = new MoveGenerator(board.getWidth(), board.getHeight());
+        }
+        if (rootGenerator.generate(board, piece) == 0) {
+            return -1;
+        }
+
+        // the current piece is placed on the game board itself,
+        // which is never modified, and its placements are
+        // numbered the same way rootGenerator numbers them
+        List<Node> beam = List.of(new Node(board, 0, -1));
+        List<Node> best = beam;
+        for (int level = 0; level < depth; level++) {
+            TetrominoType type = level == 0 ? null : game.getNextPieceType(level - 1);
+            List<Candidate> candidates = pool.invoke(new Expansion(beam, 0, beam.size(), piece, type));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+            Worker worker = worker(board);
+            List<Node> next = new ArrayList<>(beamWidth);
+            for (int i = 0; i < candidates.size() && next.size() < beamWidth; i++) {
+                Candidate candidate = candidates.get(i);
+                if (!isKept(next, candidate.hash)) {
+                    next.add(candidate.toNode(worker.pieceFor(piece, type)));
+                }
+            }
+            best = beam = next;
+
+            if (System.nanoTime() - start >= timeBudget) {
+                break;
+            }
+        }
+        return best.get(0).root;
+    }
+
+    /**
+     * Checks whether a board with hash {@code hash} is already in {@code beam}.
+     * Placements of different pieces in different orders often build up the
+     * very same board, and keeping all of them would only narrow the beam.
+     */
+    private static boolean isKept(List<Node> beam, long hash) {
+        for (int i = 0; i < beam.size(); i++) {
+            if (beam.get(i).board.getHash() == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scores {@code board}, looking it up in the cache first.
+     */
+    private double evaluate(TetrisBoard board, int lines) {
+        if (cache == null) {
+            return evaluator.evaluate(board, lines);
+        }
+        double blocks = cache.get(board.getHash());
+        if (Double.isNaN(blocks)) {
+            blocks = evaluator.evaluateBlocks(board);
+            cache.put(board.getHash(), blocks);
+        }
+        return blocks + evaluator.evaluateLines(lines);
+    }
+
+    /**
+     * A board kept by the search.
+     */
+    private static final class Node {
+        final TetrisBoard board;
+        final int lines;
+        // the placement of the current piece this board came from
+        final int root;
+
+        Node(TetrisBoard board, int lines, int root) {
+            this.board = board;
+            this.lines = lines;
+            this.root = root;
+        }
+    }
+
+    /**
+     * A placement of a piece on the board of a Node, which is only
+     * turned into a Node of its own if it makes it into the beam.
+     */
+    private static final class Candidate {
+        final Node parent;
+        final int x, y, rotation;
+        final int lines;
+        final int root;
+        final long hash;
+        final double score;
+
+        Candidate(Node parent, int x, int y, int rotation, int lines, int root, long hash, double score) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.lines = lines;
+            this.root = root;
+            this.hash = hash;
+            this.score = score;
+        }
+
+        Node toNode(Tetromino piece) {
+            TetrisBoard board = new TetrisBoard(parent.board.getWidth(), parent.board.getHeight(), false);
+            board.copyBlocksFrom(parent.board);
+            place(board, piece, x, y, rotation);
+            return new Node(board, lines, root);
+        }
+    }
+
+    /**
+     * Places {@code piece} on {@code board} at {@code (x, y)} in the
+     * rotation {@code rotation} and clears whatever rows it fills.
+     * @return how many rows were cleared.
+     */
+    private static int place(TetrisBoard board, Tetromino piece, int x, int y, int rotation) {
+        piece.setRotation(rotation);
+        piece.setPosition(x, y);
+        board.setCurrentTetromino(piece);
+        board.placeCurrTetromino();
+        return board.clearFullRows(null);
+    }
+
+    /**
+     * The scratch space of a thread.
+     */
+    private static final class Worker {
+        final MoveGenerator generator;
+        final TetrisBoard board;
+        final List<Tetromino> pieces;
+        final Tetromino current;
+
+        Worker(int width, int height) {
+            this.generator = new MoveGenerator(width, height);
+            this.board = new TetrisBoard(width, height, false);
+            this.pieces = new TetrominoFactory(width, height).getPieces();
+            this.current = pieces.get(0).copy();
+        }
+
+        /**
+         * Returns a piece of type {@code type} at its spawn position,
+         * or a copy of {@code current} if there's no type.
+         */
+        Tetromino pieceFor(Tetromino current, TetrominoType type) {
+            if (type == null) {
+                this.current.copyFrom(current);
+                return this.current;
+            }
+            Tetromino piece = pieces.get(type.ordinal());
+            piece.resetPiece();
+            return piece;
+        }
+    }
+
+    private Worker worker(TetrisBoard board) {
+        Worker worker = workers.get();
+        if (worker == null || worker.board.getWidth() != board.getWidth()
+                || worker.board.getHeight() != board.getHeight()) {
+            worker = new Worker(board.getWidth(), board.getHeight());
+            workers.set(worker);
+        }
+        return worker;
+    }
+
+    /**
+     * Tries every placement of a piece on the boards
+     * from {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    private final class Expansion extends RecursiveTask<List<Candidate>> {
+        private final List<Node> nodes;
+        private final int from, to;
+        private final Tetromino current;
+        private final TetrominoType type;
+
+        Expansion(List<Node> nodes, int from, int to, Tetromino current, TetrominoType type) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.current = current;
+            this.type = type;
+        }
+
+        @Override
+        protected List<Candidate> compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Expansion left = new Expansion(nodes, from, mid, current, type);
+                left.fork();
+                List<Candidate> right = new Expansion(nodes, mid, to, current, type).compute();
+                List<Candidate> all = left.join();
+                all.addAll(right);
+                return all;
+            }
+
+            List<Candidate> candidates = new ArrayList<>();
+            for (int n = from; n < to; n++) {
+                Node node = nodes.get(n);
+                Worker worker = worker(node.board);
+                Tetromino piece = worker.pieceFor(current, type);
+                int count = worker.generator.generate(node.board, piece);
+                for (int i = 0; i < count; i++) {
+                    worker.board.copyBlocksFrom(node.board);
+                    int lines = node.lines + place(worker.board, worker.pieceFor(current, type),
+                            worker.generator.getX(i), worker.generator.getY(i), worker.generator.getRotation(i));
+                    double score = evaluate(worker.board, lines);
+                    candidates.add(new Candidate(node, worker.generator.getX(i), worker.generator.getY(i),
+                            worker.generator.getRotation(i), lines, node.root < 0 ? i : node.root,
+                            worker.board.getHash(), score));
+                }
+            }
+            return candidates;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.mauro.tetris.tetris.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * The MoveGenerator class finds every place where a piece can come to rest,
+ * including the ones that can only be reached by sliding the piece under
+ * something or by kicking it into place, along with the inputs that get
+ * it there.
+ * <p>
+ * It runs a breadth-first search over the states {@code (x, y, rotation)}
+ * the piece can reach with the same movements the game allows, rotations
+ * going through {@link TetrisBoard#findRotationKick(Tetromino, int)} just
+ * like they do when playing. Every state the search reaches is hard dropped,
+ * and each distinct resting place is kept along with the shortest path
+ * that leads to it.
+ * <p>
+ * Neither the board nor the piece is modified, and once created, a
+ * MoveGenerator doesn't allocate anything while generating placements.
+ * It isn't thread safe, though, so every thread needs its own.
+ */
+public class MoveGenerator {
+    // how far the position of a piece can be from its leftmost
+    // (or bottommost) cell, plus one
+    private static final int PAD = 4;
+
+    private static final int LEFT = 0, RIGHT = 1, DOWN = 2, CW = 3, CCW = 4;
+    private static final Actions[] MOVE_ACTIONS = {
+        Actions.MOVE_LEFT, Actions.MOVE_RIGHT, Actions.MOVE_DOWN,
+        Actions.ROTATE_CLOCKWISE, Actions.ROTATE_COUNTERCLOCKWISE
+    };
+
+    private final int width, height;
+    private final int stride, rows;
+
+    // one bit per state, and one bit per resting place
+    private final long[] visited;
+    private final long[] landed;
+
+    // the search queue, and how each state was first reached
+    private final int[] queue;
+    private final int[] parent;
+    private final byte[] move;
+
+    // the resting place of each placement and the state it was dropped from
+    private final int[] placementX, placementY, placementRotation, placementFrom;
+    private int count;
+
+    // the rotation whose body is the same as each rotation's, if any came first
+    private final int[] sameBodyAs;
+    private Tetromino scratch;
+
+    /**
+     * Creates a new MoveGenerator for boards of
+     * {@code width} columns and {@code height} rows.
+     * @param width
+     * @param height
+     */
+    public MoveGenerator(int width, int height) {
+        if (width < 1 || width > Long.SIZE || height < 1 || height > TetrisBoard.MAX_HEIGHT) {
+            throw new IllegalArgumentException("invalid board dimensions: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width + PAD;
+        this.rows = height + PAD;
+
+        int states = 4 * rows * stride;
+        this.visited = new long[(states + Long.SIZE - 1) / Long.SIZE];
+        this.queue = new int[states];
+        this.parent = new int[states];
+        this.move = new byte[states];
+
+        int places = 4 * width * height;
+        this.landed = new long[(places + Long.SIZE - 1) / Long.SIZE];
+        this.placementX = new int[places];
+        this.placementY = new int[places];
+        this.placementRotation = new int[places];
+        this.placementFrom = new int[places];
+        this.count = 0;
+
+        this.sameBodyAs = new int[4];
+    }
+
+    /**
+     * Finds every place where {@code piece} can come to rest on {@code board},
+     * starting from where the piece is now. The results can be read through
+     * the other methods of this class until the next call.
+     * @param board a board as wide and as tall as the ones this generator is for.
+     * @param piece the piece to be placed. It doesn't need to be on the board.
+     * @return how many placements there are, {@code 0} if the piece doesn't
+     * even fit where it is.
+     */
+    public int generate(TetrisBoard board, Tetromino piece) {
+        if (board.getWidth() != width || board.getHeight() != height) {
+            throw new IllegalArgumentException("expected a " + width + "x" + height + " board, got "
+                    + board.getWidth() + "x" + board.getHeight());
+        }
+        Arrays.fill(visited, 0);
+        Arrays.fill(landed, 0);
+        count = 0;
+
+        if (scratch == null) {
+            scratch = piece.copy();
+        } else {
+            scratch.copyFrom(piece);
+        }
+        findSameBodies();
+
+        scratch.setRotation(piece.getCurrentRotation());
+        if (board.collides(scratch, 0, 0)) {
+            return 0;
+        }
+
+        int head = 0, tail = 0;
+        int start = state(piece.getX(), piece.getY(), piece.getCurrentRotation());
+        mark(visited, start);
+        parent[start] = -1;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int s = queue[head++];
+            int x = stateX(s), y = stateY(s), rot = stateRotation(s);
+            scratch.setRotation(rot);
+            scratch.setPosition(x, y);
+
+            int distance = board.dropDistance(scratch);
+            addPlacement(x, y - distance, rot, s);
+
+            if (distance > 0) {
+                tail = visit(state(x, y - 1, rot), s, DOWN, tail);
+            }
+            if (!board.collides(scratch, -1, 0)) {
+                tail = visit(state(x - 1, y, rot), s, LEFT, tail);
+            }
+            if (!board.collides(scratch, 1, 0)) {
+                tail = visit(state(x + 1, y, rot), s, RIGHT, tail);
+            }
+            tail = rotate(board, s, x, y, 1, tail);
+            scratch.setRotation(rot);
+            tail = rotate(board, s, x, y, -1, tail);
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many placements the last call to
+     * {@link #generate(TetrisBoard, Tetromino)} found.
+     * @return the amount of placements.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the x component of the position of the {@code i}-th placement.
+     * @param i
+     * @return x
+     */
+    public int getX(int i) {
+        checkIndex(i);
+        return placementX[i];
+    }
+
+    /**
+     * Returns the y component of the position of the {@code i}-th placement.
+     * @param i
+     * @return y
+     */
+    public int getY(int i) {
+        checkIndex(i);
+        return placementY[i];
+    }
+
+    /**
+     * Returns the rotation of the {@code i}-th placement.
+     * @param i
+     * @return the rotation.
+     */
+    public int getRotation(int i) {
+        checkIndex(i);
+        return placementRotation[i];
+    }
+
+    /**
+     * Returns how many inputs the path to the {@code i}-th
+     * placement takes, the final hard drop included.
+     * @param i
+     * @return the length of the path.
+     */
+    public int getPathLength(int i) {
+        checkIndex(i);
+        int length = 1;
+        for (int s = placementFrom[i]; parent[s] != -1; s = parent[s]) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the inputs that take the piece to the {@code i}-th
+     * placement into {@code path}, the final hard drop included.
+     * @param i
+     * @param path an array with room for at least {@link #getPathLength(int)} inputs.
+     * @return the length of the path.
+     */
+    public int getPath(int i, Actions[] path) {
+        int length = getPathLength(i);
+        int j = length - 1;
+        path[j] = Actions.HARD_DROP;
+        for (int s = placementFrom[i]; parent[s] != -1; s = parent[s]) {
+            path[--j] = MOVE_ACTIONS[move[s]];
+        }
+        return length;
+    }
+
+    /**
+     * Returns the {@code i}-th placement as a Placement.
+     * @param i
+     * @return the placement.
+     */
+    public Placement getPlacement(int i) {
+        Actions[] path = new Actions[getPathLength(i)];
+        getPath(i, path);
+        return new Placement(placementX[i], placementY[i], placementRotation[i], Arrays.asList(path));
+    }
+
+    /**
+     * Returns every placement found by the last call to
+     * {@link #generate(TetrisBoard, Tetromino)}.
+     * @return a list of placements.
+     */
+    public List<Placement> getPlacements() {
+        List<Placement> placements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            placements.add(getPlacement(i));
+        }
+        return placements;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+
+    /**
+     * Tries to rotate the scratch piece (which is at {@code (x, y)})
+     * the same way the board would and queues where it ends up.
+     */
+    private int rotate(TetrisBoard board, int from, int x, int y, int wise, int tail) {
+        if (wise > 0) {
+            scratch.rotateClockwise();
+        } else {
+            scratch.rotateCounterclockwise();
+        }
+        int test = board.findRotationKick(scratch, wise);
+        if (test == TetrisBoard.NO_KICK) {
+            return tail;
+        }
+        if (test > 0) {
+            int[] kick = scratch.getWallKickData()[scratch.getPreviousRotation()][test - 1];
+            x += kick[0] * wise;
+            y += kick[1] * wise;
+        }
+        return visit(state(x, y, scratch.getCurrentRotation()), from, wise > 0 ? CW : CCW, tail);
+    }
+
+    private int visit(int s, int from, int how, int tail) {
+        if (isMarked(visited, s)) {
+            return tail;
+        }
+        mark(visited, s);
+        parent[s] = from;
+        move[s] = (byte) how;
+        queue[tail] = s;
+        return tail + 1;
+    }
+
+    /**
+     * Keeps the resting place {@code (x, y, rot)} unless a placement
+     * with the very same cells has already been found.
+     */
+    private void addPlacement(int x, int y, int rot, int from) {
+        scratch.setRotation(rot);
+        int place = ((sameBodyAs[rot] * height) + scratch.getMaskRow() - scratch.getY() + y - 1) * width
+                + scratch.getMaskColumn() - 1;
+        if (isMarked(landed, place)) {
+            return;
+        }
+        mark(landed, place);
+        placementX[count] = x;
+        placementY[count] = y;
+        placementRotation[count] = rot;
+        placementFrom[count] = from;
+        count++;
+    }
+
+    /**
+     * Figures out which rotations of the scratch piece have bodies of the same
+     * shape (like every rotation of an O), so that their resting places are
+     * told apart by the cells they take up instead of by their rotations.
+     */
+    private void findSameBodies() {
+        for (int r = 0; r < 4; r++) {
+            scratch.setRotation(r);
+            int[] masks = scratch.getRowMasks();
+            sameBodyAs[r] = r;
+            for (int q = 0; q < r; q++) {
+                scratch.setRotation(q);
+                if (Arrays.equals(masks, scratch.getRowMasks())) {
+                    sameBodyAs[r] = sameBodyAs[q];
+                    break;
+                }
+            }
+        }
+    }
+
+    private int state(int x, int y, int rot) {
+        return (rot * rows + y - 1 + PAD) * stride + x - 1 + PAD;
+    }
+
+    private int stateX(int s) {
+        return s % stride + 1 - PAD;
+    }
+
+    private int stateY(int s) {
+        return (s / stride) % rows + 1 - PAD;
+    }
+
+    private int stateRotation(int s) {
+        return s / (stride * rows);
+    }
+
+    private static boolean isMarked(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void mark(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+}
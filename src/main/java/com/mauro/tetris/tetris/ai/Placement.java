@@ -0,0 +1,68 @@
+package com.mauro.tetris.tetris.ai;
+
+import java.util.List;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * The Placement class describes a place where a piece can come
+ * to rest and the inputs that take the piece there from where it
+ * started. The last input is always a hard drop.
+ */
+public final class Placement {
+    private final int x, y, rotation;
+    private final List<Actions> path;
+
+    /**
+     * Creates a new Placement of a piece at position {@code (x, y)}
+     * and rotation {@code rotation}, reached through {@code path}.
+     * @param x
+     * @param y
+     * @param rotation
+     * @param path
+     */
+    public Placement(int x, int y, int rotation, List<Actions> path) {
+        this.x = x;
+        this.y = y;
+        this.rotation = rotation;
+        this.path = List.copyOf(path);
+    }
+
+    /**
+     * Returns the x component of the position of the piece.
+     * @return x
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y component of the position of the piece.
+     * @return y
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the rotation of the piece, as in
+     * {@link com.mauro.tetris.pieces.Tetromino#getCurrentRotation()}.
+     * @return the rotation.
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Returns the inputs that take the piece here, in order.
+     * @return an unmodifiable list of inputs.
+     */
+    public List<Actions> getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "{(" + x + ", " + y + "), " + rotation + ", " + path + "}";
+    }
+}
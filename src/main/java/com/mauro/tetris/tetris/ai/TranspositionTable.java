@@ -0,0 +1,209 @@
+package com.mauro.tetris.tetris.ai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TranspositionTable class is a bounded cache that maps board hashes
+ * (as given by {@link com.mauro.tetris.tetris.TetrisBoard#getHash()}) to
+ * their evaluations, so that searches that get to the same board through
+ * different paths only evaluate it once.
+ * <p>
+ * It's split into sets of {@code 4} entries, a hash always going to the
+ * same set. When a set is full, the entry to be replaced is picked with
+ * the clock algorithm: entries that have been read since the hand last went
+ * past them get a second chance. Sets are guarded by a fixed number of
+ * locks, so threads only ever wait for each other when they happen to
+ * need sets under the same lock.
+ * <p>
+ * Hits, misses and evictions are counted, which tells whether the
+ * table is big enough for whatever it's being used for.
+ */
+public class TranspositionTable {
+    /**
+     * What {@link #get(long)} returns for hashes that aren't in the table.
+     */
+    public static final double MISSING = Double.NaN;
+
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    private final long[] hashes;
+    private final double[] values;
+    private final byte[] flags;
+    // the clock hand of each set
+    private final byte[] hands;
+    private final int setMask;
+    private final Object[] locks;
+
+    private final LongAdder hits, misses, evictions;
+
+    /**
+     * Creates a new TranspositionTable with room for at least
+     * {@code capacity} entries (rounded up to a power of two).
+     * @param capacity
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        int sets = Math.max(1, Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS) * 2 - 1));
+        this.hashes = new long[sets * WAYS];
+        this.values = new double[sets * WAYS];
+        this.flags = new byte[sets * WAYS];
+        this.hands = new byte[sets];
+        this.setMask = sets - 1;
+
+        this.locks = new Object[Math.min(STRIPES, sets)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Returns how many entries fit in this table.
+     * @return the capacity.
+     */
+    public int capacity() {
+        return hashes.length;
+    }
+
+    /**
+     * Returns the value stored for {@code hash}.
+     * @param hash
+     * @return the value, or {@link #MISSING} if there's none.
+     */
+    public double get(long hash) {
+        int set = setOf(hash);
+        int base = set * WAYS;
+        synchronized (locks[set % locks.length]) {
+            for (int i = base; i < base + WAYS; i++) {
+                if ((flags[i] & USED) != 0 && hashes[i] == hash) {
+                    flags[i] |= REFERENCED;
+                    hits.increment();
+                    return values[i];
+                }
+            }
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * Stores {@code value} for {@code hash}, replacing
+     * whatever was stored for it before.
+     * @param hash
+     * @param value
+     */
+    public void put(long hash, double value) {
+        int set = setOf(hash);
+        int base = set * WAYS;
+        synchronized (locks[set % locks.length]) {
+            int free = -1;
+            for (int i = base; i < base + WAYS; i++) {
+                if ((flags[i] & USED) == 0) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (hashes[i] == hash) {
+                    values[i] = value;
+                    return;
+                }
+            }
+
+            if (free < 0) {
+                // sweeps the set, clearing the reference bits it goes past,
+                // until it finds an entry that hasn't been read lately
+                int hand = hands[set];
+                while ((flags[base + hand] & REFERENCED) != 0) {
+                    flags[base + hand] &= ~REFERENCED;
+                    hand = (hand + 1) % WAYS;
+                }
+                free = base + hand;
+                hands[set] = (byte) ((hand + 1) % WAYS);
+                evictions.increment();
+            }
+            hashes[free] = hash;
+            values[free] = value;
+            flags[free] = USED;
+        }
+    }
+
+    /**
+     * Removes every entry from this table. The counters are left alone.
+     */
+    public void clear() {
+        for (int set = 0; set <= setMask; set++) {
+            synchronized (locks[set % locks.length]) {
+                for (int i = set * WAYS; i < (set + 1) * WAYS; i++) {
+                    flags[i] = 0;
+                }
+                hands[set] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns how many lookups found what they were looking for.
+     * @return the amount of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lookups didn't find what they were looking for.
+     * @return the amount of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many entries were thrown out to make room for new ones.
+     * @return the amount of evictions.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that were hits.
+     * @return the hit rate, from {@code 0} to {@code 1}.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Sets the hit, miss and eviction counters back to zero.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Picks the set of {@code hash}. Zobrist hashes are already
+     * uniformly distributed, but the high bits are folded in anyway
+     * in case the hashes come from somewhere else.
+     */
+    private int setOf(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & setMask;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TranspositionTable[capacity=%d, hits=%d, misses=%d, evictions=%d, hit rate=%.2f%%]",
+            capacity(), getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+}
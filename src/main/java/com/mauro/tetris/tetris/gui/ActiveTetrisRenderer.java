@@ -0,0 +1,348 @@
+package com.mauro.tetris.tetris.gui;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.UIManager;
+
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.RenderState;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+import com.mauro.tetris.tetris.jfr.PaintEvent;
+
+/**
+ * The ActiveTetrisRenderer class does what the TetrisRenderer does, but
+ * instead of asking Swing to repaint it, it has a thread of its own that
+ * paints the game straight into a BufferStrategy, once per refresh of the
+ * display it's on (as long as something changed since the last frame).
+ * <p>
+ * The game runs on the thread of a {@link GameLoop} while the renderer is
+ * showing. Keys are read on the EDT and go to the game through its input
+ * queue, and the render thread paints the latest RenderState the loop
+ * published, so none of the three threads ever waits for another.
+ */
+public class ActiveTetrisRenderer extends Canvas {
+    private static final int FALLBACK_REFRESH_RATE = 60;
+    // how long before a frame is due the render thread stops sleeping and starts spinning
+    private static final long SPIN_NANOS = 1_000_000L;
+
+    private final GameLoop loop;
+    private final TetrisBoard board;
+    private final BoardPainter painter;
+    private final Color background;
+
+    // the size of the canvas, packed into a long, as last seen by the EDT
+    private volatile long size;
+
+    // set when the window system wants the canvas painted again
+    private volatile boolean exposed;
+
+    // drawn over the game by the render thread while it's shown
+    private final PerformanceOverlay overlay;
+    private volatile boolean showOverlay;
+
+    private volatile boolean running;
+    private Thread renderThread;
+
+    /**
+     * Creates a new ActiveTetrisRenderer for the {@code game} with
+     * preferred dimensions as {@code preferredSize}.
+     * @param game
+     * @param preferredSize
+     */
+    public ActiveTetrisRenderer(TetrisGame game, Dimension preferredSize) {
+        this(new GameLoop(game), preferredSize);
+    }
+
+    /**
+     * Creates a new ActiveTetrisRenderer for the game run by {@code loop}
+     * with preferred dimensions as {@code preferredSize}. The loop is
+     * started and stopped along with the renderer.
+     * @param loop a loop that isn't running yet.
+     * @param preferredSize
+     */
+    public ActiveTetrisRenderer(GameLoop loop, Dimension preferredSize) {
+        this.loop = loop;
+        // only its size is ever looked at
+        this.board = loop.getGame().getTetrisBoard();
+        // the same as what's behind the TetrisRenderer
+        Color panelBackground = UIManager.getColor("Panel.background");
+        this.background = panelBackground != null ? panelBackground : Color.LIGHT_GRAY;
+        this.painter = new BoardPainter(this.background);
+        this.overlay = new PerformanceOverlay(loop, 8, 8);
+
+        this.setBackground(background);
+        this.setFocusable(true);
+        this.setPreferredSize(preferredSize);
+
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                size = ((long) getWidth() << 32) | (getHeight() & 0xFFFFFFFFL);
+            }
+        });
+        KeyInput keys = new KeyInput(loop.getInputQueue(), this::isPaused);
+        this.addKeyListener(keys);
+        this.addFocusListener(keys);
+        this.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                ActiveTetrisRenderer.this.keyPressed(e.getKeyCode());
+            }
+        });
+    }
+
+    private void keyPressed(int keyCode) {
+        // the keys that play the game are KeyInput's
+        switch (keyCode) {
+            case KeyEvent.VK_G:
+                if (!isPaused()) {
+                    loop.toggleGhostPiece();
+                }
+                break;
+            case KeyEvent.VK_B:
+                if (!isPaused()) {
+                    loop.setController(loop.getController() == null ? new HeuristicBot() : null);
+                }
+                break;
+            case KeyEvent.VK_F3:
+                toggleOverlay();
+                break;
+            case KeyEvent.VK_P:
+                if (isPaused()) {
+                    resume();
+                } else {
+                    pause();
+                }
+                break;
+            case KeyEvent.VK_ESCAPE:
+                System.exit(0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Stops updating the game. It's still painted, though.
+     */
+    public void pause() {
+        loop.pause();
+    }
+
+    /**
+     * Resumes updating the game from where it was paused.
+     */
+    public void resume() {
+        loop.resume();
+    }
+
+    /**
+     * Checks whether the game is paused.
+     * @return {@code true} if the game is paused.
+     */
+    public boolean isPaused() {
+        return loop.isPaused();
+    }
+
+    /**
+     * Shows the performance overlay over the game, or hides it.
+     */
+    public void toggleOverlay() {
+        showOverlay = !showOverlay;
+        exposed = true;
+    }
+
+    /**
+     * Checks whether the performance overlay is shown.
+     * @return {@code true} if it's shown.
+     */
+    public boolean isOverlayShown() {
+        return showOverlay;
+    }
+
+    /**
+     * Everything is painted by the render thread, which
+     * is only told that it has to paint again.
+     */
+    @Override
+    public void paint(Graphics g) {
+        exposed = true;
+    }
+
+    @Override
+    public void update(Graphics g) {
+        exposed = true;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        loop.start();
+        running = true;
+        renderThread = new Thread(this::renderLoop, "tetris-render");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        // not joined, since this runs holding the tree lock the render thread may be waiting for
+        running = false;
+        renderThread = null;
+        loop.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Returns the refresh rate of the display this canvas is
+     * on, or 60 Hz if the display doesn't say.
+     */
+    private int refreshRate() {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != null) {
+            DisplayMode mode = config.getDevice().getDisplayMode();
+            if (mode != null && mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return mode.getRefreshRate();
+            }
+        }
+        return FALLBACK_REFRESH_RATE;
+    }
+
+    /**
+     * Page flipping where it's available, so frames are shown whole,
+     * and plain double buffering otherwise.
+     */
+    private BufferStrategy createStrategy() {
+        try {
+            createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true),
+                    new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED));
+        } catch (AWTException e) {
+            createBufferStrategy(2);
+        }
+        return getBufferStrategy();
+    }
+
+    private void renderLoop() {
+        BufferStrategy strategy = null;
+        long paintedSize = -1;
+        long paintedVersion = -1;
+        boolean overlayShown = false;
+
+        long period = 1_000_000_000L / refreshRate();
+        long nextFrame = System.nanoTime();
+        while (running) {
+            if (strategy == null && isDisplayable() && getWidth() > 0 && getHeight() > 0) {
+                strategy = createStrategy();
+            }
+
+            // frames where nothing changed aren't painted at all
+            RenderState state = loop.getState();
+            boolean painted = false;
+            long currentSize = size;
+            if (strategy != null && (state.getVersion() != paintedVersion || currentSize != paintedSize || exposed)) {
+                exposed = false;
+                if (currentSize != paintedSize) {
+                    painter.resize((int) (currentSize >>> 32), (int) currentSize, board);
+                    paintedSize = currentSize;
+                }
+                paintedVersion = state.getVersion();
+                if (showOverlay != overlayShown) {
+                    overlayShown = !overlayShown;
+                    overlay.reset(System.nanoTime());
+                }
+                try {
+                    paint(strategy, state, (int) (currentSize >>> 32), (int) currentSize, overlayShown);
+                } catch (IllegalStateException e) {
+                    // the canvas went away while the frame was being painted
+                    break;
+                }
+                painted = true;
+            }
+
+            nextFrame += period;
+            long now = System.nanoTime();
+            if (now - nextFrame > period) {
+                // way behind (or the display changed); don't rush to catch up
+                period = 1_000_000_000L / refreshRate();
+                nextFrame = now;
+            }
+            waitUntil(nextFrame, painted);
+        }
+    }
+
+    private void paint(BufferStrategy strategy, RenderState state, int width, int height, boolean withOverlay) {
+        PaintEvent event = null;
+        if (PaintEvent.isRecording()) {
+            event = new PaintEvent();
+            event.begin();
+        }
+        long start = System.nanoTime();
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g2d.setColor(background);
+                    g2d.fillRect(0, 0, width, height);
+                    painter.paint(g2d, state);
+                    if (withOverlay) {
+                        // shown along with the frame, so here it counts towards the time the frame took
+                        overlay.paint(g2d);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        // some platforms queue up drawing until told otherwise
+        Toolkit.getDefaultToolkit().sync();
+        long end = System.nanoTime();
+        loop.getMetrics().recordPaint(end - start);
+        if (withOverlay) {
+            overlay.record(end - start, end);
+        }
+
+        if (event != null) {
+            event.renderer = "active";
+            event.frame = state.getFrame();
+            event.version = state.getVersion();
+            event.area = (long) width * height;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sleeps until a little before {@code deadline}, then spins
+     * the rest of the way, since sleeps are too coarse to pace
+     * frames a few milliseconds apart. Nothing needs pacing
+     * after a frame that wasn't painted, so it just sleeps.
+     */
+    private static void waitUntil(long deadline, boolean spin) {
+        long margin = spin ? SPIN_NANOS : 0;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > margin) {
+            LockSupport.parkNanos(remaining - margin);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
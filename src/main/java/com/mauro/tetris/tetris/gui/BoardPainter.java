@@ -0,0 +1,464 @@
+package com.mauro.tetris.tetris.gui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.RenderState;
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * The BoardPainter class draws a TetrisGame (its board, current and
+ * ghost pieces and next piece queue) onto any Graphics2D, laid out
+ * for the size it was last given. It's shared by the renderers, no
+ * matter how they get their frames onto the screen. What it draws is a
+ * {@link RenderState} of the game rather than the game itself, so that it
+ * can draw on any thread while the game goes on on another one. A
+ * BoardPainter only ever draws one game.
+ * <p>
+ * Hardly anything is drawn from scratch on every frame. One block (and one
+ * ghost block) of each color is drawn once per size into a sprite. The board,
+ * its border and its settled blocks are kept in an opaque image that's only
+ * drawn again when the blocks of the board change (see
+ * {@link RenderState#getBlocksVersion()}), and the same goes for the next piece
+ * queue and its frame, which only change when a piece spawns. A frame is
+ * then two opaque image copies plus a sprite per block of the falling piece.
+ * <p>
+ * Renderers that repaint only what changed can ask for the bounds of
+ * the parts of the game with {@link #rowBounds(long, Rectangle)},
+ * {@link #pieceBounds(TetrominoType, int, int, int, Rectangle)} and {@link #queueBounds(Rectangle)},
+ * and paint with a clip. Only what's within the clip is copied.
+ */
+public class BoardPainter {
+    private static final int NEXT_PIECE_GRID_SIZE = 5;
+    private static final int NEXT_PIECE_COUNT = 6;
+    private static final BasicStroke QUEUE_FRAME_STROKE = new BasicStroke(3.25F);
+
+    // the colors of the pieces, indexed by their color index.
+    // 0 stands for no color at all
+    private static final Color[] PALETTE = {
+        null,
+        Color.CYAN,                                 // I
+        Color.BLUE,                                 // J
+        Color.ORANGE,                               // L
+        Color.YELLOW,                               // O
+        Color.GREEN,                                // S
+        new Color((153 << 16) | (0 << 8) | 255),    // T (purple)
+        Color.RED,                                  // Z
+    };
+    // anything outside of the palette
+    private static final int FALLBACK_COLOR = PALETTE.length;
+
+    private final Color background;
+
+    private float blockScale;
+    private float boardXOffset;
+
+    private float nextpieceXOffset;
+
+    private int boardWidth, boardHeight;
+    // where the board and queue layers go, and how big they are
+    private int boardLayerX, boardLayerWidth, boardLayerHeight;
+    private int queueLayerX, queueLayerY, queueLayerWidth, queueLayerHeight;
+    private float queueHeight;
+
+    // everything below is drawn for the size and configuration
+    // it's in, and thrown away when either of them changes
+    private GraphicsConfiguration config;
+    private BufferedImage[] blockSprites;
+    private BufferedImage[] ghostSprites;
+
+    // the border with nothing in it, and with the settled blocks in it
+    private BufferedImage boardFrame;
+    private BufferedImage boardLayer;
+    // the version of the blocks in the board layer, -1 if there are none yet
+    private long settledVersion;
+
+    // the frame of the queue with nothing in it, and with the next pieces in it
+    private BufferedImage queueFrame;
+    private BufferedImage queueLayer;
+    // the types of the next pieces in the queue layer, 3 bits each
+    private int queueKey;
+
+    /**
+     * Creates a new BoardPainter that paints the
+     * empty parts of the board {@code background}.
+     * @param background
+     */
+    public BoardPainter(Color background) {
+        this.background = background;
+    }
+
+    /**
+     * Lays the game out for an area {@code width} wide
+     * and {@code height} tall.
+     * @param width
+     * @param height
+     * @param board the board of the game that will be painted.
+     */
+    public void resize(float width, float height, TetrisBoard board) {
+        blockScale = height / (board.getHeight() + 2);
+        boardXOffset =  width / 6;
+
+        nextpieceXOffset = boardXOffset + blockScale * (board.getWidth() + 4);
+
+        this.boardWidth = board.getWidth();
+        this.boardHeight = board.getHeight();
+
+        boardLayerX = (int) Math.floor(boardXOffset - blockScale);
+        boardLayerWidth = Math.max((int) Math.ceil((boardWidth + 2) * blockScale) + 2, 1);
+        boardLayerHeight = Math.max((int) Math.ceil((boardHeight + 2) * blockScale) + 2, 1);
+
+        // the frame is drawn with a thick stroke, half of which sticks out
+        float margin = QUEUE_FRAME_STROKE.getLineWidth();
+        queueHeight = (NEXT_PIECE_COUNT + 1) * 3.80f - 3;
+        queueLayerX = (int) Math.floor(nextpieceXOffset - margin);
+        queueLayerY = (int) Math.floor(blockScale - margin);
+        queueLayerWidth = Math.max((int) Math.ceil(NEXT_PIECE_GRID_SIZE * blockScale + 2 * margin) + 2, 1);
+        queueLayerHeight = Math.max((int) Math.ceil(queueHeight * blockScale + 2 * margin) + 2, 1);
+        // drawn again on the next paint
+        this.config = null;
+    }
+
+    /**
+     * Maps a color index from the game to its slot in the sprite caches.
+     */
+    private static int colorSlot(int colorIndex) {
+        if (colorIndex < 0 || colorIndex >= PALETTE.length) {
+            return FALLBACK_COLOR;
+        }
+        return colorIndex;
+    }
+
+    /**
+     * Maps a color index from the game to an actual color.
+     * @param colorIndex
+     * @return the color.
+     */
+    private static Color colorOf(int colorIndex) {
+        if (colorIndex < 0 || colorIndex >= PALETTE.length) {
+            return Color.WHITE;
+        }
+        return PALETTE[colorIndex];
+    }
+
+    /**
+     * Draws a block as defined by {@code rect}
+     * with contour {@code contourColor} and
+     * fill color {@code fillColor}
+     *
+     * @param g2d
+     * @param rect
+     * @param fillColor
+     * @param contourColor
+     */
+    private static void drawBlock(Graphics2D g2d, Rectangle2D.Float rect, Color fillColor, Color contourColor) {
+        if (fillColor != null) {
+            g2d.setColor(fillColor);
+            g2d.fill(rect);
+        }
+        if (contourColor != null) {
+            g2d.setColor(contourColor);
+            g2d.draw(rect);
+        }
+    }
+
+    private static Graphics2D antialiased(BufferedImage image) {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g2d;
+    }
+
+    /**
+     * Returns the x coordinate of the left side of {@code column} (one-indexed).
+     */
+    private int cellX(int column) {
+        return Math.round(boardXOffset + (column - 1) * blockScale);
+    }
+
+    /**
+     * Returns the y coordinate of the top of {@code row} (one-indexed).
+     */
+    private int cellY(int row) {
+        return Math.round((boardHeight - row + 1) * blockScale);
+    }
+
+    /**
+     * Draws a single block of {@code fillColor} with a
+     * {@code contourColor} contour into an image of its own.
+     */
+    private BufferedImage blockSprite(Color fillColor, Color contourColor) {
+        int size = (int) Math.ceil(blockScale) + 1;
+        BufferedImage sprite = config.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+        Graphics2D g2d = antialiased(sprite);
+        drawBlock(g2d, new Rectangle2D.Float(0, 0, blockScale, blockScale), fillColor, contourColor);
+        g2d.dispose();
+        return sprite;
+    }
+
+    /**
+     * Sets {@code bounds} to the area covered by the rows in {@code rows},
+     * a mask as returned by {@link RenderState#getDirtyRows(long)}.
+     * @param rows
+     * @param bounds
+     */
+    public void rowBounds(long rows, Rectangle bounds) {
+        if (rows == 0) {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int lowest = Long.numberOfTrailingZeros(rows) + 1;
+        int highest = highestRow(rows);
+        int x = cellX(1), y = cellY(highest);
+        // blocks stick out of their cells by a pixel or two
+        bounds.setBounds(x, y, cellX(boardWidth + 1) + 2 - x, cellY(lowest - 1) + 2 - y);
+    }
+
+    /**
+     * Returns the highest row in {@code rows}, where the last bit
+     * stands for every row from the 64th up.
+     */
+    private int highestRow(long rows) {
+        return rows < 0 ? boardHeight : Long.SIZE - Long.numberOfLeadingZeros(rows);
+    }
+
+    /**
+     * Sets {@code bounds} to the area covered by {@code piece}, wherever it is
+     * on the board, or to an empty area if {@code piece} is {@code null}.
+     * @param piece
+     * @param bounds
+     */
+    public void pieceBounds(Tetromino piece, Rectangle bounds) {
+        if (piece == null) {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        pieceBounds(piece.getTetrominoType(), piece.getCurrentRotation(), piece.getX(), piece.getY(), bounds);
+    }
+
+    /**
+     * Sets {@code bounds} to the area covered by a piece of type {@code type},
+     * rotated by {@code rotation} and at ({@code pieceX}, {@code pieceY}), or
+     * to an empty area if {@code type} is {@code null}.
+     * @param type
+     * @param rotation
+     * @param pieceX
+     * @param pieceY
+     * @param bounds
+     */
+    public void pieceBounds(TetrominoType type, int rotation, int pieceX, int pieceY, Rectangle bounds) {
+        if (type == null) {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < type.size(); i++) {
+            int x = type.getCellX(rotation, i) + pieceX;
+            int y = type.getCellY(rotation, i) + pieceY;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        int x = cellX(minX), y = cellY(maxY);
+        bounds.setBounds(x, y, cellX(maxX + 1) + 2 - x, cellY(minY - 1) + 2 - y);
+    }
+
+    /**
+     * Sets {@code bounds} to the area covered by the next piece queue.
+     * @param bounds
+     */
+    public void queueBounds(Rectangle bounds) {
+        bounds.setBounds(queueLayerX, queueLayerY, queueLayerWidth, queueLayerHeight);
+    }
+
+    private BufferedImage opaqueImage(int width, int height) {
+        return config.createCompatibleImage(width, height, Transparency.OPAQUE);
+    }
+
+    /**
+     * Draws everything that only depends on the size: the
+     * sprites, the border and the frame around the queue.
+     */
+    private void drawLayers(GraphicsConfiguration config) {
+        this.config = config;
+
+        blockSprites = new BufferedImage[PALETTE.length + 1];
+        ghostSprites = new BufferedImage[PALETTE.length + 1];
+        for (int i = 1; i <= PALETTE.length; i++) {
+            Color color = i == FALLBACK_COLOR ? colorOf(-1) : colorOf(i);
+            blockSprites[i] = blockSprite(color, Color.BLACK);
+            ghostSprites[i] = blockSprite(null, color);
+        }
+
+        boardFrame = opaqueImage(boardLayerWidth, boardLayerHeight);
+        boardLayer = opaqueImage(boardLayerWidth, boardLayerHeight);
+        Graphics2D g2d = antialiased(boardFrame);
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, boardFrame.getWidth(), boardFrame.getHeight());
+        g2d.translate(-boardLayerX, 0);
+        Rectangle2D.Float rect = new Rectangle2D.Float();
+        for (int i = 0; i <= boardHeight + 1; i++) {
+            rect.setFrame(boardXOffset - blockScale, i * blockScale, blockScale, blockScale);
+            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+
+            rect.setFrame(boardXOffset + boardWidth * blockScale, i * blockScale, blockScale, blockScale);
+            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+        }
+        for (int i = 0; i < boardWidth + 1; i++) {
+            rect.setFrame(boardXOffset + i * blockScale, 0, blockScale, blockScale);
+            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+
+            rect.setFrame(boardXOffset + i * blockScale, (boardHeight + 1) * blockScale, blockScale, blockScale);
+            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+        }
+        g2d.dispose();
+        settledVersion = -1;
+
+        queueFrame = opaqueImage(queueLayerWidth, queueLayerHeight);
+        queueLayer = opaqueImage(queueLayerWidth, queueLayerHeight);
+        g2d = antialiased(queueFrame);
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, queueFrame.getWidth(), queueFrame.getHeight());
+        g2d.translate(-queueLayerX, -queueLayerY);
+        rect.setFrame(nextpieceXOffset, blockScale, NEXT_PIECE_GRID_SIZE * blockScale, queueHeight * blockScale);
+        g2d.setStroke(QUEUE_FRAME_STROKE);
+        drawBlock(g2d, rect, null, Color.GRAY);
+        g2d.dispose();
+        queueKey = -1;
+    }
+
+    /**
+     * Draws the rows of the board layer in {@code rows} again (the
+     * whole layer if {@code rows} is {@code -1}), with the settled
+     * blocks of {@code state}.
+     */
+    private void drawSettled(RenderState state, long rows) {
+        Graphics2D g2d = boardLayer.createGraphics();
+        if (rows != -1) {
+            Rectangle clip = new Rectangle();
+            rowBounds(rows, clip);
+            clip.translate(-boardLayerX, 0);
+            g2d.clip(clip);
+        }
+        g2d.drawImage(boardFrame, 0, 0, null);
+        // the rows right next to the dirty ones may stick into them
+        int lowest = Math.max(Long.numberOfTrailingZeros(rows), 1);
+        int highest = Math.min(highestRow(rows) + 1, boardHeight);
+        for (int i = lowest; i <= highest; i++) {
+            for (int j = 1; j <= boardWidth; j++) {
+                int color = state.getColorAtCell(j, i);
+                if (color != 0) {
+                    g2d.drawImage(blockSprites[colorSlot(color)], cellX(j) - boardLayerX, cellY(i), null);
+                }
+            }
+        }
+        g2d.dispose();
+        settledVersion = state.getBlocksVersion();
+    }
+
+    /**
+     * Returns the types of the next pieces in {@code state}, packed
+     * into an int, so that they can be told apart at a glance.
+     */
+    private static int queueKey(RenderState state) {
+        int key = 0;
+        for (int count = 0; count < NEXT_PIECE_COUNT; count++) {
+            key = key << 3 | state.getNextPieceType(count).ordinal();
+        }
+        return key;
+    }
+
+    /**
+     * Draws the queue layer again, with the next pieces in {@code state}.
+     */
+    private void drawQueue(RenderState state, int key) {
+        Graphics2D g2d = queueLayer.createGraphics();
+        g2d.drawImage(queueFrame, 0, 0, null);
+
+        float yQueueOffset = 0;
+        for (int count = 0; count < NEXT_PIECE_COUNT; count++) {
+            TetrominoType nextPiece = state.getNextPieceType(count);
+
+            int maxX = Integer.MIN_VALUE;
+            for (int i = 0; i < nextPiece.size(); i++) {
+                maxX = Math.max(maxX, nextPiece.getCellX(0, i));
+            }
+            // draws next piece thingy
+            float subgridXOffset = (maxX) % 2 == 0 ? 1 : 0.5f;
+            float subgridYOffset = 0;
+
+            // special case. this one is rendered relatively centralized on the subgrid
+            if (nextPiece == TetrominoType.O) {
+                subgridXOffset = subgridXOffset + 1;
+                subgridYOffset = 1;
+            }
+
+            BufferedImage sprite = blockSprites[colorSlot(nextPiece.getColor())];
+            for (int i = 0; i < nextPiece.size(); i++) {
+                int x = nextPiece.getCellX(0, i);
+                int y = nextPiece.getCellY(0, i);
+
+                g2d.drawImage(sprite, Math.round((x + subgridXOffset) * blockScale + nextpieceXOffset) - queueLayerX,
+                    Math.round((NEXT_PIECE_GRID_SIZE / 2 + 2 - y - subgridYOffset + .5f + yQueueOffset) * blockScale) - queueLayerY, null);
+            }
+
+            yQueueOffset += 3.80;
+        }
+        g2d.dispose();
+        queueKey = key;
+    }
+
+    private void drawPiece(Graphics2D g2d, TetrominoType type, int rotation, int pieceX, int pieceY,
+            BufferedImage[] sprites) {
+        BufferedImage sprite = sprites[colorSlot(type.getColor())];
+        for (int i = 0; i < type.size(); i++) {
+            int x = type.getCellX(rotation, i) + pieceX;
+            int y = type.getCellY(rotation, i) + pieceY;
+            g2d.drawImage(sprite, cellX(x), cellY(y), null);
+        }
+    }
+
+    /**
+     * Paints the game as it is in {@code state} onto {@code g2d}.
+     * @param g2d
+     * @param state
+     */
+    public void paint(Graphics2D g2d, RenderState state) {
+        GraphicsConfiguration target = g2d.getDeviceConfiguration();
+        if (config != target) {
+            drawLayers(target);
+        }
+        if (settledVersion == -1) {
+            drawSettled(state, -1);
+        } else if (settledVersion != state.getBlocksVersion()) {
+            drawSettled(state, state.getDirtyRows(settledVersion));
+        }
+        int key = queueKey(state);
+        if (key != queueKey) {
+            drawQueue(state, key);
+        }
+
+        g2d.drawImage(boardLayer, boardLayerX, 0, null);
+        g2d.drawImage(queueLayer, queueLayerX, queueLayerY, null);
+
+        // draws current Tetromino and GhostPiece. there's none once the game is over
+        TetrominoType type = state.getPieceType();
+        if (type != null) {
+            int rotation = state.getPieceRotation();
+            if (state.hasGhostPiece()) {
+                drawPiece(g2d, type, rotation, state.getPieceX(), state.getGhostY(), ghostSprites);
+            }
+            drawPiece(g2d, type, rotation, state.getPieceX(), state.getPieceY(), blockSprites);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.mauro.tetris.tetris.gui;
+
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.function.BooleanSupplier;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.InputQueue;
+
+/**
+ * The KeyInput class turns the keys that play the game into presses and
+ * releases on an InputQueue, stamped with the time they're read at. A key
+ * held down is only pressed once, however often the OS repeats it, since
+ * the game repeats held keys on its own. Everything held is released when
+ * the component loses the focus, so no key is left stuck.
+ */
+class KeyInput extends KeyAdapter implements FocusListener {
+    private static final Actions[] ACTIONS = Actions.values();
+
+    private final InputQueue queue;
+    private final BooleanSupplier paused;
+
+    // the actions held down, as bits
+    private int held;
+
+    /**
+     * Creates a new KeyInput that puts the keys on {@code queue}.
+     * Keys pressed while {@code paused} says so are ignored, but they're
+     * still released.
+     * @param queue
+     * @param paused
+     */
+    KeyInput(InputQueue queue, BooleanSupplier paused) {
+        this.queue = queue;
+        this.paused = paused;
+    }
+
+    /**
+     * Returns the action bound to the key {@code keyCode}.
+     * @param keyCode
+     * @return the action, or {@code null} if the key doesn't play the game.
+     */
+    static Actions actionOf(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_X:
+                return Actions.ROTATE_CLOCKWISE;
+            case KeyEvent.VK_CONTROL:
+            case KeyEvent.VK_Z:
+                return Actions.ROTATE_COUNTERCLOCKWISE;
+            case KeyEvent.VK_SPACE:
+                return Actions.HARD_DROP;
+            case KeyEvent.VK_LEFT:
+                return Actions.MOVE_LEFT;
+            case KeyEvent.VK_RIGHT:
+                return Actions.MOVE_RIGHT;
+            case KeyEvent.VK_DOWN:
+                return Actions.MOVE_DOWN;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        Actions action = actionOf(e.getKeyCode());
+        if (action == null || (held & action.bit()) != 0 || paused.getAsBoolean()) {
+            return;
+        }
+        if (queue.offer(System.nanoTime(), action, true)) {
+            held |= action.bit();
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        Actions action = actionOf(e.getKeyCode());
+        if (action != null) {
+            release(action);
+        }
+    }
+
+    private void release(Actions action) {
+        if ((held & action.bit()) != 0 && queue.offer(System.nanoTime(), action, false)) {
+            held &= ~action.bit();
+        }
+    }
+
+    @Override
+    public void focusGained(FocusEvent e) {
+    }
+
+    @Override
+    public void focusLost(FocusEvent e) {
+        for (Actions action : ACTIONS) {
+            release(action);
+        }
+    }
+}
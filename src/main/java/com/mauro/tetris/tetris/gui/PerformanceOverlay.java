@@ -0,0 +1,310 @@
+package com.mauro.tetris.tetris.gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.metrics.EngineMetrics;
+
+/**
+ * The PerformanceOverlay class draws, on top of the game, a graph of how
+ * long the last frames took to paint and how long the ticks of the game
+ * logic took meanwhile, along with how many frames are painted a second,
+ * how many bytes the game and its painting allocate a second, and how many
+ * times the garbage collector ran.
+ * <p>
+ * Everything it keeps is in arrays allocated along with it: the samples of
+ * the graph go round ring buffers, and the text is written into a char
+ * array and drawn straight from it, so that it doesn't add to the garbage
+ * it's counting. It must only ever be used by the thread that paints.
+ */
+final class PerformanceOverlay {
+    // how many frames the graph goes back, and how wide each one is
+    private static final int SAMPLES = 120;
+    private static final int STEP = 2;
+    private static final int PADDING = 6;
+    private static final int LINE_HEIGHT = 14;
+    private static final int LINES = 4;
+    private static final int GRAPH_HEIGHT = 48;
+
+    private static final int WIDTH = SAMPLES * STEP + 2 * PADDING;
+    private static final int HEIGHT = LINES * LINE_HEIGHT + GRAPH_HEIGHT + 3 * PADDING;
+
+    // the numbers in text are worked out over a second
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final Color BACKDROP = new Color(0, 0, 0, 170);
+    private static final Color TEXT_COLOR = new Color(0xDDDDDD);
+    private static final Color FRAME_COLOR = new Color(0x66DD44);
+    private static final Color TICK_COLOR = new Color(0xFFAA22);
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    private final GameLoop loop;
+    private final EngineMetrics metrics;
+    // null if the JVM can't count allocations per thread
+    private final com.sun.management.ThreadMXBean threads;
+    private final GarbageCollectorMXBean[] collectors;
+
+    private final int x, y;
+
+    // ring buffers of the last frames, oldest first from next
+    private final long[] frameTimes;
+    private final long[] tickTimes;
+    private int next;
+    private int count;
+    private long lastTicks, lastUpdateTime;
+
+    // the second the text is worked out over
+    private long secondStart;
+    private int secondFrames;
+    private long secondFrameTime;
+    private long secondTicks, secondUpdateTime;
+    private long logicThread, logicBytes;
+    private long paintThread, paintBytes;
+
+    // what the text says, in the units it says it in
+    private long frameTenthsOfMillis, framesPerSecond;
+    private long tickTenthsOfMicros;
+    private long allocatedKilobytesPerSecond;
+    private long collections, collectionMillis;
+
+    private final char[] text;
+    private final int[] xs, ys;
+
+    /**
+     * Creates a new PerformanceOverlay for the game run by {@code loop},
+     * to be drawn at ({@code x}, {@code y}).
+     * @param loop
+     * @param x
+     * @param y
+     */
+    PerformanceOverlay(GameLoop loop, int x, int y) {
+        this.loop = loop;
+        this.metrics = loop.getMetrics();
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            this.threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.threads = null;
+        }
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        this.x = x;
+        this.y = y;
+
+        this.frameTimes = new long[SAMPLES];
+        this.tickTimes = new long[SAMPLES];
+        this.text = new char[64];
+        this.xs = new int[SAMPLES];
+        this.ys = new int[SAMPLES];
+        this.allocatedKilobytesPerSecond = -1;
+        this.logicThread = this.paintThread = -1;
+        reset(System.nanoTime());
+    }
+
+    /**
+     * Forgets every sample, for when the overlay is shown again
+     * after a while, and starts over from {@code now}.
+     * @param now the time, as given by {@link System#nanoTime()}.
+     */
+    void reset(long now) {
+        this.next = this.count = 0;
+        this.lastTicks = this.secondTicks = metrics.getTicks();
+        this.lastUpdateTime = this.secondUpdateTime = metrics.getUpdateTimeNanos();
+        this.secondStart = now;
+        this.secondFrames = 0;
+        this.secondFrameTime = 0;
+        allocatedBytesSinceLast();
+    }
+
+    /**
+     * Puts where the overlay is drawn into {@code bounds}.
+     * @param bounds
+     */
+    void bounds(Rectangle bounds) {
+        bounds.setBounds(x, y, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Takes a frame that was just painted into account, along with
+     * the ticks of the game logic since the last one.
+     * @param frameNanos how long painting the frame took.
+     * @param now the time, as given by {@link System#nanoTime()}.
+     */
+    void record(long frameNanos, long now) {
+        long ticks = metrics.getTicks();
+        long updateTime = metrics.getUpdateTimeNanos();
+        frameTimes[next] = frameNanos;
+        tickTimes[next] = ticks == lastTicks ? 0 : (updateTime - lastUpdateTime) / (ticks - lastTicks);
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+        lastTicks = ticks;
+        lastUpdateTime = updateTime;
+
+        secondFrames++;
+        secondFrameTime += frameNanos;
+        long elapsed = now - secondStart;
+        if (elapsed >= SECOND) {
+            framesPerSecond = (secondFrames * SECOND + elapsed / 2) / elapsed;
+            frameTenthsOfMillis = secondFrameTime / secondFrames / (MILLISECOND / 10);
+            tickTenthsOfMicros = ticks == secondTicks ? 0 : (updateTime - secondUpdateTime) / (ticks - secondTicks) / 100;
+            long allocated = allocatedBytesSinceLast();
+            allocatedKilobytesPerSecond = allocated < 0 ? -1 : allocated * SECOND / elapsed / 1024;
+
+            long total = 0, totalTime = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                total += Math.max(collector.getCollectionCount(), 0);
+                totalTime += Math.max(collector.getCollectionTime(), 0);
+            }
+            collections = total;
+            collectionMillis = totalTime;
+
+            secondStart = now;
+            secondFrames = 0;
+            secondFrameTime = 0;
+            secondTicks = ticks;
+            secondUpdateTime = updateTime;
+        }
+    }
+
+    /**
+     * Returns how many bytes the thread running the game and the one
+     * painting it (the current one) allocated since the last call, or
+     * {@code -1} if that can't be told.
+     */
+    private long allocatedBytesSinceLast() {
+        if (threads == null) {
+            return -1;
+        }
+        long logicId = loop.getThreadId();
+        long paintId = Thread.currentThread().getId();
+        long logic = logicId < 0 ? -1 : threads.getThreadAllocatedBytes(logicId);
+        long paint = threads.getThreadAllocatedBytes(paintId);
+
+        long allocated = -1;
+        // a thread that's new since the last call has nothing to compare with
+        if (logicId == logicThread && paintId == paintThread && logic >= 0 && logicBytes >= 0
+                && paint >= 0 && paintBytes >= 0) {
+            allocated = (logic - logicBytes) + (paint - paintBytes);
+        }
+        logicThread = logicId;
+        logicBytes = logic;
+        paintThread = paintId;
+        paintBytes = paint;
+        return allocated;
+    }
+
+    /**
+     * Draws the overlay onto {@code g2d}.
+     * @param g2d
+     */
+    void paint(Graphics2D g2d) {
+        g2d.setColor(BACKDROP);
+        g2d.fillRect(x, y, WIDTH, HEIGHT);
+        g2d.setFont(FONT);
+
+        int left = x + PADDING;
+        int baseline = y + PADDING + LINE_HEIGHT - 3;
+        int length = put(0, "frame ");
+        length = putTenths(length, frameTenthsOfMillis);
+        length = put(length, " ms  ");
+        length = putLong(length, framesPerSecond);
+        length = put(length, " fps");
+        g2d.setColor(FRAME_COLOR);
+        g2d.drawChars(text, 0, length, left, baseline);
+
+        length = put(0, "tick  ");
+        length = putTenths(length, tickTenthsOfMicros);
+        length = put(length, " us");
+        g2d.setColor(TICK_COLOR);
+        g2d.drawChars(text, 0, length, left, baseline += LINE_HEIGHT);
+
+        length = put(0, "alloc ");
+        if (allocatedKilobytesPerSecond < 0) {
+            length = put(length, "n/a");
+        } else {
+            length = putLong(length, allocatedKilobytesPerSecond);
+            length = put(length, " KB/s");
+        }
+        g2d.setColor(TEXT_COLOR);
+        g2d.drawChars(text, 0, length, left, baseline += LINE_HEIGHT);
+
+        length = put(0, "gc    ");
+        length = putLong(length, collections);
+        length = put(length, " (");
+        length = putLong(length, collectionMillis);
+        length = put(length, " ms)");
+        g2d.drawChars(text, 0, length, left, baseline += LINE_HEIGHT);
+
+        // the graph goes up to the next whole millisecond above everything in it
+        int top = y + LINES * LINE_HEIGHT + 2 * PADDING;
+        int bottom = top + GRAPH_HEIGHT;
+        long highest = 0;
+        for (int i = 0; i < count; i++) {
+            highest = Math.max(highest, Math.max(frameTimes[i], tickTimes[i]));
+        }
+        long scale = (highest / MILLISECOND + 1) * MILLISECOND;
+        g2d.drawLine(left, bottom, left + SAMPLES * STEP - 1, bottom);
+        length = putLong(0, scale / MILLISECOND);
+        length = put(length, " ms");
+        g2d.drawChars(text, 0, length, left, top + LINE_HEIGHT - 4);
+
+        g2d.setColor(TICK_COLOR);
+        drawSamples(g2d, tickTimes, left, bottom, scale);
+        g2d.setColor(FRAME_COLOR);
+        drawSamples(g2d, frameTimes, left, bottom, scale);
+    }
+
+    private void drawSamples(Graphics2D g2d, long[] samples, int left, int bottom, long scale) {
+        int first = (next - count + SAMPLES) % SAMPLES;
+        for (int i = 0; i < count; i++) {
+            long sample = samples[(first + i) % SAMPLES];
+            xs[i] = left + (SAMPLES - count + i) * STEP;
+            ys[i] = bottom - (int) (sample * GRAPH_HEIGHT / scale);
+        }
+        g2d.drawPolyline(xs, ys, count);
+    }
+
+    /**
+     * Writes {@code s} into the text at {@code position}.
+     * @return where the text ends now.
+     */
+    private int put(int position, String s) {
+        s.getChars(0, s.length(), text, position);
+        return position + s.length();
+    }
+
+    /**
+     * Writes {@code value}, which mustn't be negative, into the text at {@code position}.
+     * @return where the text ends now.
+     */
+    private int putLong(int position, long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    /**
+     * Writes {@code tenths} tenths with one decimal place into the text at {@code position}.
+     * @return where the text ends now.
+     */
+    private int putTenths(int position, long tenths) {
+        position = putLong(position, tenths / 10);
+        text[position++] = '.';
+        text[position++] = (char) ('0' + tenths % 10);
+        return position;
+    }
+}
@@ -0,0 +1,92 @@
+package com.mauro.tetris.tetris.gui;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+
+import com.mauro.tetris.tetris.RenderState;
+
+/**
+ * The RepaintTracker class keeps track of what was last painted of a
+ * TetrisGame, as RenderStates of it, and asks a component to repaint only
+ * the parts of it that changed since then: the rows whose blocks changed,
+ * where the current and ghost pieces were and are, and the next piece queue.
+ * When nothing changed, nothing is repainted at all.
+ * <p>
+ * It must be told about every RenderState that's going to be painted (by
+ * calling {@link #repaintChanges(RenderState)}) on the thread that paints,
+ * before it's painted.
+ */
+class RepaintTracker {
+    private final Component component;
+    private final BoardPainter painter;
+
+    private long gameVersion;
+    private long blocksVersion;
+    private long pieceVersion;
+    private long queueVersion;
+
+    // where the pieces were last time, and scratch space for everything else
+    private final Rectangle pieceBounds;
+    private final Rectangle ghostBounds;
+    private final Rectangle bounds;
+
+    RepaintTracker(Component component, BoardPainter painter) {
+        this.component = component;
+        this.painter = painter;
+        this.pieceBounds = new Rectangle();
+        this.ghostBounds = new Rectangle();
+        this.bounds = new Rectangle();
+        reset();
+    }
+
+    /**
+     * Forgets what was painted, for when the whole component is going to be
+     * repainted anyway (it was resized, for instance). The next call to
+     * {@link #repaintChanges(RenderState)} takes everything as changed.
+     */
+    void reset() {
+        gameVersion = blocksVersion = pieceVersion = queueVersion = -1;
+        pieceBounds.setBounds(0, 0, 0, 0);
+        ghostBounds.setBounds(0, 0, 0, 0);
+    }
+
+    /**
+     * Asks the component to repaint whatever changed
+     * in {@code state} since the last call.
+     */
+    void repaintChanges(RenderState state) {
+        long version = state.getVersion();
+        if (version == gameVersion) {
+            return;
+        }
+        gameVersion = version;
+
+        if (state.getBlocksVersion() != blocksVersion) {
+            painter.rowBounds(state.getDirtyRows(blocksVersion), bounds);
+            repaint(bounds);
+            blocksVersion = state.getBlocksVersion();
+        }
+        if (state.getPieceVersion() != pieceVersion) {
+            repaint(pieceBounds);
+            repaint(ghostBounds);
+            painter.pieceBounds(state.getPieceType(), state.getPieceRotation(),
+                    state.getPieceX(), state.getPieceY(), pieceBounds);
+            painter.pieceBounds(state.hasGhostPiece() ? state.getPieceType() : null, state.getPieceRotation(),
+                    state.getPieceX(), state.getGhostY(), ghostBounds);
+            repaint(pieceBounds);
+            repaint(ghostBounds);
+            pieceVersion = state.getPieceVersion();
+        }
+        if (state.getQueueVersion() != queueVersion) {
+            painter.queueBounds(bounds);
+            repaint(bounds);
+            queueVersion = state.getQueueVersion();
+        }
+    }
+
+    private void repaint(Rectangle area) {
+        if (!area.isEmpty()) {
+            component.repaint(area.x, area.y, area.width, area.height);
+        }
+    }
+}
@@ -1,16 +1,14 @@
 package com.mauro.tetris.tetris.gui;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
@@ -18,44 +16,46 @@ import javax.swing.InputMap;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
 
-import com.mauro.tetris.enums.Actions;
-import com.mauro.tetris.pieces.Block;
-import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.RenderState;
 import com.mauro.tetris.tetris.TetrisBoard;
 import com.mauro.tetris.tetris.TetrisGame;
-import com.mauro.tetris.tetris.Timer;
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+import com.mauro.tetris.tetris.jfr.PaintEvent;
 
 /**
  * The TetrisRenderer class serves to render the TetrisGame
  * class on the screen and to send user input to the game.
  * That's it.
+ * <p>
+ * The game itself runs on the thread of a {@link GameLoop} while the
+ * renderer is showing. Swing only ever gets to see the RenderStates
+ * the loop publishes, and is asked to repaint whatever changed in
+ * them as soon as they're published.
  */
 public class TetrisRenderer extends JPanel {
-    private static final int NEXT_PIECE_GRID_SIZE = 5;
-    private static final int DELAY_MS = 33;
-    
-    private static final String ACTION_TOGGLE_GHOST_PIECE = "TOGGLE_GHOST"; 
+    private static final String ACTION_TOGGLE_GHOST_PIECE = "TOGGLE_GHOST";
+    private static final String ACTION_TOGGLE_BOT = "TOGGLE_BOT";
+    private static final String ACTION_TOGGLE_OVERLAY = "TOGGLE_OVERLAY";
     private static final String ACTION_PAUSE = "PAUSE";
     private static final String ACTION_EXIT = "EXIT";
 
-    private static final String ACTION_ROTATE_CCW = "ROTATE_CCW";
-    private static final String ACTION_ROTATE_CW = "ROTATE_CW";
-    private static final String ACTION_HARD_DROP = "HARD_DROP";
-    
-    private static final String ACTION_MOVE_RIGHT = "MOVE_RIGHT";
-    private static final String ACTION_MOVE_DOWN = "MOVE_DOWN";
-    private static final String ACTION_MOVE_LEFT = "MOVE_LEFT";
+    private final GameLoop loop;
+    private final TetrisBoard board;
 
-    private TetrisGame game;
-    private TetrisBoard board;
+    private final BoardPainter painter;
+    private final RepaintTracker tracker;
 
-    private javax.swing.Timer gameTimer;
-    private Timer timer;
+    // drawn over the game while it's shown. only ever touched on the EDT
+    private final PerformanceOverlay overlay;
+    private final Rectangle overlayBounds;
+    private boolean showOverlay;
 
-    private float blockScale;
-    private float boardXOffset;
-
-    private float nextpieceXOffset;
+    // what's painted. only ever touched on the EDT
+    private RenderState state;
+    // set while a look at the latest state is waiting on the EDT
+    private final AtomicBoolean changesPending;
+    private final Runnable repaintChanges;
 
     /**
      * Creates a new TetrisRenderer for the {@code game} with
@@ -64,120 +64,95 @@ public class TetrisRenderer extends JPanel {
      * @param preferredSize
      */
     public TetrisRenderer(TetrisGame game, Dimension preferredSize) {
-        this.game = game;
-        this.board = game.getTetrisBoard();
+        this(new GameLoop(game), preferredSize);
+    }
+
+    /**
+     * Creates a new TetrisRenderer for the game run by {@code loop} with
+     * preferred dimensions as {@code preferredSize}. The loop is started
+     * and stopped along with the renderer.
+     * @param loop a loop that isn't running yet.
+     * @param preferredSize
+     */
+    public TetrisRenderer(GameLoop loop, Dimension preferredSize) {
+        this.loop = loop;
+        // only its size is ever looked at
+        this.board = loop.getGame().getTetrisBoard();
+        this.painter = new BoardPainter(this.getBackground());
+        this.tracker = new RepaintTracker(this, painter);
+        this.state = loop.getState();
+        this.overlay = new PerformanceOverlay(loop, 8, 8);
+        this.overlayBounds = new Rectangle();
+        overlay.bounds(overlayBounds);
+        this.showOverlay = false;
+
+        this.changesPending = new AtomicBoolean();
+        this.repaintChanges = () -> {
+            changesPending.set(false);
+            state = loop.getState();
+            tracker.repaintChanges(state);
+            if (showOverlay) {
+                repaint(overlayBounds);
+            }
+        };
+        loop.setPublishListener(() -> {
+            if (!changesPending.getAndSet(true)) {
+                EventQueue.invokeLater(repaintChanges);
+            }
+        });
 
         this.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                float height = getHeight();
-                float width = getWidth();
-
-                blockScale = height / (board.getHeight() + 2);
-                boardXOffset =  width / 6; 
-
-                nextpieceXOffset = boardXOffset + blockScale * (board.getWidth() + 4);
+                painter.resize(getWidth(), getHeight(), board);
+                // the whole thing gets repainted anyway
+                tracker.reset();
             }
         });
 
+        // the keys that play the game go through the queue, and the game applies them
+        KeyInput keys = new KeyInput(loop.getInputQueue(), this::isPaused);
+        this.addKeyListener(keys);
+        this.addFocusListener(keys);
+        this.setFocusable(true);
+
         InputMap inputmap = this.getInputMap();
         ActionMap actionmap = this.getActionMap();
 
-        inputmap.put(KeyStroke.getKeyStroke("UP"), ACTION_ROTATE_CW);
-        inputmap.put(KeyStroke.getKeyStroke("X"), ACTION_ROTATE_CW);
-        actionmap.put(ACTION_ROTATE_CW, new AbstractAction() {
+        inputmap.put(KeyStroke.getKeyStroke("G"), ACTION_TOGGLE_GHOST_PIECE);
+        actionmap.put(ACTION_TOGGLE_GHOST_PIECE, new AbstractAction() {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
+                if (isPaused()) {
                     return;
                 }
-                game.moveCurrentTetromino(Actions.ROTATE_CLOCKWISE);
-                getRootPane().repaint();
+                loop.toggleGhostPiece();
             }
-            
-        });
-
-        inputmap.put(KeyStroke.getKeyStroke("CTRL"), ACTION_ROTATE_CCW);
-        inputmap.put(KeyStroke.getKeyStroke("Z"), ACTION_ROTATE_CCW);
-        actionmap.put(ACTION_ROTATE_CCW, new AbstractAction() {
 
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
-                    return;
-                }
-                game.moveCurrentTetromino(Actions.ROTATE_COUNTERCLOCKWISE);
-                getRootPane().repaint();
-            }
-            
         });
 
-        inputmap.put(KeyStroke.getKeyStroke("SPACE"), ACTION_HARD_DROP);
-        actionmap.put(ACTION_HARD_DROP, new AbstractAction() {
-            
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
-                    return;
-                }
-                game.moveCurrentTetromino(Actions.HARD_DROP);
-                getRootPane().repaint();
-            }
-            
-        });
-        
-        inputmap.put(KeyStroke.getKeyStroke("LEFT"), ACTION_MOVE_LEFT);
-        actionmap.put(ACTION_MOVE_LEFT, new AbstractAction() {
+        inputmap.put(KeyStroke.getKeyStroke("B"), ACTION_TOGGLE_BOT);
+        actionmap.put(ACTION_TOGGLE_BOT, new AbstractAction() {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
+                if (isPaused()) {
                     return;
                 }
-                game.moveCurrentTetromino(Actions.MOVE_LEFT);
-                getRootPane().repaint();
+                loop.setController(loop.getController() == null ? new HeuristicBot() : null);
             }
-        });
 
-        inputmap.put(KeyStroke.getKeyStroke("RIGHT"), ACTION_MOVE_RIGHT);
-        actionmap.put(ACTION_MOVE_RIGHT, new AbstractAction() {
-
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
-                    return;
-                }
-                game.moveCurrentTetromino(Actions.MOVE_RIGHT);
-                getRootPane().repaint();
-            }
         });
 
-        inputmap.put(KeyStroke.getKeyStroke("DOWN"), ACTION_MOVE_DOWN);
-        actionmap.put(ACTION_MOVE_DOWN, new AbstractAction() {
+        inputmap.put(KeyStroke.getKeyStroke("F3"), ACTION_TOGGLE_OVERLAY);
+        actionmap.put(ACTION_TOGGLE_OVERLAY, new AbstractAction() {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
-                    return;
-                }
-                game.moveCurrentTetromino(Actions.MOVE_DOWN);
-                getRootPane().repaint();
+                toggleOverlay();
             }
-        });
 
-        inputmap.put(KeyStroke.getKeyStroke("G"), ACTION_TOGGLE_GHOST_PIECE);
-        actionmap.put(ACTION_TOGGLE_GHOST_PIECE, new AbstractAction() {
-
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (!gameTimer.isRunning()) {
-                    return;
-                }
-                game.toggleGhostPiece();
-                getRootPane().repaint();
-            }
-            
         });
 
         inputmap.put(KeyStroke.getKeyStroke("P"), ACTION_PAUSE);
@@ -185,14 +160,13 @@ public class TetrisRenderer extends JPanel {
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (gameTimer.isRunning()) {
-                    gameTimer.stop();
+                if (isPaused()) {
+                    resume();
                 } else {
-                    timer.reset();
-                    gameTimer.start();
+                    pause();
                 }
             }
- 
+
         });
 
         inputmap.put(KeyStroke.getKeyStroke("ESCAPE"), ACTION_EXIT);
@@ -205,142 +179,92 @@ public class TetrisRenderer extends JPanel {
 
         });
 
-        timer = new Timer();
-        // ~30 fps
-        gameTimer = new javax.swing.Timer(DELAY_MS, e -> {
-            game.update(timer.getTimeElapsed());
-            getRootPane().repaint();
-        });
-        gameTimer.start();
-
         this.setPreferredSize(preferredSize);
     }
 
     /**
-     * Draws a block as defined by {@code rect}
-     * with contour {@code contourColor} and 
-     * fill color {@code fillColor}
-     * 
-     * @param g2d
-     * @param rect
-     * @param fillColor
-     * @param contourColor
+     * Stops updating the game.
      */
-    private void drawBlock(Graphics2D g2d, Rectangle2D.Float rect, Color fillColor, Color contourColor) {
-        if (fillColor != null) {
-            g2d.setColor(fillColor);
-            g2d.fill(rect);
-        }
-        if (contourColor != null) {
-            g2d.setColor(contourColor);
-            g2d.draw(rect);
-        }
+    public void pause() {
+        loop.pause();
     }
 
-    @Override
-    public void paintComponent(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        int boardWidth = board.getWidth();
-        int boardHeight = board.getHeight();
-
-        Rectangle2D.Float rect = new Rectangle2D.Float();
-
-        // TODO - renderizar imagem na bufferedimage para facilitar centralização
-        // BufferedImage bim = new BufferedImage(0, 0, BufferedImage.TYPE_INT_ARGB);
-        // Graphics2D bimg2d = (Graphics2D) bim.getGraphics(); 
-        g2d.drawImage(null, null, boardWidth, boardHeight);
-
-        for (int i = 0; i <= boardHeight + 1; i++) {
-            rect.setFrame(boardXOffset - blockScale, i * blockScale, blockScale, blockScale);
-            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
-
-            rect.setFrame(boardXOffset + boardWidth * blockScale, i * blockScale, blockScale, blockScale);
-            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
-        }
+    /**
+     * Resumes updating the game from where it was paused.
+     */
+    public void resume() {
+        loop.resume();
+    }
 
-        for (int i = 0; i < boardWidth + 1; i++) {
-            rect.setFrame(boardXOffset + i * blockScale, 0, blockScale, blockScale);
-            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+    /**
+     * Checks whether the game is paused.
+     * @return {@code true} if the game is paused.
+     */
+    public boolean isPaused() {
+        return loop.isPaused();
+    }
 
-            rect.setFrame(boardXOffset + i * blockScale, (boardHeight + 1) * blockScale, blockScale, blockScale);
-            drawBlock(g2d, rect, Color.GRAY, Color.BLACK);
+    /**
+     * Shows the performance overlay over the game, or hides it.
+     */
+    public void toggleOverlay() {
+        showOverlay = !showOverlay;
+        if (showOverlay) {
+            overlay.reset(System.nanoTime());
         }
+        repaint(overlayBounds);
+    }
 
-        // draws grid
-        for (int i = 1; i <= boardHeight; i++) {
-            for (int j = 1; j <= boardWidth; j++) {
-                Block block = board.getBlockAtCell(j, i);
-                if (block == null) {
-                    continue;
-                }
-                rect.setFrame((j - 1) * blockScale + boardXOffset, (boardHeight - i + 1) * blockScale, blockScale, blockScale);
-                drawBlock(g2d, rect, block.getColor(), Color.BLACK);
-            }
-}
+    /**
+     * Checks whether the performance overlay is shown.
+     * @return {@code true} if it's shown.
+     */
+    public boolean isOverlayShown() {
+        return showOverlay;
+    }
 
-        // draws current Tetromino and GhostPiece
-        Tetromino piece = board.getCurrentTetromino();
-        Tetromino ghostPiece = board.getGhostPiece();
-
-        if (ghostPiece != null) {
-            for (Block b : ghostPiece.getBody()) {
-                float x = b.getX() + ghostPiece.getPosition().x;
-                float y = b.getY() + ghostPiece.getPosition().y;
-    
-                rect.setFrame((x - 1) * blockScale + boardXOffset, (boardHeight - y + 1) * blockScale, blockScale, blockScale);
-                drawBlock(g2d, rect, null, b.getColor());
-            }
-        }
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        loop.start();
+    }
 
-        for (Block b : piece.getBody()) {
-            float x = b.getX() + piece.getPosition().x;
-            float y = b.getY() + piece.getPosition().y;
+    @Override
+    public void removeNotify() {
+        loop.stop();
+        super.removeNotify();
+    }
 
-            rect.setFrame((x - 1) * blockScale + boardXOffset, (boardHeight - y + 1) * blockScale, blockScale, blockScale);
-            drawBlock(g2d, rect, b.getColor(), Color.BLACK);
+    @Override
+    public void paintComponent(Graphics g) {
+        PaintEvent event = null;
+        if (PaintEvent.isRecording()) {
+            event = new PaintEvent();
+            event.begin();
         }
-        
-        final int countMax = 6;
-        int count = 0;
-        float yQueueOffset = 0;
-        for (Tetromino nextPiece : game.getNextPieceQueue()) {
-            if (count >= countMax) {
-                break;
-            }
-
-            Block[] nextPieceBlocks = nextPiece.getBody();
-    
-            int maxX = Integer.MIN_VALUE;
-            for (Block b : nextPieceBlocks) {
-                maxX = Math.max(maxX, (int) b.getX());
+        long start = System.nanoTime();
+        // only what's within the clip gets filled, and then painted over
+        super.paintComponent(g);
+        painter.paint((Graphics2D) g, state);
+        long end = System.nanoTime();
+        loop.getMetrics().recordPaint(end - start);
+        // the overlay isn't part of what it measures, and
+        // repaints of just the overlay aren't frames
+        if (showOverlay) {
+            Rectangle clip = g.getClipBounds();
+            if (clip == null || !overlayBounds.contains(clip)) {
+                overlay.record(end - start, end);
             }
-            // draws next piece thingy
-            float subgridXOffset = (maxX) % 2 == 0 ? 1 : 0.5f;
-            float subgridYOffset = 0;
-                
-            // special case. this one is rendered relatively centralized on the subgrid
-            if (nextPiece.getTetrominoName().equals("O")) {
-                subgridXOffset = subgridXOffset + 1;
-                subgridYOffset = 1;
-            }
-            
-            for (Block b : nextPieceBlocks) {
-                float x = b.getX();
-                float y = b.getY();
-            
-                rect.setFrame((x + subgridXOffset) * blockScale + nextpieceXOffset, (NEXT_PIECE_GRID_SIZE / 2 + 2 - y - subgridYOffset + .5 + yQueueOffset) * blockScale, blockScale, blockScale);
-                drawBlock(g2d, rect, b.getColor(), Color.BLACK);
-            }
-
-            count++;
-            yQueueOffset += 3.80;
+            overlay.paint((Graphics2D) g);
         }
-        yQueueOffset += 3.80;
 
-        rect.setFrame(nextpieceXOffset, blockScale , NEXT_PIECE_GRID_SIZE * blockScale, (yQueueOffset - 3) * blockScale);
-        g2d.setStroke(new BasicStroke(3.25F));
-        drawBlock(g2d, rect, null, Color.GRAY);
-    }  
+        if (event != null) {
+            Rectangle clip = g.getClipBounds();
+            event.renderer = "passive";
+            event.frame = state.getFrame();
+            event.version = state.getVersion();
+            event.area = clip != null ? (long) clip.width * clip.height : (long) getWidth() * getHeight();
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package com.mauro.tetris.tetris.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The LineClearEvent class is the full rows of the board being
+ * cleared, and the rows above them being pulled down.
+ */
+@Name("com.mauro.tetris.LineClear")
+@Label("Line Clear")
+@Category({ "Tetris", "Game" })
+@Description("Full rows being cleared and the rows above them pulled down")
+@StackTrace(false)
+public final class LineClearEvent extends Event {
+    private static final LineClearEvent PROBE = new LineClearEvent();
+
+    @Label("Rows")
+    @Description("How many rows were cleared")
+    public int rows;
+
+    @Label("Row Mask")
+    @Description("The rows among the lowest 64 that were cleared, bit i standing for row i + 1")
+    public long rowMask;
+
+    @Label("Total Lines Cleared")
+    @Description("How many lines had been cleared since the game started, these included")
+    public long totalLinesCleared;
+
+    /**
+     * Checks whether a recording is taking these events in.
+     * @return {@code true} if it's worth creating one.
+     */
+    public static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+}
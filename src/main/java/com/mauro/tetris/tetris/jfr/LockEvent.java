@@ -0,0 +1,54 @@
+package com.mauro.tetris.tetris.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The LockEvent class is a piece locking into the board, along with
+ * the line clears and the spawn of the next piece that follow it.
+ */
+@Name("com.mauro.tetris.Lock")
+@Label("Piece Lock")
+@Category({ "Tetris", "Game" })
+@Description("A piece locking into the board, clearing lines and spawning the next piece")
+@StackTrace(false)
+public final class LockEvent extends Event {
+    private static final LockEvent PROBE = new LockEvent();
+
+    @Label("Piece")
+    @Description("The type of the piece")
+    public String piece;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Rotation")
+    public int rotation;
+
+    @Label("Frame")
+    @Description("The frame of the fixed timestep the game was on")
+    public long frame;
+
+    @Label("Pieces Placed")
+    @Description("How many pieces had been placed, this one included")
+    public long piecesPlaced;
+
+    @Label("Lines Cleared")
+    @Description("How many lines the piece cleared")
+    public int linesCleared;
+
+    /**
+     * Checks whether a recording is taking these events in.
+     * @return {@code true} if it's worth creating one.
+     */
+    public static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+}
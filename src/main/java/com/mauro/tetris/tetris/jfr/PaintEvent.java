@@ -0,0 +1,45 @@
+package com.mauro.tetris.tetris.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The PaintEvent class is a frame of the game being painted
+ * by one of the renderers.
+ */
+@Name("com.mauro.tetris.Paint")
+@Label("Paint")
+@Category({ "Tetris", "Rendering" })
+@Description("A frame of the game being painted")
+@StackTrace(false)
+public final class PaintEvent extends Event {
+    private static final PaintEvent PROBE = new PaintEvent();
+
+    @Label("Renderer")
+    @Description("Which renderer painted the frame")
+    public String renderer;
+
+    @Label("Frame")
+    @Description("The frame of the fixed timestep the painted game was on")
+    public long frame;
+
+    @Label("Version")
+    @Description("The version of the painted game")
+    public long version;
+
+    @Label("Area")
+    @Description("How many pixels were painted")
+    public long area;
+
+    /**
+     * Checks whether a recording is taking these events in.
+     * @return {@code true} if it's worth creating one.
+     */
+    public static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+}
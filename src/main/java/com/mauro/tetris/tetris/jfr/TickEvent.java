@@ -0,0 +1,47 @@
+package com.mauro.tetris.tetris.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The TickEvent class is a single update of the game logic
+ * ({@code TetrisGame.update(long)}), and how long it took.
+ */
+@Name("com.mauro.tetris.Tick")
+@Label("Game Tick")
+@Category({ "Tetris", "Game" })
+@Description("A single update of the game logic")
+@StackTrace(false)
+public final class TickEvent extends Event {
+    private static final TickEvent PROBE = new TickEvent();
+
+    @Label("Frame")
+    @Description("The frame of the fixed timestep the game was on")
+    public long frame;
+
+    @Label("Time Elapsed")
+    @Description("How much game time the update advanced by")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeElapsed;
+
+    @Label("Locked")
+    @Description("Whether a piece locked during the update")
+    public boolean locked;
+
+    @Label("Game Over")
+    @Description("Whether the game was over after the update")
+    public boolean gameOver;
+
+    /**
+     * Checks whether a recording is taking these events in.
+     * @return {@code true} if it's worth creating one.
+     */
+    public static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+}
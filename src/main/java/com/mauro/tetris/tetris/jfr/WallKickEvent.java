@@ -0,0 +1,48 @@
+package com.mauro.tetris.tetris.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The WallKickEvent class is a rotation of the current piece that didn't
+ * fit where the piece was, so its wall kicks were tried, whether any of
+ * them fit or not.
+ */
+@Name("com.mauro.tetris.WallKick")
+@Label("Wall Kick")
+@Category({ "Tetris", "Game" })
+@Description("A rotation that needed its wall kicks tried")
+@StackTrace(false)
+public final class WallKickEvent extends Event {
+    private static final WallKickEvent PROBE = new WallKickEvent();
+
+    @Label("Piece")
+    @Description("The type of the piece")
+    public String piece;
+
+    @Label("Clockwise")
+    public boolean clockwise;
+
+    @Label("From Rotation")
+    public int fromRotation;
+
+    @Label("Test")
+    @Description("The wall kick test that fit the piece, from 1 to 4, or -1 if none did")
+    public int test;
+
+    @Label("Succeeded")
+    @Description("Whether the piece was rotated in the end")
+    public boolean succeeded;
+
+    /**
+     * Checks whether a recording is taking these events in.
+     * @return {@code true} if it's worth creating one.
+     */
+    public static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+}
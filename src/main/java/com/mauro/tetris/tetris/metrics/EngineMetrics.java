@@ -0,0 +1,345 @@
+package com.mauro.tetris.tetris.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The EngineMetrics class counts what a running game does (ticks, frames
+ * painted, collision checks, wall kicks, line clears and lock delays running
+ * out) and how long its updates and paints take, and lets JMX clients watch
+ * it all as a platform MBean, {@code com.mauro.tetris:type=EngineMetrics,name=game-1}
+ * for the first game of the JVM, {@code game-2} for the second one and so on.
+ * <p>
+ * Counting never waits on anything and never allocates: the counters are
+ * {@link LongAdder}s, and each of the two latency histograms is only ever
+ * written by one thread (the one running the game, and the one painting it,
+ * respectively). Everything the attributes need to work out is worked out
+ * when they're read, on the thread reading them, at most once a second.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+    private static final String DOMAIN = "com.mauro.tetris";
+    // how long the rates and latencies are worked out over, at the least
+    private static final long WINDOW = 1_000_000_000L;
+    private static final int MAX_LINE_CLEAR = 4;
+
+    // so that the games of a JVM don't take each other's names
+    private static final AtomicInteger GAMES = new AtomicInteger();
+
+    private final ObjectName name;
+
+    private final LongAdder ticks;
+    private final LongAdder updateTime;
+    private final LongAdder frames;
+    private final LongAdder collisionChecks;
+    private final LongAdder wallKickAttempts;
+    private final LongAdder wallKickSuccesses;
+    // indexed by how many rows were cleared, minus one
+    private final LongAdder[] lineClears;
+    private final LongAdder lockDelayExpirations;
+    private final LatencyHistogram updateLatency;
+    private final LatencyHistogram paintLatency;
+
+    // the window the attributes are worked out over. only touched while holding the lock
+    private long windowStart;
+    private long windowTicks, windowFrames, windowCollisionChecks;
+    private final long[] updateCounts, paintCounts, scratch;
+
+    // the attributes, as of the end of the last window
+    private double ticksPerSecond, framesPerSecond, collisionChecksPerTick;
+    private long updateP50, updateP99, updateMax;
+    private long paintP50, paintP99, paintMax;
+
+    /**
+     * Creates new EngineMetrics, with everything at zero.
+     * They aren't registered until {@link #register()} is called.
+     */
+    public EngineMetrics() {
+        try {
+            this.name = new ObjectName(DOMAIN + ":type=EngineMetrics,name=game-" + GAMES.incrementAndGet());
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+        this.ticks = new LongAdder();
+        this.updateTime = new LongAdder();
+        this.frames = new LongAdder();
+        this.collisionChecks = new LongAdder();
+        this.wallKickAttempts = new LongAdder();
+        this.wallKickSuccesses = new LongAdder();
+        this.lineClears = new LongAdder[MAX_LINE_CLEAR];
+        for (int i = 0; i < MAX_LINE_CLEAR; i++) {
+            lineClears[i] = new LongAdder();
+        }
+        this.lockDelayExpirations = new LongAdder();
+        this.updateLatency = new LatencyHistogram();
+        this.paintLatency = new LatencyHistogram();
+
+        this.windowStart = System.nanoTime();
+        this.updateCounts = new long[LatencyHistogram.BUCKETS];
+        this.paintCounts = new long[LatencyHistogram.BUCKETS];
+        this.scratch = new long[LatencyHistogram.BUCKETS];
+    }
+
+    /**
+     * Returns the name these metrics are registered under.
+     * @return the name.
+     */
+    public ObjectName getName() {
+        return this.name;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server,
+     * unless they're registered already. If they can't be, the
+     * game runs all the same, it just can't be watched.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            // nothing to do about it
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean
+     * server, if they're registered. The counting goes on.
+     */
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (InstanceNotFoundException | MBeanRegistrationException e) {
+            // gone already
+        }
+    }
+
+    /**
+     * Counts an update of the game logic. Only the
+     * thread running the game may call this.
+     * @param nanos how long the update took.
+     * @param collisionChecks how many collision checks there were since the last tick.
+     */
+    public void recordTick(long nanos, long collisionChecks) {
+        ticks.increment();
+        updateTime.add(nanos);
+        if (collisionChecks != 0) {
+            this.collisionChecks.add(collisionChecks);
+        }
+        updateLatency.record(nanos);
+    }
+
+    /**
+     * Counts a frame painted. Only the thread painting the game may call this.
+     * @param nanos how long painting it took.
+     */
+    public void recordPaint(long nanos) {
+        frames.increment();
+        paintLatency.record(nanos);
+    }
+
+    /**
+     * Counts a rotation that had to try wall kicks.
+     * @param succeeded whether any of them fit the piece.
+     */
+    public void recordWallKick(boolean succeeded) {
+        wallKickAttempts.increment();
+        if (succeeded) {
+            wallKickSuccesses.increment();
+        }
+    }
+
+    /**
+     * Counts a line clear.
+     * @param rows how many rows were cleared at once.
+     */
+    public void recordLineClear(int rows) {
+        if (rows > 0) {
+            lineClears[Math.min(rows, MAX_LINE_CLEAR) - 1].increment();
+        }
+    }
+
+    /**
+     * Counts a piece locked by the lock delay running out.
+     */
+    public void recordLockDelayExpiration() {
+        lockDelayExpirations.increment();
+    }
+
+    /**
+     * Ends the window if it's been going on long enough.
+     * Only ever called while holding the lock.
+     */
+    private void sampleIfDue() {
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW) {
+            sample(now);
+        }
+    }
+
+    /**
+     * Ends the window at {@code now}, working out every rate and
+     * latency over it, and starts the next one.
+     * @param now the time, as given by {@link System#nanoTime()}.
+     */
+    synchronized void sample(long now) {
+        double seconds = Math.max(now - windowStart, 1) / 1e9;
+        long currentTicks = ticks.sum();
+        long currentFrames = frames.sum();
+        long currentChecks = collisionChecks.sum();
+        long tickDelta = currentTicks - windowTicks;
+
+        this.ticksPerSecond = tickDelta / seconds;
+        this.framesPerSecond = (currentFrames - windowFrames) / seconds;
+        this.collisionChecksPerTick = tickDelta == 0 ? 0 : (double) (currentChecks - windowCollisionChecks) / tickDelta;
+
+        // the percentiles are as high as their buckets go, which may be past the max
+        takeWindow(updateLatency, updateCounts);
+        this.updateMax = updateLatency.takeMax();
+        this.updateP50 = Math.min(LatencyHistogram.percentile(scratch, 0.5), updateMax);
+        this.updateP99 = Math.min(LatencyHistogram.percentile(scratch, 0.99), updateMax);
+        takeWindow(paintLatency, paintCounts);
+        this.paintMax = paintLatency.takeMax();
+        this.paintP50 = Math.min(LatencyHistogram.percentile(scratch, 0.5), paintMax);
+        this.paintP99 = Math.min(LatencyHistogram.percentile(scratch, 0.99), paintMax);
+
+        this.windowStart = now;
+        this.windowTicks = currentTicks;
+        this.windowFrames = currentFrames;
+        this.windowCollisionChecks = currentChecks;
+    }
+
+    /**
+     * Puts what {@code histogram} counted since it counted {@code previous}
+     * into the scratch array, and makes {@code previous} what it counts now.
+     */
+    private void takeWindow(LatencyHistogram histogram, long[] previous) {
+        histogram.copyCounts(scratch);
+        for (int i = 0; i < scratch.length; i++) {
+            long current = scratch[i];
+            scratch[i] = current - previous[i];
+            previous[i] = current;
+        }
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    @Override
+    public long getUpdateTimeNanos() {
+        return updateTime.sum();
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    @Override
+    public synchronized double getTicksPerSecond() {
+        sampleIfDue();
+        return this.ticksPerSecond;
+    }
+
+    @Override
+    public synchronized double getFramesPerSecond() {
+        sampleIfDue();
+        return this.framesPerSecond;
+    }
+
+    @Override
+    public long getCollisionChecks() {
+        return collisionChecks.sum();
+    }
+
+    @Override
+    public synchronized double getCollisionChecksPerTick() {
+        sampleIfDue();
+        return this.collisionChecksPerTick;
+    }
+
+    @Override
+    public long getWallKickAttempts() {
+        return wallKickAttempts.sum();
+    }
+
+    @Override
+    public long getWallKickSuccesses() {
+        return wallKickSuccesses.sum();
+    }
+
+    @Override
+    public long getSingles() {
+        return lineClears[0].sum();
+    }
+
+    @Override
+    public long getDoubles() {
+        return lineClears[1].sum();
+    }
+
+    @Override
+    public long getTriples() {
+        return lineClears[2].sum();
+    }
+
+    @Override
+    public long getTetrises() {
+        return lineClears[3].sum();
+    }
+
+    @Override
+    public long getLockDelayExpirations() {
+        return lockDelayExpirations.sum();
+    }
+
+    @Override
+    public synchronized long getUpdateLatencyP50Nanos() {
+        sampleIfDue();
+        return this.updateP50;
+    }
+
+    @Override
+    public synchronized long getUpdateLatencyP99Nanos() {
+        sampleIfDue();
+        return this.updateP99;
+    }
+
+    @Override
+    public synchronized long getUpdateLatencyMaxNanos() {
+        sampleIfDue();
+        return this.updateMax;
+    }
+
+    @Override
+    public synchronized long getPaintLatencyP50Nanos() {
+        sampleIfDue();
+        return this.paintP50;
+    }
+
+    @Override
+    public synchronized long getPaintLatencyP99Nanos() {
+        sampleIfDue();
+        return this.paintP99;
+    }
+
+    @Override
+    public synchronized long getPaintLatencyMaxNanos() {
+        sampleIfDue();
+        return this.paintMax;
+    }
+}
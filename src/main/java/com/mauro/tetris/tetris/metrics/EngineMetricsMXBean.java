@@ -0,0 +1,136 @@
+package com.mauro.tetris.tetris.metrics;
+
+/**
+ * The management interface of {@link EngineMetrics}, which is what
+ * JMX clients such as jconsole see of a running game.
+ * <p>
+ * Counters are totals since the game was created. Rates, averages
+ * and latencies are over the last window of about a second that
+ * ended when the attributes were read.
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * Returns how many times the game logic was updated.
+     * @return the amount of ticks.
+     */
+    long getTicks();
+
+    /**
+     * Returns how long all the updates of the game logic took, together.
+     * @return the time, in nanoseconds.
+     */
+    long getUpdateTimeNanos();
+
+    /**
+     * Returns how many frames were painted.
+     * @return the amount of frames.
+     */
+    long getFrames();
+
+    /**
+     * Returns how many times a second the game logic was updated.
+     * @return the ticks per second.
+     */
+    double getTicksPerSecond();
+
+    /**
+     * Returns how many frames were painted a second.
+     * @return the frames per second.
+     */
+    double getFramesPerSecond();
+
+    /**
+     * Returns how many times it was checked whether a piece fits
+     * somewhere, the bot's move search included.
+     * @return the amount of collision checks.
+     */
+    long getCollisionChecks();
+
+    /**
+     * Returns how many collision checks there were for every tick.
+     * @return the collision checks per tick.
+     */
+    double getCollisionChecksPerTick();
+
+    /**
+     * Returns how many rotations didn't fit where the piece was,
+     * and had to try wall kicks.
+     * @return the amount of wall kick attempts.
+     */
+    long getWallKickAttempts();
+
+    /**
+     * Returns how many of the wall kick attempts found a
+     * place the rotated piece fit in.
+     * @return the amount of successful wall kicks.
+     */
+    long getWallKickSuccesses();
+
+    /**
+     * Returns how many times a single row was cleared.
+     * @return the amount of singles.
+     */
+    long getSingles();
+
+    /**
+     * Returns how many times two rows were cleared at once.
+     * @return the amount of doubles.
+     */
+    long getDoubles();
+
+    /**
+     * Returns how many times three rows were cleared at once.
+     * @return the amount of triples.
+     */
+    long getTriples();
+
+    /**
+     * Returns how many times four rows (or more) were cleared at once.
+     * @return the amount of tetrises.
+     */
+    long getTetrises();
+
+    /**
+     * Returns how many pieces were locked by the lock delay
+     * running out, rather than by a hard drop.
+     * @return the amount of lock delay expirations.
+     */
+    long getLockDelayExpirations();
+
+    /**
+     * Returns the median time an update of the game logic took.
+     * @return the latency, in nanoseconds.
+     */
+    long getUpdateLatencyP50Nanos();
+
+    /**
+     * Returns the 99th percentile of the time an update of the game logic took.
+     * @return the latency, in nanoseconds.
+     */
+    long getUpdateLatencyP99Nanos();
+
+    /**
+     * Returns the longest time an update of the game logic took.
+     * @return the latency, in nanoseconds.
+     */
+    long getUpdateLatencyMaxNanos();
+
+    /**
+     * Returns the median time painting a frame took.
+     * @return the latency, in nanoseconds.
+     */
+    long getPaintLatencyP50Nanos();
+
+    /**
+     * Returns the 99th percentile of the time painting a frame took.
+     * @return the latency, in nanoseconds.
+     */
+    long getPaintLatencyP99Nanos();
+
+    /**
+     * Returns the longest time painting a frame took.
+     * @return the latency, in nanoseconds.
+     */
+    long getPaintLatencyMaxNanos();
+}
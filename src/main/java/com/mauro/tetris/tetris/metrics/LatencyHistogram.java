@@ -0,0 +1,123 @@
+package com.mauro.tetris.tetris.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram class counts durations (in nanoseconds) in
+ * logarithmic buckets: every power of two is split into 8 buckets of the
+ * same width, so whatever is read back from it is at most 12.5% off,
+ * from nanoseconds to centuries, in a few kilobytes that never grow.
+ * <p>
+ * A histogram has a single writer, which only ever does plain ordered
+ * stores, never waiting on anything and never allocating. Any thread
+ * may read it while it's written, seeing each bucket as it was at some
+ * point in time.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * How many buckets there are, enough for any non-negative long.
+     */
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    // the longest duration recorded since it was last taken
+    private final AtomicLong max;
+
+    LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Counts a duration. Only the writer may call this.
+     * @param nanos the duration, where negative ones count as {@code 0}.
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = bucketOf(nanos);
+        // there's no one else writing, so this needs no atomic increment
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Copies the count of every bucket into {@code into}.
+     * @param into an array of {@link #BUCKETS} longs.
+     */
+    void copyCounts(long[] into) {
+        for (int i = 0; i < BUCKETS; i++) {
+            into[i] = counts.get(i);
+        }
+    }
+
+    /**
+     * Returns the longest duration recorded since the last call,
+     * and starts over.
+     * @return the duration, or {@code 0} if none was recorded.
+     */
+    long takeMax() {
+        return max.getAndSet(0);
+    }
+
+    /**
+     * Returns the bucket {@code value} is counted in.
+     * @param value a non-negative value.
+     * @return from {@code 0} to {@code BUCKETS - 1}.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value counted in {@code bucket}.
+     * @param bucket from {@code 0} to {@code BUCKETS - 1}.
+     * @return the value.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+
+    /**
+     * Returns the value below (or at) which a fraction {@code p} of
+     * {@code counts} is, rounded up to the highest value of its bucket.
+     * @param counts the count of every bucket.
+     * @param p from {@code 0} to {@code 1}.
+     * @return the value, or {@code 0} if there's nothing counted.
+     */
+    static long percentile(long[] counts, double p) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(counts.length - 1);
+    }
+}
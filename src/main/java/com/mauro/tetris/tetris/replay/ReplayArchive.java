@@ -0,0 +1,250 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The ReplayArchive class reads replay archives written by a
+ * {@link ReplayArchiveWriter}, and can bring a TetrisGame to any
+ * of their frames.
+ * <p>
+ * The file is mapped into memory, so only the parts of it that are
+ * actually looked at are ever read. Seeking to a frame loads the
+ * closest keyframe at or before it and replays the events from
+ * there, which is at most one keyframe interval worth of frames.
+ * <p>
+ * A ReplayArchive never changes once it's open, so it can be used from
+ * any number of threads at once (each one seeking its own game).
+ */
+public final class ReplayArchive {
+    private static final Actions[] ACTIONS = Actions.values();
+
+    private final Path file;
+    private final ByteBuffer map;
+
+    private final long seed;
+    private final int width, height;
+    private final long interval, frameInterval;
+    private final int keyframeInterval;
+
+    private final long[] chunkFrames;
+    private final int[] chunkOffsets;
+
+    private final long lastFrame, piecesPlaced, linesCleared, hash;
+
+    private ReplayArchive(Path file, MappedByteBuffer map) {
+        this.file = file;
+        this.map = map;
+        try {
+            if (map.capacity() < ReplayFormat.ARCHIVE_HEADER_SIZE + ReplayFormat.ARCHIVE_TRAILER_SIZE
+                    || map.getInt(0) != ReplayFormat.ARCHIVE_MAGIC
+                    || map.getInt(map.capacity() - Integer.BYTES) != ReplayFormat.ARCHIVE_MAGIC) {
+                throw new IllegalArgumentException("not a replay archive");
+            }
+            ByteBuffer header = map.duplicate().position(Integer.BYTES);
+            byte version = header.get();
+            if (version != ReplayFormat.ARCHIVE_VERSION) {
+                throw new IllegalArgumentException("unsupported replay archive version " + version);
+            }
+            this.seed = header.getLong();
+            this.width = header.get() & 0xFF;
+            this.height = header.get() & 0xFF;
+            this.interval = header.getLong();
+            this.frameInterval = header.getLong();
+            this.keyframeInterval = header.getInt();
+
+            ByteBuffer trailer = map.duplicate().position(map.capacity() - ReplayFormat.ARCHIVE_TRAILER_SIZE);
+            int chunks = trailer.getInt();
+            long indexOffset = trailer.getLong();
+            this.lastFrame = trailer.getLong();
+            this.piecesPlaced = trailer.getLong();
+            this.linesCleared = trailer.getLong();
+            this.hash = trailer.getLong();
+            if (chunks < 1 || indexOffset < 0 || indexOffset + 2L * Long.BYTES * chunks > map.capacity()) {
+                throw new IllegalArgumentException("corrupted replay archive index");
+            }
+
+            this.chunkFrames = new long[chunks];
+            this.chunkOffsets = new int[chunks];
+            ByteBuffer index = map.duplicate().position((int) indexOffset);
+            for (int i = 0; i < chunks; i++) {
+                chunkFrames[i] = index.getLong();
+                chunkOffsets[i] = (int) index.getLong();
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated replay archive", e);
+        }
+    }
+
+    /**
+     * Opens the replay archive {@code file}.
+     * @param file
+     * @return the archive.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if it's not a replay archive.
+     */
+    public static ReplayArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("replay archive too big: " + channel.size());
+            }
+            // the mapping outlives the channel
+            return new ReplayArchive(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the seed of the archived game.
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns how many frames go by between keyframes.
+     * @return the keyframe interval.
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Returns how many keyframes the archive has.
+     * @return the amount of keyframes.
+     */
+    public int getKeyframeCount() {
+        return chunkFrames.length;
+    }
+
+    /**
+     * Returns the first frame in the archive.
+     * @return the first frame.
+     */
+    public long getFirstFrame() {
+        return chunkFrames[0];
+    }
+
+    /**
+     * Returns the frame the archived game was at when the recording stopped.
+     * @return the last frame.
+     */
+    public long getLastFrame() {
+        return lastFrame;
+    }
+
+    /**
+     * Creates a new TetrisGame with the seed, board and
+     * intervals of the archived game, at its first frame.
+     * @return the game.
+     */
+    public TetrisGame newGame() {
+        return seek(getFirstFrame());
+    }
+
+    /**
+     * Creates a new TetrisGame as the archived game was at the start of
+     * {@code frame}, before any of the actions of that frame were taken.
+     * @param frame from {@link #getFirstFrame()} to {@link #getLastFrame()}.
+     * @return the game.
+     */
+    public TetrisGame seek(long frame) {
+        TetrisGame game = bareGame();
+        seek(game, frame);
+        return game;
+    }
+
+    /**
+     * Creates a TetrisGame with the seed, board and intervals of the
+     * archived game, still to be seeked to some frame.
+     */
+    private TetrisGame bareGame() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(width, height, false), interval, seed);
+        game.setFrameInterval(frameInterval);
+        return game;
+    }
+
+    /**
+     * Turns {@code game} into the archived game as it was at the start of
+     * {@code frame}, before any of the actions of that frame were taken.
+     * The game must have a board as big as the archived one, and if it has
+     * a listener, the listener hears about everything that is replayed.
+     * @param game
+     * @param frame from {@link #getFirstFrame()} to {@link #getLastFrame()}.
+     * @throws IllegalArgumentException if the chunk holding {@code frame} is cut short.
+     */
+    public void seek(TetrisGame game, long frame) {
+        if (frame < getFirstFrame() || frame > lastFrame) {
+            throw new IllegalArgumentException("frame " + frame + " is not in the archive ["
+                    + getFirstFrame() + ", " + lastFrame + "]");
+        }
+        int chunk = chunkAt(frame);
+        try {
+            ByteBuffer events = map.duplicate().position(chunkOffsets[chunk]);
+            int keyframeSize = events.getInt();
+            game.readState(events.slice(events.position(), keyframeSize));
+            // the events already hold every move the held keys made
+            game.releaseHeldKeys();
+            events.position(events.position() + keyframeSize);
+
+            long eventFrame = game.getFrame();
+            while (true) {
+                eventFrame += ReplayFormat.getVarint(events);
+                int code = events.get() & 0xFF;
+                if (eventFrame >= frame || code == ReplayFormat.END) {
+                    break;
+                }
+                while (game.getFrame() < eventFrame) {
+                    game.step(0);
+                }
+                if (code < ACTIONS.length) {
+                    game.moveCurrentTetromino(ACTIONS[code]);
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated replay archive", e);
+        }
+        while (game.getFrame() < frame) {
+            game.step(0);
+        }
+    }
+
+    /**
+     * Finds the last chunk starting at or before {@code frame}.
+     */
+    private int chunkAt(long frame) {
+        int lo = 0, hi = chunkFrames.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunkFrames[mid] <= frame) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Replays the archive up to its last frame (from its last keyframe)
+     * and checks that it ends like it was recorded to end.
+     * @return how the replay went.
+     */
+    public ReplayResult verify() {
+        long start = System.nanoTime();
+        TetrisGame game = seek(lastFrame);
+        long elapsed = System.nanoTime() - start;
+        return new ReplayResult(file, seed, lastFrame, piecesPlaced, linesCleared, hash,
+            game.getFrame(), game.getPiecesPlaced(), game.getLinesCleared(),
+            game.getTetrisBoard().getHash(), elapsed);
+    }
+}
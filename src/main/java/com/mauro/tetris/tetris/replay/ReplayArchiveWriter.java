@@ -0,0 +1,217 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.GameListener;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The ReplayArchiveWriter class records a TetrisGame into a replay archive
+ * (see {@link ReplayFormat} for its layout) as the game is played. Besides
+ * the events a {@link ReplayRecorder} records, every {@code keyframeInterval}
+ * frames it takes a keyframe, a snapshot of the whole game, so that any frame
+ * of the archive can be reached without replaying it from the start.
+ * <p>
+ * Unlike plain replays, archives can be started at any point of a game,
+ * since they start with a keyframe. Writing works like it does for the
+ * {@link ReplayRecorder}: everything goes into a direct buffer that is
+ * only written to the file when it's (about half) full. If the file can't
+ * be written while the game is played, recording just stops and
+ * {@link #close()} throws the error instead.
+ */
+public class ReplayArchiveWriter implements GameListener, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // a keyframe is only started if there's this much room left for it
+    private static final int KEYFRAME_ROOM = BUFFER_SIZE / 2;
+
+    private final TetrisGame game;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int keyframeInterval;
+    private final long firstFrame;
+
+    // bytes already written to the file
+    private long written;
+    private long lastFrame;
+
+    private long[] chunkFrames;
+    private long[] chunkOffsets;
+    private int chunks;
+
+    private boolean closed;
+    // what went wrong writing the archive, if anything. nothing is recorded after it
+    private IOException failure;
+
+    /**
+     * Creates a new ReplayArchiveWriter that records {@code game} into the file
+     * {@code path} (replacing it, if it exists) from its current frame onwards,
+     * and starts listening to the game.
+     * @param game
+     * @param path
+     * @param keyframeInterval how many frames go by between keyframes.
+     * @throws IOException if the file can't be written.
+     */
+    public ReplayArchiveWriter(TetrisGame game, Path path, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("keyframe interval must be positive: " + keyframeInterval);
+        }
+        this.game = game;
+        this.keyframeInterval = keyframeInterval;
+        this.firstFrame = game.getFrame();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.written = 0;
+        this.chunkFrames = new long[16];
+        this.chunkOffsets = new long[16];
+        this.chunks = 0;
+        this.closed = false;
+
+        buffer.putInt(ReplayFormat.ARCHIVE_MAGIC);
+        buffer.put(ReplayFormat.ARCHIVE_VERSION);
+        buffer.putLong(game.getSeed());
+        buffer.put((byte) game.getTetrisBoard().getWidth());
+        buffer.put((byte) game.getTetrisBoard().getHeight());
+        buffer.putLong(game.getInterval());
+        buffer.putLong(game.getFrameInterval());
+        buffer.putInt(keyframeInterval);
+
+        startChunk();
+        game.setListener(this);
+    }
+
+    @Override
+    public void onAction(TetrisGame game, Actions action, boolean successful) {
+        event(action.ordinal());
+    }
+
+    @Override
+    public void onGravity(TetrisGame game, boolean successful) {
+        event(ReplayFormat.GRAVITY);
+    }
+
+    @Override
+    public void onLock(TetrisGame game) {
+        event(ReplayFormat.LOCK);
+    }
+
+    @Override
+    public void onFrame(TetrisGame game) {
+        if (closed || failure != null || (game.getFrame() - firstFrame) % keyframeInterval != 0) {
+            return;
+        }
+        try {
+            endChunk();
+            startChunk();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void event(int code) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            ensureRoom(ReplayFormat.MAX_EVENT_SIZE);
+        } catch (IOException e) {
+            failure = e;
+            return;
+        }
+        long frame = game.getFrame();
+        ReplayFormat.putVarint(buffer, frame - lastFrame);
+        buffer.put((byte) code);
+        lastFrame = frame;
+    }
+
+    /**
+     * Starts a new chunk with a keyframe of the game as it is now.
+     */
+    private void startChunk() throws IOException {
+        ensureRoom(KEYFRAME_ROOM);
+        if (chunks == chunkFrames.length) {
+            chunkFrames = Arrays.copyOf(chunkFrames, chunks * 2);
+            chunkOffsets = Arrays.copyOf(chunkOffsets, chunks * 2);
+        }
+        chunkFrames[chunks] = game.getFrame();
+        chunkOffsets[chunks] = written + buffer.position();
+        chunks++;
+
+        int sizeAt = buffer.position();
+        buffer.putInt(0);
+        game.writeState(buffer);
+        buffer.putInt(sizeAt, buffer.position() - sizeAt - Integer.BYTES);
+        lastFrame = game.getFrame();
+    }
+
+    private void endChunk() throws IOException {
+        ensureRoom(ReplayFormat.MAX_EVENT_SIZE);
+        ReplayFormat.putVarint(buffer, game.getFrame() - lastFrame);
+        buffer.put((byte) ReplayFormat.END);
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes whatever has been recorded so far to the file.
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Stops recording, writes the index and the trailer (the final
+     * state of the game) and closes the file.
+     * @throws IOException if the file couldn't be written, now or
+     * while the game was played.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (game.getListener() == this) {
+            game.setListener(null);
+        }
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            endChunk();
+            long indexOffset = written + buffer.position();
+            for (int i = 0; i < chunks; i++) {
+                ensureRoom(2 * Long.BYTES);
+                buffer.putLong(chunkFrames[i]);
+                buffer.putLong(chunkOffsets[i]);
+            }
+            ensureRoom(ReplayFormat.ARCHIVE_TRAILER_SIZE);
+            buffer.putInt(chunks);
+            buffer.putLong(indexOffset);
+            buffer.putLong(game.getFrame());
+            buffer.putLong(game.getPiecesPlaced());
+            buffer.putLong(game.getLinesCleared());
+            buffer.putLong(game.getTetrisBoard().getHash());
+            buffer.putInt(ReplayFormat.ARCHIVE_MAGIC);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
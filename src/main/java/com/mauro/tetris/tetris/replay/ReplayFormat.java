@@ -0,0 +1,87 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of replay files. All numbers are big-endian.
+ * <pre>
+ * header: magic (int), version (byte), seed (long),
+ *         board width (byte), board height (byte),
+ *         update interval (long), frame interval (long)
+ * events: frame delta (varint), code (byte)
+ * footer: frame delta (varint), END (byte),
+ *         final frame (long), pieces placed (long),
+ *         lines cleared (long), board hash (long)
+ * </pre>
+ * The frame delta of an event is how many frames went by since the
+ * previous one (or since the game started), and its code is either the
+ * ordinal of the {@link com.mauro.tetris.enums.Actions} taken, {@link #GRAVITY}
+ * or {@link #LOCK}. Actions are taken before the frame they're at is run.
+ * A lock caused by a hard drop comes right before the hard drop itself.
+ * <p>
+ * Replay archives (see {@link ReplayArchive}) hold the same events, split
+ * into chunks that start with a keyframe, followed by an index of the chunks:
+ * <pre>
+ * header:  magic (int), version (byte), seed (long),
+ *          board width (byte), board height (byte),
+ *          update interval (long), frame interval (long),
+ *          keyframe interval (int)
+ * chunks:  keyframe size (int), keyframe (as in TetrisGame.writeState),
+ *          events, chunk end: frame delta (varint), END (byte)
+ * index:   first frame (long), offset (long) of each chunk
+ * trailer: chunk count (int), index offset (long),
+ *          final frame (long), pieces placed (long),
+ *          lines cleared (long), board hash (long), magic (int)
+ * </pre>
+ * The frame deltas of a chunk start from its first frame, which is
+ * the frame its keyframe was taken at.
+ */
+final class ReplayFormat {
+    static final int MAGIC = 0x54545250; // "TTRP"
+    static final byte VERSION = 1;
+    // archives went up to 2 when keyframes started keeping the held keys
+    static final byte ARCHIVE_VERSION = 2;
+    static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES + 2 + 2 * Long.BYTES;
+    static final int FOOTER_SIZE = 4 * Long.BYTES;
+
+    static final int ARCHIVE_MAGIC = 0x54545241; // "TTRA"
+    static final int ARCHIVE_HEADER_SIZE = HEADER_SIZE + Integer.BYTES;
+    static final int ARCHIVE_TRAILER_SIZE = Integer.BYTES + Long.BYTES + FOOTER_SIZE + Integer.BYTES;
+
+    static final int GRAVITY = 6;
+    static final int LOCK = 7;
+    static final int END = 0xFF;
+
+    // a varint of a long takes up to 10 bytes
+    static final int MAX_EVENT_SIZE = 10 + 1;
+
+    private ReplayFormat() {
+    }
+
+    /**
+     * Writes {@code value} (which must not be negative)
+     * 7 bits at a time, least significant bits first.
+     */
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a value written by {@link #putVarint(ByteBuffer, long)}.
+     */
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+}
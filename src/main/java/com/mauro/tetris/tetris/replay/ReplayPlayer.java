@@ -0,0 +1,162 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The ReplayPlayer class replays recorded games (see {@link ReplayRecorder})
+ * as fast as it can, without showing anything, and checks whether they
+ * still end the way they were recorded to end.
+ * <p>
+ * The recorded actions are fed to a brand new TetrisGame with the recorded
+ * seed and everything else is simulated again, so a replay that doesn't end
+ * like it should means the rules of the game changed since it was recorded.
+ */
+public final class ReplayPlayer {
+    private static final Actions[] ACTIONS = Actions.values();
+
+    private ReplayPlayer() {
+    }
+
+    /**
+     * Replays the replay file {@code file}.
+     * @param file
+     * @return how the replay went.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if it's not a replay file.
+     */
+    public static ReplayResult play(Path file) throws IOException {
+        return play(file, ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Replays the replay in {@code replay}, from its position onwards.
+     * @param file where the replay came from, or {@code null}.
+     * @param replay
+     * @return how the replay went.
+     * @throws IllegalArgumentException if it's not a replay.
+     */
+    public static ReplayResult play(Path file, ByteBuffer replay) {
+        try {
+            if (replay.remaining() < ReplayFormat.HEADER_SIZE || replay.getInt() != ReplayFormat.MAGIC) {
+                throw new IllegalArgumentException("not a replay");
+            }
+            byte version = replay.get();
+            if (version != ReplayFormat.VERSION) {
+                throw new IllegalArgumentException("unsupported replay version " + version);
+            }
+            long seed = replay.getLong();
+            int width = replay.get() & 0xFF;
+            int height = replay.get() & 0xFF;
+            long interval = replay.getLong();
+            long frameInterval = replay.getLong();
+
+            long start = System.nanoTime();
+            TetrisGame game = new TetrisGame(new TetrisBoard(width, height, false), interval, seed);
+            game.setFrameInterval(frameInterval);
+
+            while (true) {
+                long frame = game.getFrame() + ReplayFormat.getVarint(replay);
+                int code = replay.get() & 0xFF;
+                while (game.getFrame() < frame) {
+                    game.step(0);
+                }
+                if (code == ReplayFormat.END) {
+                    break;
+                }
+                if (code < ACTIONS.length) {
+                    game.moveCurrentTetromino(ACTIONS[code]);
+                } else if (code != ReplayFormat.GRAVITY && code != ReplayFormat.LOCK) {
+                    throw new IllegalArgumentException("unknown event " + code);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            return new ReplayResult(file, seed,
+                replay.getLong(), replay.getLong(), replay.getLong(), replay.getLong(),
+                game.getFrame(), game.getPiecesPlaced(), game.getLinesCleared(),
+                game.getTetrisBoard().getHash(), elapsed);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated replay", e);
+        }
+    }
+
+    /**
+     * Replays every file in {@code files} in parallel on {@code pool}.
+     * Files that can't be replayed don't stop the others, they just
+     * get a result with an error.
+     * @param files
+     * @param pool
+     * @return how each replay went, in the same order as {@code files}.
+     */
+    public static List<ReplayResult> verifyAll(List<Path> files, ForkJoinPool pool) {
+        return pool.submit(() -> files.parallelStream().map(ReplayPlayer::verify).toList()).join();
+    }
+
+    /**
+     * Replays every file in {@code files} in parallel on the common pool.
+     * @param files
+     * @return how each replay went, in the same order as {@code files}.
+     */
+    public static List<ReplayResult> verifyAll(List<Path> files) {
+        return verifyAll(files, ForkJoinPool.commonPool());
+    }
+
+    private static ReplayResult verify(Path file) {
+        try {
+            return play(file);
+        } catch (IOException | IllegalArgumentException e) {
+            return new ReplayResult(file, e.getMessage());
+        }
+    }
+
+    /**
+     * Verifies the replay files given (or the ones inside the directories
+     * given) and prints how each one went. Exits with status {@code 1} if
+     * any of them didn't end like it was recorded to end.
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(Files::isRegularFile).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<ReplayResult> results = verifyAll(files);
+        long elapsed = System.nanoTime() - start;
+
+        long frames = 0;
+        int failed = 0;
+        for (ReplayResult result : results) {
+            frames += result.getFrames();
+            if (!result.isValid()) {
+                failed++;
+            }
+            System.out.println(result);
+        }
+        System.out.printf("%d replays, %d failed, %d frames in %.3f s (%.0f frames/s)%n",
+            results.size(), failed, frames, elapsed / 1e9, elapsed == 0 ? 0 : frames * 1e9 / elapsed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.GameListener;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The ReplayRecorder class records a TetrisGame into a replay file
+ * (see {@link ReplayFormat} for its layout) as the game is played.
+ * <p>
+ * The game itself is entirely determined by its seed and by the actions
+ * taken on each frame, so that's all there is to record, plus the gravity
+ * and lock events, which say how the game went without having to replay
+ * it. Every event takes two bytes most of the time.
+ * <p>
+ * Events are put in a direct buffer that is only written to the file when
+ * it's full, so recording an event costs about as much as a couple of
+ * array stores and allocates nothing. The game should run on a fixed
+ * timestep (see {@link TetrisGame#step(int)}) for its replay to be exact.
+ * <p>
+ * Events are recorded on whichever thread plays the game, so the game
+ * must be stopped before the recorder is closed. If the file can't be
+ * written while the game is played, recording just stops, since the
+ * game shouldn't be the one to deal with it, and {@link #close()}
+ * throws the error instead.
+ */
+public class ReplayRecorder implements GameListener, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final TetrisGame game;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long lastFrame;
+    private boolean closed;
+    // what went wrong writing events, if anything. nothing is recorded after it
+    private IOException failure;
+
+    /**
+     * Creates a new ReplayRecorder that records {@code game} into the file
+     * {@code path} (replacing it, if it exists) and starts listening to the game.
+     * @param game a game that hasn't started yet.
+     * @param path
+     * @throws IOException if the file can't be written.
+     */
+    public ReplayRecorder(TetrisGame game, Path path) throws IOException {
+        if (game.getFrame() != 0 || game.getPiecesPlaced() != 0) {
+            throw new IllegalStateException("only games that haven't started yet can be recorded");
+        }
+        this.game = game;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.lastFrame = 0;
+        this.closed = false;
+
+        buffer.putInt(ReplayFormat.MAGIC);
+        buffer.put(ReplayFormat.VERSION);
+        buffer.putLong(game.getSeed());
+        buffer.put((byte) game.getTetrisBoard().getWidth());
+        buffer.put((byte) game.getTetrisBoard().getHeight());
+        buffer.putLong(game.getInterval());
+        buffer.putLong(game.getFrameInterval());
+
+        game.setListener(this);
+    }
+
+    @Override
+    public void onAction(TetrisGame game, Actions action, boolean successful) {
+        event(action.ordinal());
+    }
+
+    @Override
+    public void onGravity(TetrisGame game, boolean successful) {
+        event(ReplayFormat.GRAVITY);
+    }
+
+    @Override
+    public void onLock(TetrisGame game) {
+        event(ReplayFormat.LOCK);
+    }
+
+    private void event(int code) {
+        if (closed || failure != null) {
+            return;
+        }
+        if (buffer.remaining() < ReplayFormat.MAX_EVENT_SIZE) {
+            try {
+                flush();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+        }
+        long frame = game.getFrame();
+        ReplayFormat.putVarint(buffer, frame - lastFrame);
+        buffer.put((byte) code);
+        lastFrame = frame;
+    }
+
+    /**
+     * Writes whatever has been recorded so far to the file.
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Stops recording, writes the footer (the final state of
+     * the game) and closes the file. The game must not be
+     * played meanwhile.
+     * @throws IOException if the file couldn't be written, now
+     * or while the game was played.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (game.getListener() == this) {
+            game.setListener(null);
+        }
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (buffer.remaining() < ReplayFormat.MAX_EVENT_SIZE + ReplayFormat.FOOTER_SIZE) {
+                flush();
+            }
+            ReplayFormat.putVarint(buffer, game.getFrame() - lastFrame);
+            buffer.put((byte) ReplayFormat.END);
+            buffer.putLong(game.getFrame());
+            buffer.putLong(game.getPiecesPlaced());
+            buffer.putLong(game.getLinesCleared());
+            buffer.putLong(game.getTetrisBoard().getHash());
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mauro.tetris.tetris.replay;
+
+import java.nio.file.Path;
+
+/**
+ * The ReplayResult class tells how replaying a replay file went:
+ * what the file said the game ended like, what it actually ended
+ * like when replayed, and how fast it was replayed.
+ */
+public final class ReplayResult {
+    private final Path file;
+    private final long seed;
+    private final long expectedFrame, expectedPieces, expectedLines, expectedHash;
+    private final long frame, pieces, lines, hash;
+    private final long elapsedNanos;
+    private final String error;
+
+    ReplayResult(Path file, long seed,
+            long expectedFrame, long expectedPieces, long expectedLines, long expectedHash,
+            long frame, long pieces, long lines, long hash, long elapsedNanos) {
+        this.file = file;
+        this.seed = seed;
+        this.expectedFrame = expectedFrame;
+        this.expectedPieces = expectedPieces;
+        this.expectedLines = expectedLines;
+        this.expectedHash = expectedHash;
+        this.frame = frame;
+        this.pieces = pieces;
+        this.lines = lines;
+        this.hash = hash;
+        this.elapsedNanos = elapsedNanos;
+        this.error = null;
+    }
+
+    /**
+     * Creates the result of a file that couldn't be replayed at all.
+     */
+    ReplayResult(Path file, String error) {
+        this.file = file;
+        this.seed = 0;
+        this.expectedFrame = this.expectedPieces = this.expectedLines = this.expectedHash = 0;
+        this.frame = this.pieces = this.lines = this.hash = 0;
+        this.elapsedNanos = 0;
+        this.error = error;
+    }
+
+    /**
+     * Returns the replay file.
+     * @return the file, or {@code null} if the replay didn't come from one.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the seed of the replayed game.
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Checks whether the replayed game ended exactly like the recorded one:
+     * same frame, same amount of pieces and lines and same board hash.
+     * @return {@code true} if it did.
+     */
+    public boolean isValid() {
+        return error == null && frame == expectedFrame && pieces == expectedPieces
+            && lines == expectedLines && hash == expectedHash;
+    }
+
+    /**
+     * Checks whether the final board hash of the replayed
+     * game is different from the recorded one.
+     * @return {@code true} if the hashes don't match.
+     */
+    public boolean isHashMismatch() {
+        return error == null && hash != expectedHash;
+    }
+
+    /**
+     * Returns why the file couldn't be replayed.
+     * @return the reason, or {@code null} if it was replayed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Returns how many frames were replayed.
+     * @return the amount of frames.
+     */
+    public long getFrames() {
+        return frame;
+    }
+
+    /**
+     * Returns the final board hash that was recorded.
+     * @return the hash.
+     */
+    public long getExpectedHash() {
+        return expectedHash;
+    }
+
+    /**
+     * Returns the final board hash of the replayed game.
+     * @return the hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns how many pieces were placed in the replayed game.
+     * @return the amount of pieces.
+     */
+    public long getPiecesPlaced() {
+        return pieces;
+    }
+
+    /**
+     * Returns how many lines were cleared in the replayed game.
+     * @return the amount of lines.
+     */
+    public long getLinesCleared() {
+        return lines;
+    }
+
+    /**
+     * Returns how long the replay took (in nanoseconds).
+     * @return the elapsed time.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns how many frames were replayed per second.
+     * @return the frames per second.
+     */
+    public double getFramesPerSecond() {
+        return elapsedNanos == 0 ? 0 : frame * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        String name = file == null ? "replay" : file.toString();
+        if (error != null) {
+            return name + ": ERROR " + error;
+        }
+        if (!isValid()) {
+            return String.format("%s: MISMATCH frame %d/%d, pieces %d/%d, lines %d/%d, hash %016x/%016x",
+                name, frame, expectedFrame, pieces, expectedPieces, lines, expectedLines, hash, expectedHash);
+        }
+        return String.format("%s: ok, %d frames, %d pieces, %d lines, %.0f frames/s",
+            name, frame, pieces, lines, getFramesPerSecond());
+    }
+}
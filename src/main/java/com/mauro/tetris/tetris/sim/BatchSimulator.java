@@ -0,0 +1,145 @@
+package com.mauro.tetris.tetris.sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+
+/**
+ * The BatchSimulator plays lots of independent games as fast as it can,
+ * spread across all cores, and adds up their results.
+ * <p>
+ * Game number {@code i} of a batch is seeded with {@code firstSeed + i},
+ * and so is its Controller, so a batch always gives the same results no
+ * matter how many threads played it. Every game has its own board and
+ * every worker adds its games to its own {@link SimulationStats}, which are
+ * merged as the workers finish. Nothing else is shared between them.
+ */
+public class BatchSimulator {
+    // below this many games, a task plays them instead of splitting them up
+    private static final int GAMES_PER_TASK = 8;
+
+    private final int boardWidth, boardHeight;
+    private final long updateInterval;
+    private final long maxFrames;
+    private final LongFunction<? extends Controller> controllers;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new BatchSimulator that plays on the common pool.
+     * @param boardWidth
+     * @param boardHeight
+     * @param updateIntervalInNanoSeconds the gravity of the games.
+     * @param maxFrames games that last this many frames are stopped.
+     * @param controllers creates the Controller of a game given its seed.
+     */
+    public BatchSimulator(int boardWidth, int boardHeight, long updateIntervalInNanoSeconds,
+            long maxFrames, LongFunction<? extends Controller> controllers) {
+        this(boardWidth, boardHeight, updateIntervalInNanoSeconds, maxFrames, controllers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new BatchSimulator that plays on {@code pool}.
+     * @param boardWidth
+     * @param boardHeight
+     * @param updateIntervalInNanoSeconds the gravity of the games.
+     * @param maxFrames games that last this many frames are stopped.
+     * @param controllers creates the Controller of a game given its seed.
+     * @param pool
+     */
+    public BatchSimulator(int boardWidth, int boardHeight, long updateIntervalInNanoSeconds,
+            long maxFrames, LongFunction<? extends Controller> controllers, ForkJoinPool pool) {
+        if (maxFrames < 1) {
+            throw new IllegalArgumentException("maxFrames must be positive: " + maxFrames);
+        }
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.updateInterval = updateIntervalInNanoSeconds;
+        this.maxFrames = maxFrames;
+        this.controllers = controllers;
+        this.pool = pool;
+    }
+
+    /**
+     * Plays {@code games} games, seeded from {@code firstSeed}
+     * onwards, and returns their results.
+     * @param firstSeed the seed of the first game.
+     * @param games how many games to play.
+     * @return the results of all games.
+     */
+    public SimulationStats run(long firstSeed, int games) {
+        if (games < 0) {
+            throw new IllegalArgumentException("games must not be negative: " + games);
+        }
+        long start = System.nanoTime();
+        SimulationStats stats = pool.invoke(new Batch(firstSeed, 0, games));
+        stats.setElapsedNanos(System.nanoTime() - start);
+        return stats;
+    }
+
+    /**
+     * Plays a single game until it's over or runs out of frames.
+     * @param seed
+     * @return the game, as it was when it finished.
+     */
+    public TetrisGame play(long seed) {
+        TetrisGame game = new TetrisGame(new TetrisBoard(boardWidth, boardHeight, false), updateInterval, seed);
+        Controller controller = controllers.apply(seed);
+        while (!game.isOver() && game.getFrame() < maxFrames) {
+            game.step(controller.nextInputs(game));
+        }
+        return game;
+    }
+
+    /**
+     * Plays the games from {@code from} (inclusive)
+     * to {@code to} (exclusive) of a batch.
+     */
+    private class Batch extends RecursiveTask<SimulationStats> {
+        private final long firstSeed;
+        private final int from, to;
+
+        Batch(long firstSeed, int from, int to) {
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                SimulationStats stats = new SimulationStats();
+                for (int i = from; i < to; i++) {
+                    stats.add(play(firstSeed + i));
+                }
+                return stats;
+            }
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(firstSeed, from, mid);
+            left.fork();
+            SimulationStats right = new Batch(firstSeed, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Plays a batch of games and prints the results. Takes the amount of games
+     * and, optionally, the seed of the first one and who plays them: random
+     * inputs by default, or {@link HeuristicBot} if {@code bot} is given. The
+     * bot gets no time budget, so that the batch gives the same results on
+     * any machine, however loaded.
+     * @param args
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        boolean bot = args.length > 2 && args[2].equals("bot");
+
+        LongFunction<Controller> controllers = bot ? s -> new HeuristicBot(HeuristicBot.NO_TIME_BUDGET) : RandomController::new;
+        BatchSimulator simulator = new BatchSimulator(10, 24, (long) 4e8, 60 * 60 * 60, controllers);
+        System.out.println(simulator.run(seed, games));
+    }
+}
@@ -0,0 +1,18 @@
+package com.mauro.tetris.tetris.sim;
+
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * A Controller plays a TetrisGame in place of a person, one
+ * frame of the fixed timestep at a time.
+ */
+@FunctionalInterface
+public interface Controller {
+
+    /**
+     * Decides what to do on the next frame of {@code game}.
+     * @param game the game being played.
+     * @return the actions to take, as given to {@link TetrisGame#step(int)}.
+     */
+    int nextInputs(TetrisGame game);
+}
@@ -0,0 +1,48 @@
+package com.mauro.tetris.tetris.sim;
+
+import java.util.SplittableRandom;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The RandomController presses a random key every few frames.
+ * Its inputs are entirely determined by its seed.
+ */
+public class RandomController implements Controller {
+    private static final Actions[] ACTIONS = Actions.values();
+
+    private final SplittableRandom random;
+    private final int oneInN;
+
+    /**
+     * Creates a new RandomController that presses a key
+     * on about one of every 8 frames.
+     * @param seed
+     */
+    public RandomController(long seed) {
+        this(seed, 8);
+    }
+
+    /**
+     * Creates a new RandomController that presses a key
+     * on about one of every {@code oneInN} frames.
+     * @param seed
+     * @param oneInN
+     */
+    public RandomController(long seed, int oneInN) {
+        if (oneInN < 1) {
+            throw new IllegalArgumentException("oneInN must be positive: " + oneInN);
+        }
+        this.random = new SplittableRandom(seed);
+        this.oneInN = oneInN;
+    }
+
+    @Override
+    public int nextInputs(TetrisGame game) {
+        if (random.nextInt(oneInN) != 0) {
+            return 0;
+        }
+        return ACTIONS[random.nextInt(ACTIONS.length)].bit();
+    }
+}
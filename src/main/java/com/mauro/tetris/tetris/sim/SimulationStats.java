@@ -0,0 +1,162 @@
+package com.mauro.tetris.tetris.sim;
+
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * The SimulationStats class adds up the results of a batch of games.
+ * <p>
+ * It isn't thread safe. Every worker of a {@link BatchSimulator} keeps
+ * its own SimulationStats and they are only merged once the workers are
+ * done with them.
+ */
+public class SimulationStats {
+    private long games;
+    private long toppedOut;
+    private long piecesPlaced;
+    private long linesCleared;
+    private long frames;
+    private long shortestGame;
+    private long longestGame;
+    private long elapsedNanos;
+
+    /**
+     * Creates a new SimulationStats with no games in it.
+     */
+    public SimulationStats() {
+        this.games = this.toppedOut = 0;
+        this.piecesPlaced = this.linesCleared = this.frames = 0;
+        this.shortestGame = Long.MAX_VALUE;
+        this.longestGame = 0;
+        this.elapsedNanos = 0;
+    }
+
+    /**
+     * Adds a finished game to these stats.
+     * @param game the game, as it was when it finished.
+     */
+    public void add(TetrisGame game) {
+        long length = game.getFrame();
+        this.games++;
+        if (game.isOver()) {
+            this.toppedOut++;
+        }
+        this.piecesPlaced += game.getPiecesPlaced();
+        this.linesCleared += game.getLinesCleared();
+        this.frames += length;
+        this.shortestGame = Math.min(this.shortestGame, length);
+        this.longestGame = Math.max(this.longestGame, length);
+    }
+
+    /**
+     * Adds all the games in {@code other} to these stats.
+     * @param other
+     * @return these stats.
+     */
+    public SimulationStats merge(SimulationStats other) {
+        this.games += other.games;
+        this.toppedOut += other.toppedOut;
+        this.piecesPlaced += other.piecesPlaced;
+        this.linesCleared += other.linesCleared;
+        this.frames += other.frames;
+        this.shortestGame = Math.min(this.shortestGame, other.shortestGame);
+        this.longestGame = Math.max(this.longestGame, other.longestGame);
+        return this;
+    }
+
+    /**
+     * Returns how many games were played.
+     * @return the amount of games.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns how many games ended because a piece had no room
+     * to spawn, as opposed to running out of frames.
+     * @return the amount of games that were lost.
+     */
+    public long getToppedOut() {
+        return toppedOut;
+    }
+
+    /**
+     * Returns how many pieces were placed in all games.
+     * @return the amount of pieces placed.
+     */
+    public long getPiecesPlaced() {
+        return piecesPlaced;
+    }
+
+    /**
+     * Returns how many rows were cleared in all games.
+     * @return the amount of rows cleared.
+     */
+    public long getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Returns how many frames were played in all games.
+     * @return the amount of frames.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the length (in frames) of the shortest game,
+     * or {@code 0} if there are no games.
+     * @return the length of the shortest game.
+     */
+    public long getShortestGame() {
+        return games == 0 ? 0 : shortestGame;
+    }
+
+    /**
+     * Returns the length (in frames) of the longest game.
+     * @return the length of the longest game.
+     */
+    public long getLongestGame() {
+        return longestGame;
+    }
+
+    /**
+     * Returns the average length (in frames) of the games.
+     * @return the average length of the games.
+     */
+    public double getAverageGameLength() {
+        return games == 0 ? 0 : (double) frames / games;
+    }
+
+    /**
+     * Returns how long it took to play all games (in nanoseconds).
+     * @return the elapsed time.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns how many games were played per second.
+     * @return the games per second.
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%d games (%d topped out) in %.3f s, %.1f games/s%n"
+            + "pieces placed: %d, lines cleared: %d%n"
+            + "game length (frames): avg %.1f, min %d, max %d",
+            games, toppedOut, elapsedNanos / 1e9, getGamesPerSecond(),
+            piecesPlaced, linesCleared,
+            getAverageGameLength(), getShortestGame(), longestGame);
+    }
+}
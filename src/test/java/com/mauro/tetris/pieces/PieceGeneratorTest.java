@@ -0,0 +1,50 @@
+package com.mauro.tetris.pieces;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the seeded 7-bag generator.
+ */
+public class PieceGeneratorTest {
+
+    @Test
+    public void sameSeedSameSequence() {
+        PieceGenerator a = new PieceGenerator(1234);
+        PieceGenerator b = new PieceGenerator(1234);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.next(), b.next());
+        }
+    }
+
+    @Test
+    public void everyBagHasEveryPiece() {
+        PieceGenerator gen = new PieceGenerator(99);
+        for (int bag = 0; bag < 100; bag++) {
+            int seen = 0;
+            for (int i = 0; i < 7; i++) {
+                seen |= 1 << gen.next();
+            }
+            assertEquals(0b1111111, seen);
+        }
+    }
+
+    @Test
+    public void peekingDoesNotChangeTheSequence() {
+        PieceGenerator peeked = new PieceGenerator(7);
+        PieceGenerator plain = new PieceGenerator(7);
+
+        int[] ahead = new int[100];
+        for (int i = 0; i < ahead.length; i++) {
+            ahead[i] = peeked.peek(i);
+        }
+        for (int i = 0; i < ahead.length; i++) {
+            int next = plain.next();
+            assertEquals(ahead[i], next);
+            assertEquals(next, peeked.next());
+            assertTrue(next >= 0 && next < 7);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mauro.tetris.pieces;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the kick tables and rotation states of the standard Tetrominoes.
+ */
+public class TetrominoTypeTest {
+
+    // the clockwise wall kick tests of the Super Rotation System, y going up,
+    // indexed by the rotation the piece was in (0, R, 2 and L)
+    private static final int[][][] SRS_JLSTZ = {
+        {{-1, 0}, {-1, 1}, {0, -2}, {-1, -2}},
+        {{1, 0}, {1, -1}, {0, 2}, {1, 2}},
+        {{1, 0}, {1, 1}, {0, -2}, {1, -2}},
+        {{-1, 0}, {-1, -1}, {0, 2}, {-1, 2}},
+    };
+
+    private static final int[][][] SRS_I = {
+        {{-2, 0}, {1, 0}, {-2, -1}, {1, 2}},
+        {{-1, 0}, {2, 0}, {-1, 2}, {2, -1}},
+        {{2, 0}, {-1, 0}, {2, 1}, {-1, -2}},
+        {{1, 0}, {-2, 0}, {1, -2}, {-2, 1}},
+    };
+
+    @Test
+    public void kickTablesAreTheSrsOnes() {
+        for (TetrominoType type : TetrominoType.values()) {
+            int[][][] expected = type == TetrominoType.I ? SRS_I : SRS_JLSTZ;
+            int[][][] data = type.getWallKickData();
+            assertEquals(4, data.length, type.name());
+            for (int rotation = 0; rotation < 4; rotation++) {
+                for (int test = 0; test < 4; test++) {
+                    assertArrayEquals(expected[rotation][test], data[rotation][test],
+                            type + " from " + rotation + ", test " + (test + 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void piecesShareTheTableOfTheirType() {
+        assertSame(TetrominoType.I.getWallKickData(), TetrominoType.wallKickDataFor("i"));
+        assertSame(TetrominoType.T.getWallKickData(), TetrominoType.wallKickDataFor("T"));
+        for (TetrominoType type : TetrominoType.values()) {
+            assertSame(type.getWallKickData(), new Tetromino(type, 4, 20).getWallKickData());
+        }
+    }
+
+    @Test
+    public void fourRotationsGoFullCircle() {
+        for (TetrominoType type : TetrominoType.values()) {
+            Tetromino piece = new Tetromino(type, 4, 20);
+            Tetromino turned = new Tetromino(type, 4, 20);
+            for (int i = 0; i < 4; i++) {
+                turned.rotateClockwise();
+            }
+            assertEquals(0, turned.getCurrentRotation());
+            assertEquals(3, turned.getPreviousRotation());
+            assertArrayEquals(piece.getBody(), turned.getBody(), type.name());
+
+            turned.rotateCounterclockwise();
+            assertEquals(3, turned.getCurrentRotation());
+            assertEquals(0, turned.getPreviousRotation());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * Unit test for GameLoop.
+ */
+public class GameLoopTest {
+
+    /**
+     * Waits (for a few seconds at most) until the latest
+     * state published by {@code loop} is what's expected.
+     */
+    private static RenderState awaitState(GameLoop loop, Predicate<RenderState> expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        RenderState state = loop.getState();
+        while (!expected.test(state)) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+            state = loop.getState();
+        }
+        return state;
+    }
+
+    @Test
+    public void keysReachTheGameAndItsStateComesBack() throws InterruptedException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 8);
+        GameLoop loop = new GameLoop(game);
+        AtomicInteger published = new AtomicInteger();
+        loop.setPublishListener(published::incrementAndGet);
+
+        RenderState first = loop.getState();
+        int x = first.getPieceX();
+        assertEquals(game.getTetrisBoard().getCurrentTetromino().getX(), x);
+
+        loop.start();
+        try {
+            loop.getInputQueue().offer(System.nanoTime(), Actions.HARD_DROP, true);
+            loop.getInputQueue().offer(System.nanoTime(), Actions.HARD_DROP, false);
+            RenderState state = awaitState(loop, s -> s.getPiecesPlaced() == 1);
+            assertTrue(state.getFrame() > 0);
+            assertTrue(published.get() > 0);
+        } finally {
+            loop.stop();
+        }
+        // the game is left alone once stopped
+        long frame = game.getFrame();
+        Thread.sleep(50);
+        assertEquals(frame, game.getFrame());
+    }
+
+    @Test
+    public void pausedGamesStandStill() throws InterruptedException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 8);
+        GameLoop loop = new GameLoop(game);
+        loop.pause();
+        loop.start();
+        try {
+            Thread.sleep(50);
+            assertEquals(0, game.getFrame());
+
+            // pieces only fall on their own once it's resumed
+            loop.resume();
+            int y = loop.getState().getPieceY();
+            awaitState(loop, s -> s.getPieceY() < y);
+        } finally {
+            loop.stop();
+        }
+    }
+}
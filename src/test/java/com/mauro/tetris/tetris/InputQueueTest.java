@@ -0,0 +1,77 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * Unit test for InputQueue.
+ */
+public class InputQueueTest {
+
+    @Test
+    public void eventsComeOutInOrder() {
+        InputQueue queue = new InputQueue(4);
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(10, Actions.MOVE_LEFT, true));
+        assertTrue(queue.offer(20, Actions.HARD_DROP, true));
+        assertTrue(queue.offer(30, Actions.MOVE_LEFT, false));
+
+        assertEquals(10, queue.peekTime());
+        assertEquals(Actions.MOVE_LEFT, queue.peekAction());
+        assertTrue(queue.peekPressed());
+        queue.remove();
+        assertEquals(20, queue.peekTime());
+        assertEquals(Actions.HARD_DROP, queue.peekAction());
+        queue.remove();
+        assertEquals(30, queue.peekTime());
+        assertFalse(queue.peekPressed());
+        queue.remove();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void eventsAreDroppedWhenFull() {
+        InputQueue queue = new InputQueue(3);
+        // rounded up to 4
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i, Actions.MOVE_DOWN, true));
+        }
+        assertFalse(queue.offer(4, Actions.MOVE_DOWN, true));
+        queue.remove();
+        assertTrue(queue.offer(5, Actions.MOVE_DOWN, true));
+        assertEquals(1, queue.peekTime());
+    }
+
+    @Test
+    public void eventsGetAcrossThreads() throws InterruptedException {
+        InputQueue queue = new InputQueue(16);
+        Actions[] actions = Actions.values();
+        int events = 5_000;
+        // whoever has to wait gives the CPU up, so this stays quick with few cores
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < events; i++) {
+                while (!queue.offer(i, actions[i % actions.length], (i & 1) == 0)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < events; i++) {
+            while (queue.isEmpty()) {
+                Thread.yield();
+            }
+            assertEquals(i, queue.peekTime());
+            assertEquals(actions[i % actions.length], queue.peekAction());
+            assertEquals((i & 1) == 0, queue.peekPressed());
+            queue.remove();
+        }
+        producer.join();
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Tetromino;
+
+/**
+ * Unit test for RenderState.
+ */
+public class RenderStateTest {
+
+    private static void assertSameGame(TetrisGame game, RenderState state) {
+        TetrisBoard board = game.getTetrisBoard();
+        for (int y = 1; y <= board.getHeight(); y++) {
+            for (int x = 1; x <= board.getWidth(); x++) {
+                assertEquals(board.getColorAtCell(x, y), state.getColorAtCell(x, y), "cell " + x + ", " + y);
+            }
+        }
+        Tetromino piece = board.getCurrentTetromino();
+        assertEquals(piece.getTetrominoType(), state.getPieceType());
+        assertEquals(piece.getX(), state.getPieceX());
+        assertEquals(piece.getY(), state.getPieceY());
+        assertEquals(piece.getCurrentRotation(), state.getPieceRotation());
+        assertEquals(board.getGhostPiece().getY(), state.getGhostY());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(game.getNextPieceType(i), state.getNextPieceType(i));
+        }
+        assertEquals(game.getVersion(), state.getVersion());
+        assertEquals(game.getPiecesPlaced(), state.getPiecesPlaced());
+    }
+
+    @Test
+    public void reusedStatesMatchTheGame() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 12);
+        // like the slots of a triple buffer, each copied into every so often
+        RenderState[] states = { new RenderState(), new RenderState(), new RenderState() };
+        Actions[] inputs = { Actions.MOVE_LEFT, Actions.ROTATE_CLOCKWISE, Actions.HARD_DROP,
+            Actions.MOVE_RIGHT, Actions.HARD_DROP, Actions.ROTATE_COUNTERCLOCKWISE, Actions.HARD_DROP };
+        for (int i = 0; i < 300; i++) {
+            game.moveCurrentTetromino(inputs[i % inputs.length]);
+            if (game.isOver()) {
+                game.reset();
+            }
+            RenderState state = states[(i * 7 / 3) % states.length];
+            state.copyFrom(game);
+            assertSameGame(game, state);
+        }
+    }
+
+    @Test
+    public void dirtyRowsAreTheBoardsOnes() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 12);
+        TetrisBoard board = game.getTetrisBoard();
+        RenderState state = new RenderState();
+        state.copyFrom(game);
+        long since = state.getBlocksVersion();
+
+        game.moveCurrentTetromino(Actions.HARD_DROP);
+        board.setCell(3, 10, 2);
+        state.copyFrom(game);
+        assertEquals(board.getDirtyRows(since), state.getDirtyRows(since));
+        assertEquals(0, state.getDirtyRows(state.getBlocksVersion()));
+    }
+
+    @Test
+    public void theGhostPieceCanBeOff() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 12);
+        game.toggleGhostPiece();
+        RenderState state = new RenderState();
+        state.copyFrom(game);
+        assertFalse(state.hasGhostPiece());
+
+        while (!game.isOver()) {
+            game.moveCurrentTetromino(Actions.HARD_DROP);
+        }
+        state.copyFrom(game);
+        assertNull(state.getPieceType());
+    }
+
+    @Test
+    public void rowsAboveTheMaskAreCopiedToo() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(10, 100), (long) 4e8, 12);
+        TetrisBoard board = game.getTetrisBoard();
+        RenderState state = new RenderState();
+        state.copyFrom(game);
+
+        long version = board.getVersion();
+        board.setCell(2, 70, 4);
+        board.setCell(9, 10, 5);
+        state.copyFrom(game);
+        assertSameGame(game, state);
+        assertEquals(1L << 9 | 1L << 63, state.getDirtyRows(version));
+    }
+}
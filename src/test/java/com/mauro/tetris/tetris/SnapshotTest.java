@@ -0,0 +1,141 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * Unit test for game and board snapshots.
+ */
+public class SnapshotTest {
+
+    private static void play(TetrisGame game, long seed, int frames) {
+        SplittableRandom inputs = new SplittableRandom(seed);
+        Actions[] actions = Actions.values();
+        for (int i = 0; i < frames; i++) {
+            game.step(inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+        }
+    }
+
+    @Test
+    public void restoringGoesBackInTime() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 3);
+        play(game, 3, 5_000);
+        Snapshot snapshot = game.snapshot();
+        long hash = game.getTetrisBoard().getHash();
+        long pieces = game.getPiecesPlaced();
+
+        play(game, 4, 5_000);
+        Snapshot later = game.snapshot();
+        assertNotEquals(snapshot, later);
+
+        game.restore(snapshot);
+        assertEquals(5_000, game.getFrame());
+        assertEquals(hash, game.getTetrisBoard().getHash());
+        assertEquals(pieces, game.getPiecesPlaced());
+        assertEquals(snapshot, game.snapshot());
+
+        // and playing the same frames again ends up in the same place
+        play(game, 4, 5_000);
+        assertEquals(later, game.snapshot());
+    }
+
+    @Test
+    public void snapshotsAreSmall() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 5);
+        play(game, 5, 20_000);
+        assertTrue(game.snapshot().size() < 400, game.snapshot().toString());
+    }
+
+    @Test
+    public void boardSnapshotsKeepTheBlocksOnly() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 6);
+        play(game, 6, 3_000);
+        TetrisBoard board = game.getTetrisBoard();
+        Snapshot snapshot = board.snapshot();
+
+        TetrisBoard other = new TetrisBoard();
+        other.restore(snapshot);
+        assertEquals(board.getHash(), other.getHash());
+        assertNull(other.getCurrentTetromino());
+        assertEquals(snapshot, other.snapshot());
+
+        assertThrows(IllegalArgumentException.class, () -> game.restore(snapshot));
+        assertThrows(IllegalArgumentException.class, () -> new TetrisBoard(8, 20).restore(snapshot));
+    }
+
+    @Test
+    public void snapshotsSurviveBeingTurnedIntoBytes() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 7);
+        play(game, 7, 4_000);
+        Snapshot snapshot = game.snapshot();
+        Snapshot copy = Snapshot.fromByteArray(snapshot.toByteArray());
+        assertEquals(snapshot, copy);
+
+        TetrisGame other = new TetrisGame(new TetrisBoard(), (long) 4e8, 0);
+        other.restore(copy);
+        assertEquals(game.getTetrisBoard().getHash(), other.getTetrisBoard().getHash());
+        assertThrows(IllegalArgumentException.class, () -> Snapshot.fromByteArray(new byte[] {9}));
+    }
+
+    /**
+     * Checks that restoring {@code bytes} into {@code game} fails without changing anything.
+     */
+    private static void assertRejected(TetrisGame game, byte[] bytes) {
+        Snapshot before = game.snapshot();
+        long version = game.getVersion();
+        Snapshot snapshot = Snapshot.fromByteArray(bytes);
+        assertThrows(IllegalArgumentException.class, () -> game.restore(snapshot));
+        assertEquals(before, game.snapshot());
+        assertEquals(version, game.getVersion());
+    }
+
+    @Test
+    public void invalidStatesChangeNothing() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 8);
+        play(game, 8, 3_000);
+        TetrisGame other = new TetrisGame(new TetrisBoard(), (long) 4e8, 9);
+        play(other, 9, 6_000);
+        byte[] bytes = other.snapshot().toByteArray();
+        // the current piece is the last thing written: type, x, y and rotation
+        int piece = bytes.length - 6;
+
+        byte[] badType = bytes.clone();
+        badType[piece] = 9;
+        assertRejected(game, badType);
+
+        byte[] badRotation = bytes.clone();
+        badRotation[bytes.length - 1] = 4;
+        assertRejected(game, badRotation);
+
+        byte[] offTheBoard = bytes.clone();
+        offTheBoard[piece + 1] = 0x7F;
+        assertRejected(game, offTheBoard);
+
+        // sunk into the floor, where the blocks are
+        byte[] intoTheBlocks = bytes.clone();
+        intoTheBlocks[piece + 3] = 0;
+        intoTheBlocks[piece + 4] = 1;
+        assertRejected(game, intoTheBlocks);
+
+        assertRejected(game, Arrays.copyOf(bytes, bytes.length - 3));
+        assertRejected(game, Arrays.copyOf(bytes, 40));
+
+        TetrisGame narrow = new TetrisGame(new TetrisBoard(8, 24), (long) 4e8, 10);
+        play(narrow, 10, 1_000);
+        assertRejected(game, narrow.snapshot().toByteArray());
+
+        // and the valid one still goes through
+        game.restore(Snapshot.fromByteArray(bytes));
+        assertEquals(other.snapshot(), game.snapshot());
+    }
+}
@@ -0,0 +1,452 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Block;
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoFactory;
+import com.mauro.tetris.pieces.TetrominoType;
+
+/**
+ * Unit test for TetrisBoard.
+ */
+public class TetrisBoardTest {
+
+    /**
+     * Returns the hash of a brand new board with the same blocks as {@code board}.
+     */
+    private static long rebuiltHash(TetrisBoard board) {
+        TetrisBoard copy = new TetrisBoard(board.getWidth(), board.getHeight(), false);
+        for (int y = 1; y <= board.getHeight(); y++) {
+            for (int x = 1; x <= board.getWidth(); x++) {
+                copy.setCell(x, y, board.getColorAtCell(x, y));
+            }
+        }
+        return copy.getHash();
+    }
+
+    /**
+     * Moves {@code piece} so that its bottom left cell
+     * is at the column {@code column} and the row {@code row}.
+     */
+    private static void moveTo(Tetromino piece, int column, int row) {
+        piece.setPosition(piece.getX() + column - piece.getMaskColumn(), piece.getY() + row - piece.getMaskRow());
+    }
+
+    /**
+     * Places a single block at {@code (x, y)}, as a piece of its own.
+     */
+    private static void placeBlock(TetrisBoard board, int x, int y) {
+        placeBlock(board, x, y, 1);
+    }
+
+    /**
+     * Places a single block of color {@code color} at {@code (x, y)}, as a piece of its own.
+     */
+    private static void placeBlock(TetrisBoard board, int x, int y, int color) {
+        Tetromino block = new Tetromino("block", new Block[] { new Block(0, 0, color) }, x, y, 0, 0);
+        assertTrue(board.setCurrentTetromino(block));
+        board.placeCurrTetromino();
+    }
+
+    /**
+     * Returns the columns and rows of the cells {@code piece} takes
+     * where it is, as pairs of {@code {x, y}}.
+     */
+    private static int[][] cellsOf(Tetromino piece) {
+        int[][] cells = new int[piece.size()][];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new int[] { piece.getCellX(i) + piece.getX(), piece.getCellY(i) + piece.getY() };
+        }
+        return cells;
+    }
+
+    /**
+     * Checks whether every cell in {@code cells}, moved by {@code (xOffset, yOffset)},
+     * is marked in {@code free}, indexed by column and then by row.
+     */
+    private static boolean fits(int[][] cells, int xOffset, int yOffset, boolean[][] free) {
+        for (int[] cell : cells) {
+            if (!free[cell[0] + xOffset][cell[1] + yOffset]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    @Test
+    public void hashFollowsTheBlocks() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 1e8, 31);
+        SplittableRandom inputs = new SplittableRandom(31);
+        Actions[] actions = Actions.values();
+
+        long lines = 0;
+        for (int i = 0; i < 100_000; i++) {
+            game.step(inputs.nextInt(4) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+            if (game.getLinesCleared() != lines || i % 1000 == 0) {
+                lines = game.getLinesCleared();
+                assertEquals(rebuiltHash(game.getTetrisBoard()), game.getTetrisBoard().getHash(), "frame " + i);
+            }
+        }
+    }
+
+    @Test
+    public void hashFollowsSingleRowClears() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        for (int x = 1; x <= 10; x++) {
+            board.setCell(x, 2, 1);
+        }
+        board.setCell(3, 1, 2);
+        board.setCell(4, 3, 3);
+        board.setCell(7, 5, 4);
+        long before = board.getHash();
+
+        board.clearRow(2);
+        board.pullAboveBlocksDownFrom(2);
+
+        assertNotEquals(before, board.getHash());
+        assertEquals(rebuiltHash(board), board.getHash());
+
+        board.clearAll();
+        assertEquals(0, board.getHash());
+    }
+
+    @Test
+    public void versionChangesWithTheBlocksOnly() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 8);
+        TetrisBoard board = game.getTetrisBoard();
+
+        long version = board.getVersion();
+        game.moveCurrentTetromino(Actions.MOVE_LEFT);
+        game.moveCurrentTetromino(Actions.ROTATE_CLOCKWISE);
+        assertEquals(version, board.getVersion());
+
+        game.moveCurrentTetromino(Actions.HARD_DROP);
+        assertNotEquals(version, board.getVersion());
+
+        version = board.getVersion();
+        board.setCell(10, 10, 3);
+        assertNotEquals(version, board.getVersion());
+    }
+
+    @Test
+    public void dirtyRowsAreTheChangedOnes() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        long version = board.getVersion();
+        board.setCell(3, 5, 1);
+        board.setCell(4, 7, 1);
+        assertEquals(1L << 4 | 1L << 6, board.getDirtyRows(version));
+
+        version = board.getVersion();
+        assertEquals(0, board.getDirtyRows(version));
+        for (int x = 1; x <= 10; x++) {
+            board.setCell(x, 2, 2);
+        }
+        version = board.getVersion();
+        board.clearFullRows();
+        // everything from the cleared row up moves down
+        assertEquals(-1L << 1 & (1L << 24) - 1, board.getDirtyRows(version));
+    }
+
+    @Test
+    public void piecesCollideWithEveryWall() {
+        TetrominoFactory factory = new TetrominoFactory(10, 24);
+        for (int type = 0; type < 7; type++) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                TetrisBoard board = new TetrisBoard(10, 24, false);
+                Tetromino piece = factory.getPieces().get(type);
+                for (int i = 0; i < rotation; i++) {
+                    piece.rotateClockwise();
+                }
+                int width = piece.getMaskWidth(), height = piece.getRowMasks().length;
+                String what = piece.getTetrominoName() + " in rotation " + rotation;
+
+                moveTo(piece, 1, 1);
+                assertTrue(board.setCurrentTetromino(piece), what);
+                assertFalse(board.moveCurrTetrominoLeft(), what + " against the left wall");
+                assertFalse(board.moveCurrTetrominoDown(), what + " against the floor");
+                assertEquals(1, piece.getMaskColumn(), what);
+                assertEquals(1, piece.getMaskRow(), what);
+
+                moveTo(piece, 11 - width, 25 - height);
+                assertFalse(board.moveCurrTetrominoRight(), what + " against the right wall");
+                assertEquals(11 - width, piece.getMaskColumn(), what);
+                moveTo(piece, 12 - width, 25 - height);
+                assertFalse(board.setCurrentTetromino(piece), what + " past the right wall");
+                moveTo(piece, 11 - width, 26 - height);
+                assertFalse(board.setCurrentTetromino(piece), what + " past the ceiling");
+            }
+        }
+    }
+
+    @Test
+    public void piecesCollideWithPlacedBlocks() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        placeBlock(board, 5, 1);
+        placeBlock(board, 3, 2);
+        assertEquals(1, board.getAmountOfBlocksInRow(1));
+        assertEquals(1, board.getAmountOfBlocksInColumn(3));
+
+        // an O over the block at column 5 lands on it
+        Tetromino piece = new TetrominoFactory(10, 24).createOPiece();
+        moveTo(piece, 5, 10);
+        assertTrue(board.setCurrentTetromino(piece));
+        board.hardDropCurrTetromino();
+        assertEquals(2, piece.getMaskRow());
+        assertEquals(5, piece.getMaskColumn());
+
+        // and the block at column 3 stops it on its way to the left
+        moveTo(piece, 4, 2);
+        assertFalse(board.moveCurrTetrominoLeft());
+        assertEquals(4, piece.getMaskColumn());
+        // a row higher it gets past, and then lands on it
+        moveTo(piece, 4, 3);
+        assertTrue(board.moveCurrTetrominoLeft());
+        assertFalse(board.moveCurrTetrominoDown());
+        assertEquals(3, piece.getMaskColumn());
+        assertEquals(3, piece.getMaskRow());
+
+        // nor can a piece be put on top of a block
+        Tetromino other = new TetrominoFactory(10, 24).createOPiece();
+        moveTo(other, 5, 1);
+        assertFalse(board.setCurrentTetromino(other));
+    }
+
+    @Test
+    public void kicksAreTriedInTableOrder() {
+        for (TetrominoType type : TetrominoType.values()) {
+            if (type == TetrominoType.O) {
+                continue;
+            }
+            for (int from = 0; from < 4; from++) {
+                for (int wise = -1; wise <= 1; wise += 2) {
+                    for (int test = 1; test <= 4; test++) {
+                        Tetromino piece = new Tetromino(type, 8, 8);
+                        Tetromino turned = new Tetromino(type, 8, 8);
+                        for (int i = 0; i < from; i++) {
+                            piece.rotateClockwise();
+                            turned.rotateClockwise();
+                        }
+                        if (wise > 0) {
+                            turned.rotateClockwise();
+                        } else {
+                            turned.rotateCounterclockwise();
+                        }
+                        int[][] kicks = type.getWallKickData()[from];
+                        int[][] start = cellsOf(piece), end = cellsOf(turned);
+                        String what = type + " from " + from + (wise > 0 ? " clockwise" : " counterclockwise")
+                                + ", test " + test;
+
+                        // the only places left are where the piece is and the ones
+                        // this test and the ones after it move the rotated piece to
+                        boolean[][] free = new boolean[21][21];
+                        for (int[] cell : start) {
+                            free[cell[0]][cell[1]] = true;
+                        }
+                        for (int i = test; i <= 4; i++) {
+                            for (int[] cell : end) {
+                                free[cell[0] + kicks[i - 1][0] * wise][cell[1] + kicks[i - 1][1] * wise] = true;
+                            }
+                        }
+                        TetrisBoard board = new TetrisBoard(20, 20, false);
+                        for (int x = 1; x <= 20; x++) {
+                            for (int y = 1; y <= 20; y++) {
+                                if (!free[x][y]) {
+                                    placeBlock(board, x, y);
+                                }
+                            }
+                        }
+
+                        // the first test that fits wins. the place where the piece
+                        // is might let an earlier one through, but never a later one
+                        int expected = test;
+                        for (int i = test - 1; i >= 1; i--) {
+                            if (fits(end, kicks[i - 1][0] * wise, kicks[i - 1][1] * wise, free)) {
+                                expected = i;
+                            }
+                        }
+                        int dx = 0, dy = 0;
+                        if (!fits(end, 0, 0, free)) {
+                            dx = kicks[expected - 1][0] * wise;
+                            dy = kicks[expected - 1][1] * wise;
+                        }
+
+                        assertTrue(board.setCurrentTetromino(piece), what);
+                        assertTrue(wise > 0 ? board.rotateCurrTetrominoClockwise()
+                                : board.rotateCurrTetrominoCounterclockwise(), what);
+                        assertEquals(turned.getCurrentRotation(), piece.getCurrentRotation(), what);
+                        assertEquals(turned.getMaskColumn() + dx, piece.getMaskColumn(), what);
+                        assertEquals(turned.getMaskRow() + dy, piece.getMaskRow(), what);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void boxedInPiecesDontRotate() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        Tetromino piece = new Tetromino(TetrominoType.T, 4, 10);
+        int[][] cells = cellsOf(piece);
+        for (int x = 1; x <= 10; x++) {
+            for (int y = 1; y <= 24; y++) {
+                boolean taken = false;
+                for (int[] cell : cells) {
+                    taken |= cell[0] == x && cell[1] == y;
+                }
+                if (!taken) {
+                    placeBlock(board, x, y);
+                }
+            }
+        }
+        assertTrue(board.setCurrentTetromino(piece));
+        int column = piece.getMaskColumn(), row = piece.getMaskRow();
+        assertFalse(board.rotateCurrTetrominoClockwise());
+        assertFalse(board.rotateCurrTetrominoCounterclockwise());
+        assertEquals(0, piece.getCurrentRotation());
+        assertEquals(column, piece.getMaskColumn());
+        assertEquals(row, piece.getMaskRow());
+    }
+
+    @Test
+    public void interleavedFullRowsAreClearedAndTheRestCompacted() {
+        for (int lines = 1; lines <= 4; lines++) {
+            TetrisBoard board = new TetrisBoard(10, 14, false);
+            // full rows at 2, 4, 6 and 8 (as many as needed), each one with
+            // a row under it holding a single block in a column of its own
+            long full = 0;
+            for (int i = 0; i < lines; i++) {
+                int row = 2 * i + 2;
+                full |= 1L << (row - 1);
+                for (int x = 1; x <= 10; x++) {
+                    placeBlock(board, x, row);
+                }
+            }
+            for (int row = 1; row <= 9; row += 2) {
+                placeBlock(board, row, row, row + 1);
+            }
+            placeBlock(board, 10, 14, 7);
+
+            int[][] kept = new int[14][];
+            int count = 0;
+            for (int y = 1; y <= 14; y++) {
+                if ((full >>> (y - 1) & 1) == 0) {
+                    kept[count] = new int[10];
+                    for (int x = 1; x <= 10; x++) {
+                        kept[count][x - 1] = board.getColorAtCell(x, y);
+                    }
+                    count++;
+                }
+            }
+
+            long cleared = board.clearFullRows();
+            assertEquals(full, cleared);
+            assertEquals(lines, Long.bitCount(cleared));
+            int[] blocksPerColumn = new int[10];
+            for (int y = 1; y <= 14; y++) {
+                int blocks = 0;
+                for (int x = 1; x <= 10; x++) {
+                    int expected = y <= count ? kept[y - 1][x - 1] : 0;
+                    assertEquals(expected, board.getColorAtCell(x, y), lines + " lines, cell " + x + ", " + y);
+                    assertEquals(expected != 0, board.isCellOccupied(x, y));
+                    if (expected != 0) {
+                        blocks++;
+                        blocksPerColumn[x - 1]++;
+                    }
+                }
+                assertEquals(blocks, board.getAmountOfBlocksInRow(y), lines + " lines, row " + y);
+            }
+            for (int x = 1; x <= 10; x++) {
+                assertEquals(blocksPerColumn[x - 1], board.getAmountOfBlocksInColumn(x), lines + " lines, column " + x);
+            }
+            assertEquals(rebuiltHash(board), board.getHash());
+            assertEquals(0, board.clearFullRows());
+        }
+    }
+
+    @Test
+    public void boardsMayBeTallerThanAMask() {
+        assertThrows(IllegalArgumentException.class, () -> new TetrisBoard(65, 24));
+        assertThrows(IllegalArgumentException.class, () -> new TetrisBoard(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TetrisBoard(10, TetrisBoard.MAX_HEIGHT + 1));
+
+        TetrisBoard board = new TetrisBoard(10, TetrisBoard.MAX_HEIGHT, false);
+        for (int row : new int[] { 3, 64, 65, 200 }) {
+            for (int x = 1; x <= 10; x++) {
+                placeBlock(board, x, row);
+            }
+        }
+        placeBlock(board, 4, 66, 2);
+        placeBlock(board, 6, TetrisBoard.MAX_HEIGHT, 3);
+        long version = board.getVersion();
+        assertThrows(IllegalStateException.class, board::clearFullRows);
+        assertEquals(10, board.getAmountOfBlocksInRow(3));
+        assertEquals(version, board.getVersion());
+
+        long[] cleared = new long[4];
+        cleared[2] = -1;
+        assertEquals(4, board.clearFullRows(cleared));
+        assertEquals(1L << 2 | 1L << 63, cleared[0]);
+        assertEquals(1L, cleared[1]);
+        assertEquals(0, cleared[2]);
+        assertEquals(1L << (199 - 192), cleared[3]);
+
+        assertEquals(2, board.getColorAtCell(4, 63));
+        assertEquals(3, board.getColorAtCell(6, TetrisBoard.MAX_HEIGHT - 4));
+        assertEquals(0, board.getColorAtCell(6, TetrisBoard.MAX_HEIGHT));
+        assertEquals(0, board.getAmountOfBlocksInRow(TetrisBoard.MAX_HEIGHT));
+        assertEquals(1, board.getAmountOfBlocksInColumn(6));
+        assertEquals(rebuiltHash(board), board.getHash());
+        // every row from the 64th up shares the last bit
+        assertEquals(-1L << 2, board.getDirtyRows(version));
+        assertEquals(0, board.clearFullRows(null));
+    }
+
+    @Test
+    public void dropsStopUnderOverhangs() {
+        TetrisBoard board = new TetrisBoard(10, 24, true);
+        // a roof over columns 3 to 6, with the floor under it raised at column 5
+        for (int x = 3; x <= 6; x++) {
+            placeBlock(board, x, 12);
+        }
+        placeBlock(board, 5, 1);
+        placeBlock(board, 5, 2);
+        placeBlock(board, 1, 3);
+        assertEquals(12, board.getColumnHeight(5));
+        assertEquals(3, board.getColumnHeight(1));
+        assertEquals(0, board.getColumnHeight(7));
+
+        // an O tucked under the roof, over the raised floor
+        Tetromino piece = new Tetromino(TetrominoType.O, 0, 0);
+        moveTo(piece, 4, 8);
+        assertTrue(board.setCurrentTetromino(piece));
+        assertEquals(3, board.getGhostPiece().getMaskRow());
+        board.hardDropCurrTetromino();
+        assertEquals(3, piece.getMaskRow());
+        assertFalse(board.moveCurrTetrominoDown());
+
+        // half under the roof, half in the open
+        Tetromino half = new Tetromino(TetrominoType.O, 0, 0);
+        moveTo(half, 6, 10);
+        assertTrue(board.setCurrentTetromino(half));
+        assertEquals(1, board.getGhostPiece().getMaskRow());
+        board.hardDropCurrTetromino();
+        assertEquals(1, half.getMaskRow());
+
+        // above the roof, only the skyline matters
+        Tetromino over = new Tetromino(TetrominoType.O, 0, 0);
+        moveTo(over, 3, 20);
+        assertTrue(board.setCurrentTetromino(over));
+        assertEquals(13, board.getGhostPiece().getMaskRow());
+        board.hardDropCurrTetromino();
+        assertEquals(13, over.getMaskRow());
+    }
+}
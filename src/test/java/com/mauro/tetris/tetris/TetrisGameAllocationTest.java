@@ -0,0 +1,141 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * Makes sure the hot paths of the game don't allocate anything.
+ * <p>
+ * The JIT compiler may allocate a few bytes on the measured thread
+ * whenever it swaps compiled code in, so every scenario is measured
+ * over a few rounds and only the cleanest one counts.
+ */
+public class TetrisGameAllocationTest {
+    private static final long FRAME = 16_666_667L;
+    private static final int ROUNDS = 5;
+
+    private com.sun.management.ThreadMXBean threads;
+    private long overhead;
+
+    @BeforeEach
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // whatever reading the counter costs by itself
+        long before = threads.getCurrentThreadAllocatedBytes();
+        overhead = threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * Returns the amount of bytes allocated by the current thread so far.
+     */
+    private long allocatedBytes() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Returns the amount of bytes allocated by the current thread since
+     * {@code allocatedBytes()} returned {@code before}.
+     */
+    private long allocatedBytesSince(long before) {
+        return threads.getCurrentThreadAllocatedBytes() - before - overhead;
+    }
+
+    /**
+     * Runs {@code round} {@code ROUNDS} times (plus once for warming up)
+     * and returns the least amount of bytes it reported as allocated.
+     */
+    private long leastAllocatedBytes(LongSupplier round) {
+        round.getAsLong();
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            least = Math.min(least, round.getAsLong());
+        }
+        return least;
+    }
+
+    @Test
+    public void gravityTicksDoNotAllocate() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), FRAME, 42);
+
+        // long enough for pieces to lock, rows to be cleared
+        // and the game to be over a few times
+        long allocated = leastAllocatedBytes(() -> {
+            long before = allocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                game.update(FRAME);
+            }
+            return allocatedBytesSince(before);
+        });
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void hardDropsDoNotAllocate() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), FRAME, 42);
+        Actions[] inputs = {
+            Actions.MOVE_LEFT, Actions.MOVE_LEFT, Actions.HARD_DROP,
+            Actions.ROTATE_CLOCKWISE, Actions.MOVE_RIGHT, Actions.HARD_DROP,
+            Actions.MOVE_RIGHT, Actions.MOVE_RIGHT, Actions.MOVE_RIGHT, Actions.HARD_DROP,
+        };
+
+        long allocated = leastAllocatedBytes(() -> {
+            long before = allocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                game.moveCurrentTetromino(inputs[i % inputs.length]);
+                game.update(FRAME);
+            }
+            return allocatedBytesSince(before);
+        });
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void inputTicksDoNotAllocate() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), Long.MAX_VALUE);
+        Actions[] inputs = {
+            Actions.MOVE_LEFT, Actions.ROTATE_CLOCKWISE, Actions.MOVE_RIGHT,
+            Actions.ROTATE_COUNTERCLOCKWISE, Actions.MOVE_RIGHT, Actions.MOVE_LEFT
+        };
+
+        long allocated = leastAllocatedBytes(() -> {
+            long before = allocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                game.moveCurrentTetromino(inputs[i % inputs.length]);
+                game.update(FRAME);
+            }
+            return allocatedBytesSince(before);
+        });
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void restoringSnapshotsDoesNotAllocate() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), FRAME, 42);
+        for (int i = 0; i < 2_000; i++) {
+            game.moveCurrentTetromino(i % 3 == 0 ? Actions.HARD_DROP : Actions.MOVE_LEFT);
+            game.update(FRAME);
+        }
+        Snapshot snapshot = game.snapshot();
+
+        long allocated = leastAllocatedBytes(() -> {
+            long before = allocatedBytes();
+            for (int i = 0; i < 20_000; i++) {
+                game.restore(snapshot);
+            }
+            return allocatedBytesSince(before);
+        });
+        assertEquals(0, allocated);
+    }
+}
@@ -0,0 +1,278 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+
+/**
+ * Unit test for TetrisGame.
+ */
+public class TetrisGameTest {
+
+    /**
+     * Plays {@code frames} frames of a game with random inputs.
+     */
+    private static TetrisGame play(long seed, int frames) {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, seed);
+        SplittableRandom inputs = new SplittableRandom(seed);
+        Actions[] actions = Actions.values();
+        for (int i = 0; i < frames; i++) {
+            int in = inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0;
+            game.step(in);
+        }
+        return game;
+    }
+
+    private static void assertSameBoard(TetrisBoard expected, TetrisBoard actual) {
+        for (int y = 1; y <= expected.getHeight(); y++) {
+            for (int x = 1; x <= expected.getWidth(); x++) {
+                assertEquals(expected.getColorAtCell(x, y), actual.getColorAtCell(x, y), "cell " + x + ", " + y);
+            }
+        }
+        assertEquals(expected.getCurrentTetromino(), actual.getCurrentTetromino());
+    }
+
+    @Test
+    public void steppingIsDeterministic() {
+        TetrisGame a = play(2024, 50_000);
+        TetrisGame b = play(2024, 50_000);
+        assertEquals(50_000, a.getFrame());
+        assertSameBoard(a.getTetrisBoard(), b.getTetrisBoard());
+    }
+
+    @Test
+    public void gameIsOverWhenAPieceHasNoRoom() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 5);
+        int drops = 0;
+        while (!game.isOver()) {
+            game.moveCurrentTetromino(Actions.HARD_DROP);
+            drops++;
+        }
+        assertEquals(drops, game.getPiecesPlaced());
+        assertFalse(game.moveCurrentTetromino(Actions.MOVE_LEFT));
+
+        // and the next update starts a new one
+        game.update(game.getFrameInterval());
+        assertFalse(game.isOver());
+        assertEquals(0, game.getPiecesPlaced());
+    }
+
+    @Test
+    public void advanceRunsWholeFramesOnly() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 1);
+        long frame = game.getFrameInterval();
+
+        assertEquals(0, game.advance(frame / 2));
+        assertEquals(1, game.advance(frame / 2 + frame / 4));
+        assertEquals(2, game.advance(2 * frame));
+        assertEquals(3, game.getFrame());
+    }
+
+    @Test
+    public void savedStatesPlayOnTheSame() {
+        TetrisGame original = play(77, 10_000);
+        ByteBuffer state = ByteBuffer.allocate(1 << 14);
+        original.writeState(state);
+        state.flip();
+
+        TetrisGame copy = new TetrisGame(new TetrisBoard(), (long) 4e8, 1);
+        copy.readState(state);
+        assertEquals(original.getFrame(), copy.getFrame());
+        assertEquals(original.getTetrisBoard().getHash(), copy.getTetrisBoard().getHash());
+
+        SplittableRandom inputs = new SplittableRandom(5);
+        Actions[] actions = Actions.values();
+        for (int i = 0; i < 10_000; i++) {
+            int in = inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0;
+            original.step(in);
+            copy.step(in);
+        }
+        assertSameBoard(original.getTetrisBoard(), copy.getTetrisBoard());
+        assertEquals(original.getPiecesPlaced(), copy.getPiecesPlaced());
+    }
+
+    /**
+     * A game whose pieces never fall on their own, whose keys come
+     * through {@code queue}, with its clock at 0.
+     */
+    private static TetrisGame keyedGame(InputQueue queue) {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), Long.MAX_VALUE / 2, 3);
+        game.setInputQueue(queue);
+        game.setClock(0);
+        return game;
+    }
+
+    private static int pieceX(TetrisGame game) {
+        return game.getTetrisBoard().getCurrentTetromino().getX();
+    }
+
+    @Test
+    public void keysWaitForTheFrameTheyHappenedBy() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(2 * frame + frame / 2, Actions.MOVE_LEFT, true);
+        assertEquals(2, game.advanceTo(2 * frame, null));
+        assertEquals(x, pieceX(game));
+        assertEquals(1, game.advanceTo(3 * frame, null));
+        assertEquals(x - 1, pieceX(game));
+    }
+
+    @Test
+    public void tappedKeysMoveOnce() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(frame / 4, Actions.MOVE_RIGHT, true);
+        queue.offer(frame / 2, Actions.MOVE_RIGHT, false);
+        game.advanceTo(60 * frame, null);
+        assertEquals(x + 1, pieceX(game));
+    }
+
+    @Test
+    public void restoredGamesKeepRepeatingHeldKeys() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setAutoShift(4, 2);
+        long frame = game.getFrameInterval();
+
+        // left held and soft drop held, halfway into the shift delay
+        queue.offer(frame / 2, Actions.MOVE_LEFT, true);
+        queue.offer(frame / 2, Actions.MOVE_DOWN, true);
+        game.advanceTo(2 * frame, null);
+        Snapshot held = game.snapshot();
+
+        TetrisGame copy = keyedGame(new InputQueue(16));
+        copy.setAutoShift(4, 2);
+        copy.restore(held);
+        copy.setClock(game.getClock());
+        assertEquals(held, copy.snapshot());
+        for (int i = 3; i <= 10; i++) {
+            game.advanceTo(i * frame, null);
+            copy.advanceTo(i * frame, null);
+            assertEquals(pieceX(game), pieceX(copy), "frame " + i);
+            assertEquals(game.getTetrisBoard().getCurrentTetromino().getY(),
+                    copy.getTetrisBoard().getCurrentTetromino().getY(), "frame " + i);
+        }
+        assertEquals(game.snapshot(), copy.snapshot());
+
+        // once let go, they aren't repeated any more
+        int x = pieceX(copy);
+        copy.releaseHeldKeys();
+        copy.advanceTo(20 * frame, null);
+        assertEquals(x, pieceX(copy));
+    }
+
+    @Test
+    public void heldKeysShiftAfterTheDelayAtTheRepeatRate() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setAutoShift(6, 3);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(frame / 2, Actions.MOVE_RIGHT, true);
+        // pressed on the first frame, then repeated on frames 6 and 9
+        int[] moved = { 1, 1, 1, 1, 1, 2, 2, 2, 3 };
+        for (int i = 0; i < moved.length; i++) {
+            game.advanceTo((i + 1) * frame, null);
+            assertEquals(x + moved[i], pieceX(game), "frame " + (i + 1));
+        }
+
+        // and it stops when let go
+        queue.offer(9 * frame + frame / 2, Actions.MOVE_RIGHT, false);
+        game.advanceTo(30 * frame, null);
+        assertEquals(x + 3, pieceX(game));
+    }
+
+    @Test
+    public void noRepeatRateShiftsToTheWall() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setAutoShift(3, 0);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(frame / 2, Actions.MOVE_LEFT, true);
+        game.advanceTo(2 * frame, null);
+        assertEquals(x - 1, pieceX(game));
+        game.advanceTo(3 * frame, null);
+        assertTrue(pieceX(game) < x - 1);
+        assertFalse(game.moveCurrentTetromino(Actions.MOVE_LEFT));
+    }
+
+    @Test
+    public void theOtherDirectionTakesOverWhenLetGo() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setAutoShift(4, 1);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(frame / 2, Actions.MOVE_LEFT, true);
+        queue.offer(frame + frame / 2, Actions.MOVE_RIGHT, true);
+        queue.offer(2 * frame + frame / 2, Actions.MOVE_RIGHT, false);
+        // left, right, then left again from scratch on the 3rd frame, repeating 4 frames in
+        game.advanceTo(5 * frame, null);
+        assertEquals(x, pieceX(game));
+        game.advanceTo(6 * frame, null);
+        assertEquals(x - 1, pieceX(game));
+    }
+
+    @Test
+    public void heldSoftDropRepeatsAtItsRate() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setSoftDropRate(2);
+        long frame = game.getFrameInterval();
+        int y = game.getTetrisBoard().getCurrentTetromino().getY();
+
+        queue.offer(frame / 2, Actions.MOVE_DOWN, true);
+        game.advanceTo(5 * frame, null);
+        // pressed on the first frame, then repeated on frames 2 and 4
+        assertEquals(3, Math.abs(game.getTetrisBoard().getCurrentTetromino().getY() - y));
+    }
+
+    @Test
+    public void softDropEveryFrameStartsOnTheFrameAfterThePress() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setSoftDropRate(1);
+        long frame = game.getFrameInterval();
+        int y = game.getTetrisBoard().getCurrentTetromino().getY();
+
+        queue.offer(frame / 2, Actions.MOVE_DOWN, true);
+        // one row for the press, and then one a frame
+        for (int i = 1; i <= 4; i++) {
+            game.advanceTo(i * frame, null);
+            assertEquals(i, y - game.getTetrisBoard().getCurrentTetromino().getY(), "frame " + i);
+        }
+    }
+
+    @Test
+    public void noDelayShiftsStartOnTheFrameAfterThePress() {
+        InputQueue queue = new InputQueue(16);
+        TetrisGame game = keyedGame(queue);
+        game.setAutoShift(0, 1);
+        long frame = game.getFrameInterval();
+        int x = pieceX(game);
+
+        queue.offer(frame / 2, Actions.MOVE_LEFT, true);
+        // one column for the press, and then one a frame
+        for (int i = 1; i <= 3; i++) {
+            game.advanceTo(i * frame, null);
+            assertEquals(x - i, pieceX(game), "frame " + i);
+        }
+    }
+}
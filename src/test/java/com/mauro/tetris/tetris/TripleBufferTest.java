@@ -0,0 +1,56 @@
+package com.mauro.tetris.tetris;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for TripleBuffer.
+ */
+public class TripleBufferTest {
+
+    @Test
+    public void theReaderGetsTheLatestPublished() {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+        buffer.back()[0] = 1;
+        buffer.publish();
+        buffer.back()[0] = 2;
+        buffer.publish();
+        assertEquals(2, buffer.latest()[0]);
+
+        // nothing new, so the same one again
+        long[] front = buffer.latest();
+        assertSame(front, buffer.latest());
+        assertNotSame(front, buffer.back());
+    }
+
+    @Test
+    public void theReaderNeverSeesHalfWrittenObjects() throws InterruptedException {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[64]);
+        int publishes = 100_000;
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= publishes; i++) {
+                long[] back = buffer.back();
+                for (int j = 0; j < back.length; j++) {
+                    back[j] = i;
+                }
+                buffer.publish();
+            }
+        });
+        writer.start();
+
+        long last = 0;
+        while (last < publishes) {
+            long[] front = buffer.latest();
+            for (int j = 1; j < front.length; j++) {
+                assertEquals(front[0], front[j]);
+            }
+            assertTrue(front[0] >= last);
+            last = front[0];
+        }
+        writer.join();
+    }
+}
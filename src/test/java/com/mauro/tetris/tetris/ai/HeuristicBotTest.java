@@ -0,0 +1,58 @@
+package com.mauro.tetris.tetris.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for the heuristic bot.
+ */
+public class HeuristicBotTest {
+
+    private static TetrisGame play(ForkJoinPool pool, long seed, int pieces) {
+        TetrisGame game = new TetrisGame(new TetrisBoard(10, 24, false), (long) 4e8, seed);
+        // no time budget, so that every search goes all the way down
+        HeuristicBot bot = new HeuristicBot(new BoardEvaluator(), 8, 2, Long.MAX_VALUE, pool);
+        while (!game.isOver() && game.getPiecesPlaced() < pieces) {
+            game.step(bot.nextInputs(game));
+        }
+        return game;
+    }
+
+    @Test
+    public void botKeepsTheGameGoing() {
+        TetrisGame game = play(ForkJoinPool.commonPool(), 11, 500);
+
+        assertFalse(game.isOver());
+        assertEquals(500, game.getPiecesPlaced());
+        // a perfect player clears 0.4 lines per piece
+        assertTrue(game.getLinesCleared() > 150, "cleared " + game.getLinesCleared());
+    }
+
+    @Test
+    public void searchDoesNotDependOnTheThreads() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            TetrisGame a = play(single, 12, 200);
+            TetrisGame b = play(many, 12, 200);
+
+            assertEquals(a.getFrame(), b.getFrame());
+            for (int y = 1; y <= a.getTetrisBoard().getHeight(); y++) {
+                for (int x = 1; x <= a.getTetrisBoard().getWidth(); x++) {
+                    assertEquals(a.getTetrisBoard().getColorAtCell(x, y), b.getTetrisBoard().getColorAtCell(x, y));
+                }
+            }
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+}
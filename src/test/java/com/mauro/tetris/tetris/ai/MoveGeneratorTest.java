@@ -0,0 +1,125 @@
+package com.mauro.tetris.tetris.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.pieces.TetrominoFactory;
+import com.mauro.tetris.pieces.TetrominoType;
+import com.mauro.tetris.tetris.TetrisBoard;
+
+/**
+ * Unit test for the move generator.
+ */
+public class MoveGeneratorTest {
+
+    private static Tetromino spawn(TetrisBoard board, TetrominoType type) {
+        return new TetrominoFactory(board.getWidth(), board.getHeight()).getPieces().get(type.ordinal());
+    }
+
+    /**
+     * Builds a board with a ragged stack, holes and overhangs included.
+     */
+    private static TetrisBoard junkBoard(long seed) {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int y = 1; y <= 8; y++) {
+            for (int x = 1; x <= board.getWidth(); x++) {
+                if (random.nextInt(3) != 0) {
+                    board.setCell(x, y, 1);
+                }
+            }
+        }
+        return board;
+    }
+
+    private static void apply(TetrisBoard board, Actions action) {
+        switch (action) {
+            case MOVE_LEFT:
+                assertTrue(board.moveCurrTetrominoLeft());
+                break;
+            case MOVE_RIGHT:
+                assertTrue(board.moveCurrTetrominoRight());
+                break;
+            case MOVE_DOWN:
+                assertTrue(board.moveCurrTetrominoDown());
+                break;
+            case ROTATE_CLOCKWISE:
+                assertTrue(board.rotateCurrTetrominoClockwise());
+                break;
+            case ROTATE_COUNTERCLOCKWISE:
+                assertTrue(board.rotateCurrTetrominoCounterclockwise());
+                break;
+            case HARD_DROP:
+                board.hardDropCurrTetromino();
+                break;
+        }
+    }
+
+    @Test
+    public void emptyBoardPlacements() {
+        TetrisBoard board = new TetrisBoard();
+        MoveGenerator generator = new MoveGenerator(board.getWidth(), board.getHeight());
+
+        assertEquals(17, generator.generate(board, spawn(board, TetrominoType.I)));
+        assertEquals(9, generator.generate(board, spawn(board, TetrominoType.O)));
+        assertEquals(17, generator.generate(board, spawn(board, TetrominoType.S)));
+        assertEquals(34, generator.generate(board, spawn(board, TetrominoType.T)));
+        assertEquals(34, generator.generate(board, spawn(board, TetrominoType.L)));
+    }
+
+    @Test
+    public void everyPathLeadsToItsPlacement() {
+        MoveGenerator generator = new MoveGenerator(10, 24);
+        Actions[] path = new Actions[10 * 24 * 4];
+        for (long seed = 0; seed < 20; seed++) {
+            for (TetrominoType type : TetrominoType.values()) {
+                TetrisBoard board = junkBoard(seed);
+                int count = generator.generate(board, spawn(board, type));
+                assertTrue(count > 0);
+
+                for (int i = 0; i < count; i++) {
+                    TetrisBoard replay = junkBoard(seed);
+                    Tetromino piece = spawn(replay, type);
+                    replay.setCurrentTetromino(piece);
+
+                    int length = generator.getPath(i, path);
+                    assertEquals(Actions.HARD_DROP, path[length - 1]);
+                    for (int j = 0; j < length; j++) {
+                        apply(replay, path[j]);
+                    }
+                    assertEquals(generator.getX(i), piece.getX());
+                    assertEquals(generator.getY(i), piece.getY());
+                    assertEquals(generator.getRotation(i), piece.getCurrentRotation());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tucksAreFound() {
+        TetrisBoard board = new TetrisBoard();
+        // a roof over the bottom left corner
+        for (int x = 1; x <= 4; x++) {
+            board.setCell(x, 3, 1);
+        }
+        MoveGenerator generator = new MoveGenerator(board.getWidth(), board.getHeight());
+        int count = generator.generate(board, spawn(board, TetrominoType.O));
+
+        boolean found = false;
+        for (int i = 0; i < count; i++) {
+            if (generator.getX(i) == 1 && generator.getY(i) == 1) {
+                Placement placement = generator.getPlacement(i);
+                assertTrue(placement.getPath().contains(Actions.MOVE_DOWN));
+                assertTrue(placement.getPath().contains(Actions.MOVE_LEFT));
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+}
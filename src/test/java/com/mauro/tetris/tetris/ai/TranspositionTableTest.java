@@ -0,0 +1,63 @@
+package com.mauro.tetris.tetris.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the transposition table.
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void storedValuesAreFound() {
+        TranspositionTable table = new TranspositionTable(1024);
+        SplittableRandom random = new SplittableRandom(3);
+        long[] hashes = new long[100];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            table.put(hashes[i], i);
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            assertEquals(i, table.get(hashes[i]));
+        }
+        assertTrue(Double.isNaN(table.get(random.nextLong())));
+
+        assertEquals(100, table.getHits());
+        assertEquals(1, table.getMisses());
+    }
+
+    @Test
+    public void staysWithinItsCapacity() {
+        TranspositionTable table = new TranspositionTable(64);
+        for (long hash = 0; hash < 10_000; hash++) {
+            table.put(hash * 0x9E3779B97F4A7C15L, hash);
+        }
+        assertEquals(10_000 - table.capacity(), table.getEvictions());
+
+        int found = 0;
+        for (long hash = 0; hash < 10_000; hash++) {
+            if (!Double.isNaN(table.get(hash * 0x9E3779B97F4A7C15L))) {
+                found++;
+            }
+        }
+        assertTrue(found <= table.capacity());
+    }
+
+    @Test
+    public void recentlyReadEntriesSurvive() {
+        // a single set, so every entry competes with every other one
+        TranspositionTable table = new TranspositionTable(4);
+        for (long hash = 1; hash <= 4; hash++) {
+            table.put(hash, hash);
+        }
+        table.get(1);
+        table.put(5, 5);
+
+        assertEquals(1, table.get(1));
+        assertEquals(5, table.get(5));
+    }
+}
@@ -0,0 +1,97 @@
+package com.mauro.tetris.tetris.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.RenderState;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for BoardPainter. Everything is painted onto
+ * offscreen images, so it runs headless.
+ */
+public class BoardPainterTest {
+    private static final int SIZE = 780;
+    private static final Color BACKGROUND = new Color(0x123456);
+
+    private static BufferedImage paint(BoardPainter painter, TetrisGame game) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            RenderState state = new RenderState();
+            state.copyFrom(game);
+            painter.paint(g2d, state);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    private static BoardPainter painter(TetrisGame game) {
+        BoardPainter painter = new BoardPainter(BACKGROUND);
+        painter.resize(SIZE, SIZE, game.getTetrisBoard());
+        return painter;
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    public void blocksEndUpInTheirCells() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        TetrisGame game = new TetrisGame(board, (long) 4e8, 1);
+        board.setCell(1, 1, 2);
+        board.setCell(10, 3, 7);
+
+        BufferedImage image = paint(painter(game), game);
+        // a block is 30 pixels wide and the board starts 130 pixels in
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(130 + 15, 24 * 30 + 15));
+        assertEquals(Color.RED.getRGB(), image.getRGB(130 + 9 * 30 + 15, 22 * 30 + 15));
+        assertEquals(BACKGROUND.getRGB(), image.getRGB(130 + 4 * 30 + 15, 24 * 30 + 15));
+        // and so is the border
+        assertEquals(Color.GRAY.getRGB(), image.getRGB(130 - 15, 15));
+    }
+
+    @Test
+    public void changedBlocksAreDrawnAgain() {
+        TetrisBoard board = new TetrisBoard(10, 24, false);
+        TetrisGame game = new TetrisGame(board, (long) 4e8, 1);
+        BoardPainter painter = painter(game);
+        board.setCell(5, 1, 4);
+        assertEquals(Color.YELLOW.getRGB(), paint(painter, game).getRGB(130 + 4 * 30 + 15, 24 * 30 + 15));
+
+        board.setCell(5, 1, 0);
+        board.setCell(6, 1, 5);
+        BufferedImage image = paint(painter, game);
+        assertEquals(BACKGROUND.getRGB(), image.getRGB(130 + 4 * 30 + 15, 24 * 30 + 15));
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(130 + 5 * 30 + 15, 24 * 30 + 15));
+
+        // and so is the queue, once a piece is taken from it
+        game.moveCurrentTetromino(Actions.HARD_DROP);
+        assertSameImage(paint(painter(game), game), paint(painter, game));
+    }
+
+    @Test
+    public void cachedFramesMatchFreshOnes() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 9);
+        BoardPainter painter = painter(game);
+        Actions[] inputs = { Actions.MOVE_LEFT, Actions.ROTATE_CLOCKWISE, Actions.HARD_DROP, Actions.MOVE_RIGHT };
+        for (int i = 0; i < 60; i++) {
+            game.moveCurrentTetromino(inputs[i % inputs.length]);
+            paint(painter, game);
+        }
+        assertSameImage(paint(painter(game), game), paint(painter, game));
+    }
+}
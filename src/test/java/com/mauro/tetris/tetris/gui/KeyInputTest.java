@@ -0,0 +1,79 @@
+package com.mauro.tetris.tetris.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Canvas;
+import java.awt.Component;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.InputQueue;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for KeyInput.
+ */
+public class KeyInputTest {
+    private final Component source = new Canvas();
+
+    private KeyEvent key(int id, int keyCode) {
+        return new KeyEvent(source, id, 0, 0, keyCode, KeyEvent.CHAR_UNDEFINED);
+    }
+
+    /**
+     * Plays every event on the queue into a fresh game
+     * and returns how far its piece moved sideways.
+     */
+    private static int shift(InputQueue queue) {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), Long.MAX_VALUE / 2, 3);
+        game.setInputQueue(queue);
+        game.setAutoShift(1000, 1000);
+        int x = game.getTetrisBoard().getCurrentTetromino().getX();
+        game.setClock(System.nanoTime());
+        game.advanceTo(System.nanoTime() + 2 * game.getFrameInterval(), null);
+        assertTrue(queue.isEmpty());
+        return game.getTetrisBoard().getCurrentTetromino().getX() - x;
+    }
+
+    @Test
+    public void repeatedPressesCountOnce() {
+        InputQueue queue = new InputQueue(16);
+        KeyInput keys = new KeyInput(queue, () -> false);
+        // what the OS sends while the key is held down
+        for (int i = 0; i < 5; i++) {
+            keys.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_LEFT));
+        }
+        keys.keyReleased(key(KeyEvent.KEY_RELEASED, KeyEvent.VK_LEFT));
+        keys.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_A));
+        assertEquals(-1, shift(queue));
+    }
+
+    @Test
+    public void keysAreLetGoWithTheFocus() {
+        InputQueue queue = new InputQueue(16);
+        KeyInput keys = new KeyInput(queue, () -> false);
+        keys.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_RIGHT));
+        keys.focusLost(new FocusEvent(source, FocusEvent.FOCUS_LOST));
+        // pressed again, so it was let go
+        keys.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_RIGHT));
+        assertFalse(queue.isEmpty());
+        assertEquals(1, shift(queue));
+    }
+
+    @Test
+    public void pressesAreIgnoredWhilePaused() {
+        InputQueue queue = new InputQueue(16);
+        KeyInput keys = new KeyInput(queue, () -> true);
+        keys.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_SPACE));
+        assertTrue(queue.isEmpty());
+        assertNull(KeyInput.actionOf(KeyEvent.VK_G));
+        assertEquals(Actions.ROTATE_COUNTERCLOCKWISE, KeyInput.actionOf(KeyEvent.VK_CONTROL));
+    }
+}
@@ -0,0 +1,127 @@
+package com.mauro.tetris.tetris.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import javax.swing.KeyStroke;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for PerformanceOverlay. Everything is painted
+ * onto offscreen images, so it runs headless.
+ */
+public class PerformanceOverlayTest {
+    private static final long FRAME = 16_666_667L;
+
+    private static BufferedImage paint(TetrisRenderer renderer) {
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            renderer.paintComponent(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    @Test
+    public void f3ShowsTheOverlayOverTheGame() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 9);
+        TetrisRenderer renderer = new TetrisRenderer(game, new Dimension(400, 400));
+        renderer.setBounds(0, 0, 400, 400);
+        renderer.setBackground(Color.WHITE);
+        assertNotNull(renderer.getInputMap().get(KeyStroke.getKeyStroke("F3")));
+
+        assertFalse(renderer.isOverlayShown());
+        BufferedImage without = paint(renderer);
+        renderer.toggleOverlay();
+        assertTrue(renderer.isOverlayShown());
+        BufferedImage with = paint(renderer);
+
+        // the corner it's drawn in is darker, and the rest is untouched
+        assertEquals(Color.WHITE.getRGB(), without.getRGB(10, 10));
+        assertNotEquals(Color.WHITE.getRGB(), with.getRGB(10, 10));
+        assertEquals(without.getRGB(399, 399), with.getRGB(399, 399));
+
+        renderer.toggleOverlay();
+        assertEquals(without.getRGB(10, 10), paint(renderer).getRGB(10, 10));
+    }
+
+    @Test
+    public void samplesStayWithinTheOverlay() {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 9);
+        GameLoop loop = new GameLoop(game);
+        PerformanceOverlay overlay = new PerformanceOverlay(loop, 20, 30);
+        Rectangle bounds = new Rectangle();
+        overlay.bounds(bounds);
+        assertEquals(20, bounds.x);
+        assertEquals(30, bounds.y);
+
+        // frames way slower than the graph starts out at, and a few instant ones
+        long now = System.nanoTime();
+        for (int i = 0; i < 500; i++) {
+            game.step(0);
+            loop.getMetrics().recordTick(i * 1_000, 0);
+            overlay.record(i % 7 == 0 ? 0 : i * 100_000L, now += FRAME);
+        }
+
+        BufferedImage image = new BufferedImage(bounds.x * 2 + bounds.width, bounds.y * 2 + bounds.height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+        overlay.paint(g2d);
+        g2d.dispose();
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (!bounds.contains(x, y)) {
+                    assertEquals(Color.WHITE.getRGB(), image.getRGB(x, y), "pixel " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        GameLoop loop = new GameLoop(new TetrisGame(new TetrisBoard(), (long) 4e8, 9));
+        PerformanceOverlay overlay = new PerformanceOverlay(loop, 0, 0);
+        long now = System.nanoTime();
+
+        // a few rounds, since the JIT compiler may allocate on this thread now and then
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < 6; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            // a second goes by every 60 frames, and the numbers are worked out again
+            for (int i = 0; i < 20_000; i++) {
+                overlay.record(1_000_000, now += FRAME);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            if (round > 0) {
+                least = Math.min(least, allocated);
+            }
+        }
+        assertEquals(0, least);
+    }
+}
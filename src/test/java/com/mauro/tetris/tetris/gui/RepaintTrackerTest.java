@@ -0,0 +1,109 @@
+package com.mauro.tetris.tetris.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.RenderState;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for RepaintTracker.
+ */
+public class RepaintTrackerTest {
+    private static final int SIZE = 780;
+
+    // remembers what it's asked to repaint instead of repainting it
+    private static class Recorder extends Component {
+        final List<Rectangle> repainted = new ArrayList<>();
+
+        @Override
+        public void repaint(int x, int y, int width, int height) {
+            repainted.add(new Rectangle(x, y, width, height));
+        }
+    }
+
+    private TetrisGame game;
+    private BoardPainter painter;
+    private Recorder recorder;
+    private RepaintTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        game = new TetrisGame(new TetrisBoard(), (long) 4e8, 4);
+        painter = new BoardPainter(Color.BLACK);
+        painter.resize(SIZE, SIZE, game.getTetrisBoard());
+        recorder = new Recorder();
+        tracker = new RepaintTracker(recorder, painter);
+        repaintChanges();
+        recorder.repainted.clear();
+    }
+
+    // the way the renderers see the game
+    private void repaintChanges() {
+        RenderState state = new RenderState();
+        state.copyFrom(game);
+        tracker.repaintChanges(state);
+    }
+
+    private Rectangle queue() {
+        Rectangle queue = new Rectangle();
+        painter.queueBounds(queue);
+        return queue;
+    }
+
+    @Test
+    public void nothingIsRepaintedWhenNothingChanged() {
+        repaintChanges();
+        game.moveCurrentTetromino(Actions.MOVE_LEFT);
+        repaintChanges();
+        recorder.repainted.clear();
+
+        // pushing against nothing, and updates that don't move anything
+        game.update(1);
+        repaintChanges();
+        assertEquals(List.of(), recorder.repainted);
+    }
+
+    @Test
+    public void movesRepaintWhereThePieceWasAndIs() {
+        Rectangle before = new Rectangle();
+        painter.pieceBounds(game.getTetrisBoard().getCurrentTetromino(), before);
+
+        game.moveCurrentTetromino(Actions.MOVE_RIGHT);
+        repaintChanges();
+
+        Rectangle after = new Rectangle();
+        painter.pieceBounds(game.getTetrisBoard().getCurrentTetromino(), after);
+        assertTrue(recorder.repainted.contains(before));
+        assertTrue(recorder.repainted.contains(after));
+        for (Rectangle area : recorder.repainted) {
+            // just the piece and its ghost, which are well within a fifth of the board
+            assertTrue(area.width * area.height < SIZE * SIZE / 50, area.toString());
+            assertTrue(!area.intersects(queue()), area.toString());
+        }
+    }
+
+    @Test
+    public void locksRepaintTheirRowsAndTheQueue() {
+        game.moveCurrentTetromino(Actions.HARD_DROP);
+        repaintChanges();
+
+        Rectangle rows = new Rectangle();
+        painter.rowBounds(game.getTetrisBoard().getDirtyRows(0), rows);
+        assertTrue(recorder.repainted.contains(rows));
+        assertTrue(recorder.repainted.contains(queue()));
+        // the bottom rows only
+        assertTrue(rows.height < SIZE / 4, rows.toString());
+    }
+}
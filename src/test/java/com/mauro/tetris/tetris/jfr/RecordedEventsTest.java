@@ -0,0 +1,153 @@
+package com.mauro.tetris.tetris.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.pieces.Block;
+import com.mauro.tetris.pieces.Tetromino;
+import com.mauro.tetris.tetris.GameListener;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.gui.TetrisRenderer;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records a game with Java Flight Recorder and checks that
+ * its events tell what happened in it.
+ */
+public class RecordedEventsTest {
+    private static final String[] EVENTS = {
+        "com.mauro.tetris.Tick", "com.mauro.tetris.Lock", "com.mauro.tetris.LineClear",
+        "com.mauro.tetris.WallKick", "com.mauro.tetris.Paint"
+    };
+
+    private static final int FRAMES = 20_000;
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void eventsAreOnlyCreatedWhileRecording() {
+        assertFalse(TickEvent.isRecording());
+        try (Recording recording = new Recording()) {
+            // they're on by default, unless turned off
+            recording.disable(EVENTS[4]);
+            recording.start();
+            assertTrue(TickEvent.isRecording());
+            assertFalse(PaintEvent.isRecording());
+        }
+        assertFalse(TickEvent.isRecording());
+    }
+
+    @Test
+    public void eventsTellWhatHappened() throws IOException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 31);
+        // the game starts over whenever it's over, so pieces are counted here
+        AtomicInteger locked = new AtomicInteger();
+        game.setListener(new GameListener() {
+            @Override
+            public void onLock(TetrisGame game) {
+                locked.incrementAndGet();
+            }
+        });
+        TetrisRenderer renderer = new TetrisRenderer(game, new Dimension(400, 400));
+        renderer.setBounds(0, 0, 400, 400);
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+
+        Path file = Files.createTempFile("tetris", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : EVENTS) {
+                recording.enable(name);
+            }
+            recording.start();
+
+            SplittableRandom inputs = new SplittableRandom(31);
+            Actions[] actions = Actions.values();
+            for (int i = 0; i < FRAMES; i++) {
+                int in = inputs.nextInt(4) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0;
+                game.step(in);
+            }
+            Graphics2D g2d = image.createGraphics();
+            renderer.paintComponent(g2d);
+            g2d.dispose();
+
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(FRAMES, named(events, EVENTS[0]).size());
+            assertEquals(locked.get(), named(events, EVENTS[1]).size());
+
+            // every line clear comes with a lock
+            long rows = named(events, EVENTS[2]).stream().mapToLong(event -> event.getInt("rows")).sum();
+            assertEquals(rows, named(events, EVENTS[1]).stream().mapToLong(event -> event.getInt("linesCleared")).sum());
+
+            List<RecordedEvent> kicks = named(events, EVENTS[3]);
+            assertFalse(kicks.isEmpty());
+            for (RecordedEvent kick : kicks) {
+                assertEquals(kick.getInt("test") > 0, kick.getBoolean("succeeded"));
+            }
+
+            List<RecordedEvent> paints = named(events, EVENTS[4]);
+            assertEquals(1, paints.size());
+            assertEquals("passive", paints.get(0).getString("renderer"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void piecesWithoutATypeAreNamed() throws IOException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 32);
+        TetrisBoard board = game.getTetrisBoard();
+        // a domino boxed in by blocks, so it can neither turn nor move
+        Tetromino piece = new Tetromino("domino", new Block[] { new Block(0, 0, 1), new Block(1, 0, 1) }, 4, 10, 0, 0);
+        for (int y = 1; y <= board.getHeight(); y++) {
+            for (int x = 1; x <= board.getWidth(); x++) {
+                board.setCell(x, y, 1);
+            }
+        }
+        for (int i = 0; i < piece.size(); i++) {
+            board.setCell(piece.getCellX(i) + piece.getX(), piece.getCellY(i) + piece.getY(), 0);
+        }
+        assertTrue(board.setCurrentTetromino(piece));
+
+        Path file = Files.createTempFile("tetris", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENTS[1]);
+            recording.enable(EVENTS[3]);
+            recording.start();
+            game.moveCurrentTetromino(Actions.ROTATE_CLOCKWISE);
+            game.moveCurrentTetromino(Actions.HARD_DROP);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals("domino", named(events, EVENTS[3]).get(0).getString("piece"));
+            assertEquals("domino", named(events, EVENTS[1]).get(0).getString("piece"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mauro.tetris.tetris.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.GameListener;
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+
+/**
+ * Unit test for EngineMetrics.
+ */
+public class EngineMetricsTest {
+    private static final int FRAMES = 20_000;
+
+    @Test
+    public void countsWhatTheGameDoes() {
+        // quick enough for pieces to land on their own before they're hard dropped
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 2e7, 17);
+        EngineMetrics metrics = new EngineMetrics();
+        game.setMetrics(metrics);
+        long checksBefore = game.getTetrisBoard().getCollisionChecks();
+
+        // the game starts over whenever it's over, so everything is counted here
+        long[] counted = new long[4];
+        game.setListener(new GameListener() {
+            @Override
+            public void onAction(TetrisGame game, Actions action, boolean successful) {
+                if (action == Actions.HARD_DROP && successful) {
+                    counted[0]++;
+                }
+            }
+
+            @Override
+            public void onLock(TetrisGame game) {
+                counted[1]++;
+            }
+
+            @Override
+            public void onFrame(TetrisGame game) {
+                long lines = game.getLinesCleared();
+                counted[2] += lines >= counted[3] ? lines - counted[3] : lines;
+                counted[3] = lines;
+            }
+        });
+
+        // random keys for half of the frames, and the bot, which clears lines, for the rest
+        SplittableRandom inputs = new SplittableRandom(17);
+        Actions[] actions = Actions.values();
+        HeuristicBot bot = new HeuristicBot();
+        for (int i = 0; i < FRAMES; i++) {
+            if (i < FRAMES / 2) {
+                game.step(inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+            } else {
+                game.step(bot.nextInputs(game));
+            }
+        }
+
+        assertEquals(FRAMES, metrics.getTicks());
+        assertEquals(0, metrics.getFrames());
+        assertEquals(game.getTetrisBoard().getCollisionChecks() - checksBefore, metrics.getCollisionChecks());
+        assertTrue(metrics.getCollisionChecks() > FRAMES);
+
+        assertTrue(metrics.getWallKickAttempts() > 0);
+        assertTrue(metrics.getWallKickSuccesses() <= metrics.getWallKickAttempts());
+
+        // every piece is locked by either a hard drop or the lock delay
+        assertTrue(metrics.getLockDelayExpirations() > 0);
+        assertEquals(counted[1], counted[0] + metrics.getLockDelayExpirations());
+
+        long rows = metrics.getSingles() + 2 * metrics.getDoubles() + 3 * metrics.getTriples() + 4 * metrics.getTetrises();
+        assertTrue(rows > 0);
+        assertEquals(counted[2], rows);
+    }
+
+    @Test
+    public void ratesAndLatenciesAreOverTheLastWindow() {
+        EngineMetrics metrics = new EngineMetrics();
+        long start = System.nanoTime();
+        metrics.sample(start);
+
+        for (int i = 0; i < 98; i++) {
+            metrics.recordTick(1_000, 10);
+        }
+        metrics.recordTick(50_000, 100);
+        metrics.recordTick(2_000_000, 1_000);
+        metrics.recordPaint(3_000_000);
+        metrics.sample(start + 2_000_000_000L);
+
+        assertEquals(50, metrics.getTicksPerSecond(), 1e-9);
+        assertEquals(0.5, metrics.getFramesPerSecond(), 1e-9);
+        assertEquals(20.8, metrics.getCollisionChecksPerTick(), 1e-9);
+        assertTrue(metrics.getUpdateLatencyP50Nanos() >= 1_000 && metrics.getUpdateLatencyP50Nanos() <= 1_125);
+        assertTrue(metrics.getUpdateLatencyP99Nanos() >= 50_000 && metrics.getUpdateLatencyP99Nanos() <= 56_250);
+        assertEquals(2_000_000, metrics.getUpdateLatencyMaxNanos());
+        // never past the max
+        assertEquals(3_000_000, metrics.getPaintLatencyP50Nanos());
+        assertEquals(3_000_000, metrics.getPaintLatencyMaxNanos());
+
+        // a window where nothing happened
+        metrics.recordLineClear(2);
+        metrics.sample(start + 3_000_000_000L);
+        assertEquals(0, metrics.getTicksPerSecond());
+        assertEquals(0, metrics.getUpdateLatencyP99Nanos());
+        assertEquals(0, metrics.getUpdateLatencyMaxNanos());
+        assertEquals(100, metrics.getTicks());
+        assertEquals(1, metrics.getDoubles());
+    }
+
+    @Test
+    public void gameLoopsRegisterTheirMetricsWhileRunning() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        GameLoop loop = new GameLoop(new TetrisGame(new TetrisBoard(), (long) 4e8, 5));
+        EngineMetrics metrics = loop.getMetrics();
+        assertFalse(server.isRegistered(metrics.getName()));
+
+        loop.start();
+        try {
+            assertTrue(server.isRegistered(metrics.getName()));
+            assertTrue((Long) server.getAttribute(metrics.getName(), "Ticks") >= 0);
+            // another game gets a name of its own
+            assertFalse(metrics.getName().equals(new EngineMetrics().getName()));
+        } finally {
+            loop.stop();
+        }
+        assertFalse(server.isRegistered(metrics.getName()));
+    }
+}
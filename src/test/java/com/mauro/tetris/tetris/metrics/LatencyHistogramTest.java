@@ -0,0 +1,61 @@
+package com.mauro.tetris.tetris.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinAnEighth() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.highestValueIn(bucket)));
+            if (bucket > 0) {
+                // no gaps between them
+                assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.highestValueIn(bucket - 1) + 1));
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueIn(LatencyHistogram.BUCKETS - 1));
+
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong(1, Long.MAX_VALUE) >>> random.nextInt(63);
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 8, value + " counted as " + highest);
+        }
+    }
+
+    @Test
+    public void percentilesAreReadFromTheBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(50_000);
+        histogram.record(2_000_000);
+        // negative durations are nothing
+        histogram.record(-5);
+
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.copyCounts(counts);
+        assertEquals(1, counts[0]);
+        long p50 = LatencyHistogram.percentile(counts, 0.5);
+        assertTrue(p50 >= 1_000 && p50 <= 1_125, "p50 " + p50);
+        long p99 = LatencyHistogram.percentile(counts, 0.99);
+        assertTrue(p99 >= 50_000 && p99 <= 56_250, "p99 " + p99);
+        assertEquals(LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(2_000_000)),
+                LatencyHistogram.percentile(counts, 1));
+
+        assertEquals(2_000_000, histogram.takeMax());
+        assertEquals(0, histogram.takeMax());
+        assertEquals(0, LatencyHistogram.percentile(new long[LatencyHistogram.BUCKETS], 0.5));
+    }
+}
@@ -0,0 +1,147 @@
+package com.mauro.tetris.tetris.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.InputQueue;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for replay archives.
+ */
+public class ReplayArchiveTest {
+    private static final int FRAMES = 6_000;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Plays {@code FRAMES} frames of a game with random inputs, recording it into
+     * {@code file} from {@code from} onwards, and returns the board hash and
+     * the amount of pieces placed at the start of every frame.
+     */
+    private long[][] record(long seed, Path file, int from, int keyframeInterval) throws IOException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, seed);
+        SplittableRandom inputs = new SplittableRandom(seed);
+        Actions[] actions = Actions.values();
+        long[][] states = new long[FRAMES + 1][];
+        ReplayArchiveWriter writer = null;
+        for (int i = 0; i < FRAMES; i++) {
+            if (i == from) {
+                writer = new ReplayArchiveWriter(game, file, keyframeInterval);
+            }
+            states[i] = new long[] { game.getTetrisBoard().getHash(), game.getPiecesPlaced() };
+            game.step(inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+        }
+        states[FRAMES] = new long[] { game.getTetrisBoard().getHash(), game.getPiecesPlaced() };
+        writer.close();
+        return states;
+    }
+
+    /**
+     * Like {@link #record(long, Path, int, int)}, but with keys that are
+     * pressed through an input queue and held for a while.
+     */
+    private long[][] recordKeys(long seed, Path file, int keyframeInterval) throws IOException {
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, seed);
+        InputQueue queue = new InputQueue(16);
+        game.setInputQueue(queue);
+        game.setClock(0);
+        long frame = game.getFrameInterval();
+        SplittableRandom inputs = new SplittableRandom(seed);
+        Actions[] keys = { Actions.MOVE_LEFT, Actions.MOVE_RIGHT, Actions.MOVE_DOWN, Actions.ROTATE_CLOCKWISE };
+        long[][] states = new long[FRAMES + 1][];
+        ReplayArchiveWriter writer = new ReplayArchiveWriter(game, file, keyframeInterval);
+        for (int i = 0; i < FRAMES; i++) {
+            states[i] = new long[] { game.getTetrisBoard().getHash(), game.getPiecesPlaced() };
+            if (inputs.nextInt(6) == 0) {
+                queue.offer(i * frame + frame / 2, keys[inputs.nextInt(keys.length)], inputs.nextBoolean());
+            }
+            game.advanceTo((i + 1) * frame, null);
+        }
+        states[FRAMES] = new long[] { game.getTetrisBoard().getHash(), game.getPiecesPlaced() };
+        writer.close();
+        return states;
+    }
+
+    private static void assertSeeksMatch(ReplayArchive archive, long[][] states, int from) {
+        TetrisGame game = archive.newGame();
+        for (int frame = from; frame <= FRAMES; frame += 97) {
+            archive.seek(game, frame);
+            assertEquals(frame, game.getFrame());
+            assertEquals(states[frame][0], game.getTetrisBoard().getHash(), "hash at frame " + frame);
+            assertEquals(states[frame][1], game.getPiecesPlaced(), "pieces at frame " + frame);
+        }
+        // backwards too
+        for (int frame = FRAMES; frame >= from; frame -= 389) {
+            archive.seek(game, frame);
+            assertEquals(states[frame][0], game.getTetrisBoard().getHash(), "hash at frame " + frame);
+        }
+    }
+
+    @Test
+    public void keysHeldAcrossKeyframesAreOnlyReplayedOnce() throws IOException {
+        Path file = dir.resolve("keys.archive");
+        long[][] states = recordKeys(12, file, 50);
+        assertSeeksMatch(ReplayArchive.open(file), states, 0);
+    }
+
+    @Test
+    public void seekingMatchesPlayingStraightThrough() throws IOException {
+        Path file = dir.resolve("game.archive");
+        long[][] states = record(11, file, 0, 500);
+
+        ReplayArchive archive = ReplayArchive.open(file);
+        assertEquals(11, archive.getSeed());
+        assertEquals(0, archive.getFirstFrame());
+        assertEquals(FRAMES, archive.getLastFrame());
+        assertEquals(FRAMES / 500 + 1, archive.getKeyframeCount());
+        assertSeeksMatch(archive, states, 0);
+
+        ReplayResult result = archive.verify();
+        assertTrue(result.isValid(), result.toString());
+    }
+
+    @Test
+    public void archivesCanStartMidGame() throws IOException {
+        Path file = dir.resolve("late.archive");
+        long[][] states = record(12, file, 1_234, 300);
+
+        ReplayArchive archive = ReplayArchive.open(file);
+        assertEquals(1_234, archive.getFirstFrame());
+        assertSeeksMatch(archive, states, 1_234);
+        assertThrows(IllegalArgumentException.class, () -> archive.seek(1_000));
+    }
+
+    @Test
+    public void cutShortChunksAreRejected() throws IOException {
+        Path file = dir.resolve("cut.archive");
+        record(13, file, 0, 500);
+        byte[] bytes = Files.readAllBytes(file);
+        // the first keyframe now runs to the end of the file, leaving its chunk without events
+        ByteBuffer.wrap(bytes).putInt(ReplayFormat.ARCHIVE_HEADER_SIZE,
+                bytes.length - ReplayFormat.ARCHIVE_HEADER_SIZE - Integer.BYTES);
+        Files.write(file, bytes);
+
+        ReplayArchive archive = ReplayArchive.open(file);
+        assertThrows(IllegalArgumentException.class, () -> archive.seek(100));
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        Path garbage = Files.write(dir.resolve("garbage.archive"), new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> ReplayArchive.open(garbage));
+    }
+}
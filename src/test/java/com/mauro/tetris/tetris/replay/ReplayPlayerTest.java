@@ -0,0 +1,81 @@
+package com.mauro.tetris.tetris.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+
+/**
+ * Unit test for the replay player.
+ */
+public class ReplayPlayerTest {
+    @TempDir
+    Path dir;
+
+    private Path record(long seed, int frames) throws IOException {
+        Path file = dir.resolve(seed + ".replay");
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, seed);
+        SplittableRandom inputs = new SplittableRandom(seed);
+        Actions[] actions = Actions.values();
+        ReplayRecorder recorder = new ReplayRecorder(game, file);
+        try {
+            for (int i = 0; i < frames; i++) {
+                game.step(inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+            }
+        } finally {
+            recorder.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void replaysEndLikeTheyWereRecorded() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (long seed = 0; seed < 16; seed++) {
+            files.add(record(seed, 5_000 + 1_000 * (int) seed));
+        }
+
+        List<ReplayResult> results = ReplayPlayer.verifyAll(files);
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ReplayResult result = results.get(i);
+            assertEquals(files.get(i), result.getFile());
+            assertTrue(result.isValid(), result.toString());
+            assertEquals(5_000 + 1_000 * i, result.getFrames());
+        }
+    }
+
+    @Test
+    public void changedHashesAreFlagged() throws IOException {
+        Path file = record(1, 3_000);
+        // the hash is the very last thing in the file
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 12345), channel.size() - Long.BYTES);
+        }
+        Path garbage = Files.write(dir.resolve("garbage.replay"), new byte[] {1, 2, 3});
+
+        List<ReplayResult> results = ReplayPlayer.verifyAll(List.of(file, garbage));
+
+        assertFalse(results.get(0).isValid());
+        assertTrue(results.get(0).isHashMismatch());
+        assertFalse(results.get(1).isValid());
+        assertNotNull(results.get(1).getError());
+    }
+}
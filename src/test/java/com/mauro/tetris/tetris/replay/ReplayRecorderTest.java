@@ -0,0 +1,108 @@
+package com.mauro.tetris.tetris.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mauro.tetris.enums.Actions;
+import com.mauro.tetris.tetris.GameLoop;
+import com.mauro.tetris.tetris.TetrisBoard;
+import com.mauro.tetris.tetris.TetrisGame;
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+
+/**
+ * Unit test for the replay recorder.
+ */
+public class ReplayRecorderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void recordingHoldsTheWholeGame() throws IOException {
+        Path file = dir.resolve("game.replay");
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 99);
+        SplittableRandom inputs = new SplittableRandom(99);
+        Actions[] actions = Actions.values();
+
+        ReplayRecorder recorder = new ReplayRecorder(game, file);
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                // actions taken outside of step() count as well
+                if (inputs.nextInt(50) == 0) {
+                    game.moveCurrentTetromino(Actions.ROTATE_CLOCKWISE);
+                }
+                game.step(inputs.nextInt(8) == 0 ? actions[inputs.nextInt(actions.length)].bit() : 0);
+            }
+        } finally {
+            recorder.close();
+        }
+        assertTrue(Files.size(file) < 16 * 1024, "size " + Files.size(file));
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(ReplayFormat.MAGIC, buffer.getInt());
+        assertEquals(ReplayFormat.VERSION, buffer.get());
+        long seed = buffer.getLong();
+        int width = buffer.get(), height = buffer.get();
+        long interval = buffer.getLong();
+        long frameInterval = buffer.getLong();
+        assertEquals(99, seed);
+
+        TetrisGame replay = new TetrisGame(new TetrisBoard(width, height), interval, seed);
+        replay.setFrameInterval(frameInterval);
+        long locks = 0;
+        while (true) {
+            long frame = replay.getFrame() + ReplayFormat.getVarint(buffer);
+            int code = buffer.get() & 0xFF;
+            while (replay.getFrame() < frame) {
+                replay.step(0);
+            }
+            if (code == ReplayFormat.END) {
+                break;
+            } else if (code == ReplayFormat.LOCK) {
+                locks++;
+            } else if (code < actions.length) {
+                replay.moveCurrentTetromino(actions[code]);
+            }
+        }
+
+        assertEquals(buffer.getLong(), replay.getFrame());
+        assertEquals(buffer.getLong(), replay.getPiecesPlaced());
+        assertEquals(buffer.getLong(), replay.getLinesCleared());
+        assertEquals(buffer.getLong(), replay.getTetrisBoard().getHash());
+        assertEquals(game.getTetrisBoard().getHash(), replay.getTetrisBoard().getHash());
+        assertTrue(locks >= replay.getPiecesPlaced());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void gamesRunByALoopAreRecordedWholeOnceItStops() throws IOException, InterruptedException {
+        Path file = dir.resolve("loop.replay");
+        TetrisGame game = new TetrisGame(new TetrisBoard(), (long) 4e8, 12);
+        ReplayRecorder recorder = new ReplayRecorder(game, file);
+        GameLoop loop = new GameLoop(game);
+        loop.setController(new HeuristicBot());
+
+        loop.start();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (loop.getState().getPiecesPlaced() < 3) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+        // the way the app does it on exit
+        loop.stop();
+        recorder.close();
+
+        ReplayResult result = ReplayPlayer.play(file);
+        assertTrue(result.isValid(), result.toString());
+        assertEquals(game.getFrame(), result.getFrames());
+        assertEquals(game.getPiecesPlaced(), result.getPiecesPlaced());
+    }
+}
@@ -0,0 +1,75 @@
+package com.mauro.tetris.tetris.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.mauro.tetris.tetris.ai.HeuristicBot;
+
+/**
+ * Unit test for the batch simulator.
+ */
+public class BatchSimulatorTest {
+
+    private static SimulationStats run(ForkJoinPool pool, int games) {
+        BatchSimulator simulator = new BatchSimulator(10, 24, (long) 1e8, 20_000, RandomController::new, pool);
+        return simulator.run(77, games);
+    }
+
+    @Test
+    public void resultsDoNotDependOnTheThreads() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            SimulationStats a = run(single, 100);
+            SimulationStats b = run(many, 100);
+
+            assertEquals(a.getToppedOut(), b.getToppedOut());
+            assertEquals(a.getPiecesPlaced(), b.getPiecesPlaced());
+            assertEquals(a.getLinesCleared(), b.getLinesCleared());
+            assertEquals(a.getFrames(), b.getFrames());
+            assertEquals(a.getShortestGame(), b.getShortestGame());
+            assertEquals(a.getLongestGame(), b.getLongestGame());
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    public void everyGameIsCounted() {
+        SimulationStats stats = run(ForkJoinPool.commonPool(), 37);
+
+        assertEquals(37, stats.getGames());
+        assertTrue(stats.getPiecesPlaced() > 0);
+        assertTrue(stats.getShortestGame() <= stats.getLongestGame());
+        assertTrue(stats.getLongestGame() <= 20_000);
+        assertTrue(stats.getGamesPerSecond() > 0);
+    }
+
+    @Test
+    public void botBatchesAreTheSameEveryTime() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            // with no time budget, how deep the bot looks doesn't depend on the machine
+            BatchSimulator simulator = new BatchSimulator(10, 24, (long) 1e8, 3_000,
+                    s -> new HeuristicBot(HeuristicBot.NO_TIME_BUDGET), single);
+            SimulationStats a = simulator.run(5, 4);
+            SimulationStats b = new BatchSimulator(10, 24, (long) 1e8, 3_000,
+                    s -> new HeuristicBot(HeuristicBot.NO_TIME_BUDGET), many).run(5, 4);
+
+            assertEquals(a.getToppedOut(), b.getToppedOut());
+            assertEquals(a.getPiecesPlaced(), b.getPiecesPlaced());
+            assertEquals(a.getLinesCleared(), b.getLinesCleared());
+            assertEquals(a.getFrames(), b.getFrames());
+            assertTrue(a.getLinesCleared() > 0);
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+}